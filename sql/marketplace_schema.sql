@@ -26,17 +26,24 @@ CREATE TABLE IF NOT EXISTS annonce (
     date_disponibilite DATE,
     date_fin_disponibilite DATE,
     date_creation DATETIME DEFAULT CURRENT_TIMESTAMP,
-    date_modification DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    -- Horloge du serveur à la milliseconde (écrite par NOW(3)) : watermark de synchronisation
+    date_modification DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     proprietaire_id INT NOT NULL,
+    version INT NOT NULL DEFAULT 0,  -- Verrouillage optimiste (incrémenté à chaque UPDATE)
     
     -- Clé étrangère vers la table user (gérée par Ayoub)
     FOREIGN KEY (proprietaire_id) REFERENCES user(id) ON DELETE CASCADE,
     
-    -- Index pour optimiser les recherches
-    INDEX idx_type (type),
-    INDEX idx_statut (statut),
+    -- Index pour optimiser les recherches. Les listes de navigation filtrent
+    -- sur le statut et trient sur la date de création : index composites
+    -- (égalités d'abord, colonne de tri ensuite), sans tri filesort.
+    -- Vérifiés par utils.VerificationPlans.
+    INDEX idx_statut_creation (statut, date_creation),            -- Disponibles, recherche, localisation
+    INDEX idx_type_statut_creation (type, statut, date_creation), -- Filtre par type
+    INDEX idx_statut_prix (statut, prix),                         -- Fourchette de prix, triée par prix
     INDEX idx_localisation (localisation),
-    INDEX idx_proprietaire (proprietaire_id)
+    INDEX idx_proprietaire (proprietaire_id, date_creation, id), -- Tableau de bord "Mes Annonces"
+    INDEX idx_modification (date_modification, id)  -- Synchronisation incrémentale
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- ============================================================
@@ -55,17 +62,175 @@ CREATE TABLE IF NOT EXISTS reservation (
            NOT NULL DEFAULT 'EN_ATTENTE',
     commentaire TEXT,
     date_creation DATETIME DEFAULT CURRENT_TIMESTAMP,
+    date_modification DATETIME(3) DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    version INT NOT NULL DEFAULT 0,  -- Verrouillage optimiste (incrémenté à chaque UPDATE)
     
     -- Clés étrangères
     FOREIGN KEY (annonce_id) REFERENCES annonce(id) ON DELETE CASCADE,
     FOREIGN KEY (client_id) REFERENCES user(id) ON DELETE CASCADE,
     
     -- Index pour optimiser les requêtes
-    INDEX idx_annonce (annonce_id),
-    INDEX idx_client (client_id),
-    INDEX idx_statut (statut)
+    INDEX idx_annonce (annonce_id, date_creation DESC), -- Réservations d'une ou plusieurs annonces, plus récentes d'abord
+    INDEX idx_client (client_id, date_creation),       -- Réservations et historique d'un client
+    INDEX idx_modification (date_modification, id),  -- Synchronisation incrémentale
+    INDEX idx_statut_fin (statut, date_fin),          -- Réservations échues (CONFIRMEE -> TERMINEE)
+    INDEX idx_statut_creation (statut, date_creation), -- Demandes EN_ATTENTE expirées
+    INDEX idx_statut_modification (statut, date_modification) -- Réservations closes à archiver
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- ============================================================
+-- TABLE RESERVATION_ARCHIVE
+-- Réservations closes (TERMINEE / ANNULEE) déplacées hors de la table
+-- active par le traitement d'archivage : `reservation` ne garde que
+-- l'activité récente, quel que soit le volume d'historique.
+-- Partitionnée par année de création (élagage des partitions sur
+-- date_creation) et compressée. MySQL n'autorisant pas de clé étrangère
+-- sur une table partitionnée, l'archive n'en a pas : elle survit à la
+-- suppression de l'annonce ou du client (historique comptable).
+-- Les partitions des années suivantes sont ajoutées par l'application
+-- (découpage de pmax).
+-- ============================================================
+CREATE TABLE IF NOT EXISTS reservation_archive (
+    id INT NOT NULL,
+    annonce_id INT NOT NULL,
+    client_id INT NOT NULL,
+    date_debut DATE,
+    date_fin DATE,
+    montant_total DECIMAL(10, 2) NOT NULL,
+    statut ENUM('EN_ATTENTE', 'CONFIRMEE', 'ANNULEE', 'TERMINEE') NOT NULL,
+    commentaire TEXT,
+    date_creation DATETIME NOT NULL,
+    date_modification DATETIME(3),
+    version INT NOT NULL DEFAULT 0,
+    date_archivage DATETIME DEFAULT CURRENT_TIMESTAMP,
+
+    -- La clé de partitionnement doit faire partie de la clé primaire
+    PRIMARY KEY (id, date_creation),
+    INDEX idx_client (client_id, date_creation),
+    INDEX idx_annonce (annonce_id, date_creation)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+  ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8
+PARTITION BY RANGE (YEAR(date_creation)) (
+    PARTITION p2025 VALUES LESS THAN (2026),
+    PARTITION p2026 VALUES LESS THAN (2027),
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+-- ============================================================
+-- TABLE LISTE_ATTENTE
+-- Agriculteurs en attente d'une annonce déjà réservée. À l'annulation
+-- de la réservation, l'annonce est attribuée dans la même transaction
+-- au premier inscrit (priorité décroissante, puis ordre d'inscription) :
+-- une réservation EN_ATTENTE est créée pour lui.
+-- ============================================================
+CREATE TABLE IF NOT EXISTS liste_attente (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    annonce_id INT NOT NULL,
+    client_id INT NOT NULL,
+    priorite INT NOT NULL DEFAULT 0,  -- Plus grande = servie d'abord (0 : ordre d'arrivée)
+    date_debut DATE,
+    date_fin DATE,
+    montant_total DECIMAL(10, 2) NOT NULL,  -- Devis au moment de l'inscription
+    statut ENUM('EN_ATTENTE', 'SERVIE', 'ANNULEE') NOT NULL DEFAULT 'EN_ATTENTE',
+    reservation_id INT,  -- Réservation créée lors de l'attribution
+    date_inscription DATETIME DEFAULT CURRENT_TIMESTAMP,
+    -- client_id tant que l'inscription est EN_ATTENTE, NULL ensuite :
+    -- une seule inscription en attente par (annonce, client), historique libre
+    client_en_attente INT AS (IF(statut = 'EN_ATTENTE', client_id, NULL)) STORED,
+
+    FOREIGN KEY (annonce_id) REFERENCES annonce(id) ON DELETE CASCADE,
+    FOREIGN KEY (client_id) REFERENCES user(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_client_en_attente (annonce_id, client_en_attente),
+
+    -- Tête de file en une lecture d'index, quelle que soit la longueur de la file
+    INDEX idx_file (annonce_id, statut, priorite DESC, id),
+    INDEX idx_client (client_id, statut)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ============================================================
+-- TABLE SUPPRESSION_LOG
+-- Journal des suppressions (tombstones) pour la synchronisation
+-- incrémentale : les clients retirent de leur réplica local les
+-- lignes supprimées depuis leur dernier ID de journal lu.
+-- ============================================================
+CREATE TABLE IF NOT EXISTS suppression_log (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entite ENUM('ANNONCE', 'RESERVATION') NOT NULL,
+    entite_id INT NOT NULL,
+    date_suppression DATETIME DEFAULT CURRENT_TIMESTAMP,
+
+    INDEX idx_entite (entite, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Remarque : les suppressions en cascade (annonce -> reservation) ne
+-- déclenchent pas les triggers MySQL ; le tombstone de l'annonce suffit.
+DROP TRIGGER IF EXISTS trg_annonce_suppression;
+CREATE TRIGGER trg_annonce_suppression AFTER DELETE ON annonce
+    FOR EACH ROW INSERT INTO suppression_log (entite, entite_id) VALUES ('ANNONCE', OLD.id);
+
+DROP TRIGGER IF EXISTS trg_reservation_suppression;
+CREATE TRIGGER trg_reservation_suppression AFTER DELETE ON reservation
+    FOR EACH ROW INSERT INTO suppression_log (entite, entite_id) VALUES ('RESERVATION', OLD.id);
+
+-- ============================================================
+-- TABLE BATTEMENT_REPLICATION
+-- Horodatage écrit chaque seconde sur le primaire par un seul écrivain,
+-- l'évènement evt_battement_replication (les clients ne font que lire) :
+-- son âge, lu sur un réplica, mesure le retard de réplication de celui-ci
+-- (utils.ReplicasLecture). Nécessite event_scheduler=ON sur le primaire
+-- (my.cnf ou SET GLOBAL) ; l'évènement répliqué reste inactif sur les
+-- réplicas.
+-- ============================================================
+CREATE TABLE IF NOT EXISTS battement_replication (
+    id TINYINT PRIMARY KEY,
+    instant TIMESTAMP(3) NOT NULL
+) ENGINE=InnoDB;
+
+INSERT IGNORE INTO battement_replication (id, instant) VALUES (1, NOW(3));
+
+CREATE EVENT IF NOT EXISTS evt_battement_replication
+    ON SCHEDULE EVERY 1 SECOND
+    DO UPDATE battement_replication SET instant = NOW(3) WHERE id = 1;
+
+-- ============================================================
+-- MIGRATION (bases créées avant la synchronisation incrémentale)
+-- ============================================================
+-- ALTER TABLE annonce ADD INDEX idx_modification (date_modification, id);
+-- ALTER TABLE reservation
+--     ADD COLUMN date_modification DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+--     ADD INDEX idx_modification (date_modification, id);
+-- ALTER TABLE annonce ADD COLUMN version INT NOT NULL DEFAULT 0;
+-- ALTER TABLE reservation ADD COLUMN version INT NOT NULL DEFAULT 0;
+-- ALTER TABLE reservation
+--     ADD INDEX idx_statut_fin (statut, date_fin),
+--     ADD INDEX idx_statut_creation (statut, date_creation);
+-- ALTER TABLE reservation ADD INDEX idx_statut_modification (statut, date_modification);
+-- ALTER TABLE annonce DROP INDEX idx_proprietaire,
+--     ADD INDEX idx_proprietaire (proprietaire_id, date_creation, id);
+-- Index composites (filtre + tri) : idx_type et les idx_statut des deux
+-- tables deviennent des préfixes redondants.
+-- ALTER TABLE annonce DROP INDEX idx_type, DROP INDEX idx_statut,
+--     ADD INDEX idx_statut_creation (statut, date_creation),
+--     ADD INDEX idx_type_statut_creation (type, statut, date_creation),
+--     ADD INDEX idx_statut_prix (statut, prix);
+-- ALTER TABLE reservation DROP INDEX idx_statut,
+--     ADD INDEX idx_annonce_creation (annonce_id, date_creation DESC),
+--     ADD INDEX idx_client_creation (client_id, date_creation);
+-- ALTER TABLE reservation DROP INDEX idx_annonce, DROP INDEX idx_client;
+-- ALTER TABLE reservation RENAME INDEX idx_annonce_creation TO idx_annonce,
+--     RENAME INDEX idx_client_creation TO idx_client;
+-- date_modification à la milliseconde, horloge du serveur.
+-- ALTER TABLE annonce MODIFY date_modification DATETIME(3)
+--     DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+-- ALTER TABLE reservation MODIFY date_modification DATETIME(3)
+--     DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+-- ALTER TABLE reservation_archive MODIFY date_modification DATETIME(3);
+-- Une seule inscription EN_ATTENTE par (annonce, client) ; retirer
+-- d'abord les doublons existants (garder le plus petit id).
+-- ALTER TABLE liste_attente
+--     ADD COLUMN client_en_attente INT AS (IF(statut = 'EN_ATTENTE', client_id, NULL)) STORED,
+--     ADD UNIQUE KEY uk_client_en_attente (annonce_id, client_en_attente);
+
 -- ============================================================
 -- DONNÉES DE TEST (optionnel)
 -- ============================================================
@@ -1,8 +1,11 @@
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import services.CycleVieReservations;
+import utils.LocalDatabase;
+import utils.MyDatabase;
+import utils.Navigation;
 
 /**
  * Point d'entrée de l'application AGRIFLOW - Module Marketplace.
@@ -10,10 +13,23 @@ import javafx.stage.Stage;
  */
 public class MainApp extends Application {
 
+    // Clôture des locations échues et expiration des demandes sans réponse
+    // (réglages cycle.* et archivage.* de utils.Configuration)
+    private final CycleVieReservations cycleVieReservations = new CycleVieReservations();
+
     @Override
     public void start(Stage primaryStage) throws Exception {
-        // Charger la vue principale
-        Parent root = FXMLLoader.load(getClass().getResource("/views/Marketplace.fxml"));
+        // Connexions en parallèle du chargement de l'interface : la fenêtre
+        // s'affiche sans attendre MySQL ni l'ouverture de la base locale
+        Thread connexion = new Thread(() -> {
+            LocalDatabase.getInstance();
+            MyDatabase.getInstance();
+        }, "db-connexion");
+        connexion.setDaemon(true);
+        connexion.start();
+
+        // Charger la vue principale (les annonces arrivent en arrière-plan)
+        Parent root = Navigation.demarrer("/views/Marketplace.fxml");
 
         // Configurer la fenêtre
         primaryStage.setTitle("🌾 AGRIFLOW - Marketplace");
@@ -23,6 +39,15 @@ public class MainApp extends Application {
 
         // Afficher
         primaryStage.show();
+
+        cycleVieReservations.demarrer();
+    }
+
+    @Override
+    public void stop() {
+        cycleVieReservations.arreter();
+        MyDatabase.getInstance().closeConnection();
+        LocalDatabase.getInstance().closeConnection();
     }
 
     public static void main(String[] args) {
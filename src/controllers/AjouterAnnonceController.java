@@ -1,25 +1,33 @@
 package controllers;
 
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.stage.FileChooser;
-import javafx.stage.Stage;
 import models.Annonce;
 import models.TypeAnnonce;
 import services.AnnonceService;
+import services.DoublonException;
+import services.OfflineQueue;
+import services.PublicationAnnonce;
+import services.SuggestionPrix;
+import utils.MyDatabase;
+import utils.Navigation;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class AjouterAnnonceController implements Initializable {
+public class AjouterAnnonceController implements Initializable, Navigation.Navigable {
 
     @FXML
     private TextField titreField;
@@ -41,8 +49,20 @@ public class AjouterAnnonceController implements Initializable {
     private Label imagePathLabel;
     @FXML
     private Label messageLabel;
+    @FXML
+    private Label prixConseilleLabel;
+
+    @FXML
+    private ProgressBar publicationProgress;
+    @FXML
+    private Button publierButton;
 
     private AnnonceService annonceService;
+    private OfflineQueue offlineQueue;
+    private PublicationAnnonce publication;
+    private Task<Annonce> publicationEnCours;
+    // Passe à false, une seule fois, à l'annulation ou au début de l'enregistrement
+    private AtomicBoolean publicationAnnulable;
     private String selectedImagePath;
 
     // Simuler l'utilisateur connecté (normalement vient de la session d'Ayoub)
@@ -58,9 +78,50 @@ public class AjouterAnnonceController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         annonceService = new AnnonceService();
+        offlineQueue = new OfflineQueue();
+        publication = new PublicationAnnonce(annonceService);
         typeCombo.getItems().addAll(TypeAnnonce.values());
         localisationCombo.getItems().addAll(GOUVERNORATS);
         dateDispoField.setValue(LocalDate.now());
+
+        // Prix conseillé mis à jour dès que le type ou la localisation change
+        typeCombo.valueProperty().addListener((obs, old, val) -> afficherPrixConseille());
+        localisationCombo.valueProperty().addListener((obs, old, val) -> afficherPrixConseille());
+    }
+
+    /**
+     * Médiane et fourchette p10 - p90 des annonces comparables, lues en
+     * mémoire (aucune requête).
+     */
+    private void afficherPrixConseille() {
+        SuggestionPrix.Suggestion suggestion = SuggestionPrix.getInstance()
+                .suggerer(typeCombo.getValue(), localisationCombo.getValue());
+        if (suggestion == null) {
+            prixConseilleLabel.setText("");
+            return;
+        }
+        prixConseilleLabel.setText(String.format("💡 Prix conseillé : %.2f TND (80 %% entre %.2f et %.2f TND, %s)",
+                suggestion.getMediane(), suggestion.getP10(), suggestion.getP90(),
+                suggestion.isNationale() ? "toute la Tunisie" : suggestion.getObservations() + " annonces"));
+    }
+
+    /**
+     * Vue réutilisée d'une navigation à l'autre : le formulaire repart vide.
+     */
+    @Override
+    public void onAffichage() {
+        titreField.clear();
+        descriptionArea.clear();
+        typeCombo.setValue(null);
+        prixField.clear();
+        localisationCombo.setValue(null);
+        prixConseilleLabel.setText("");
+        dateDispoField.setValue(LocalDate.now());
+        selectedImagePath = null;
+        imagePreview.setImage(null);
+        imagePlaceholder.setVisible(true);
+        imagePathLabel.setText("");
+        messageLabel.setText("");
     }
 
     @FXML
@@ -73,7 +134,8 @@ public class AjouterAnnonceController implements Initializable {
         File file = fileChooser.showOpenDialog(titreField.getScene().getWindow());
         if (file != null) {
             selectedImagePath = file.getAbsolutePath();
-            imagePreview.setImage(new Image(file.toURI().toString()));
+            // Décodée en arrière-plan à la taille de l'aperçu, quelle que soit celle du fichier
+            imagePreview.setImage(new Image(file.toURI().toString(), 250, 180, true, true, true));
             imagePlaceholder.setVisible(false);
             imagePathLabel.setText(file.getName());
         }
@@ -99,34 +161,140 @@ public class AjouterAnnonceController implements Initializable {
             return;
         }
 
+        double prix;
         try {
-            double prix = Double.parseDouble(prixField.getText());
-
-            Annonce annonce = new Annonce(
-                    titreField.getText(),
-                    descriptionArea.getText(),
-                    prix,
-                    typeCombo.getValue(),
-                    localisationCombo.getValue(),
-                    dateDispoField.getValue(),
-                    currentUserId);
-            annonce.setImagePath(selectedImagePath);
-
-            annonceService.add(annonce);
+            prix = Double.parseDouble(prixField.getText());
+        } catch (NumberFormatException e) {
+            showError("Prix invalide");
+            return;
+        }
+        Annonce annonce = new Annonce(
+                titreField.getText(),
+                descriptionArea.getText(),
+                prix,
+                typeCombo.getValue(),
+                localisationCombo.getValue(),
+                dateDispoField.getValue(),
+                currentUserId);
+        Path image = selectedImagePath != null ? Paths.get(selectedImagePath) : null;
+
+        lancerPublication(annonce, progression -> publication.publier(annonce, image, false, progression));
+    }
+
+    /**
+     * Exécute le pipeline de publication en arrière-plan : progression
+     * affichée sous le formulaire, annulable par le bouton Annuler jusqu'à
+     * l'enregistrement, retour à la liste dès que l'annonce est en base.
+     * L'annulation et le début de l'enregistrement se disputent le même
+     * drapeau : une fois l'écriture en base commencée, Annuler est ignoré
+     * (l'annonce serait en ligne alors que l'écran la dit annulée).
+     */
+    private void lancerPublication(Annonce annonce, Pipeline pipeline) {
+        AtomicBoolean annulable = new AtomicBoolean(true);
+        Task<Annonce> tache = new Task<>() {
+            @Override
+            protected Annonce call() throws Exception {
+                return pipeline.executer((etape, avancement) -> {
+                    if (etape == PublicationAnnonce.Etape.ENREGISTREMENT && avancement == 0
+                            && !annulable.compareAndSet(true, false)) {
+                        throw new CancellationException("Publication annulée");
+                    }
+                    updateMessage("⏳ " + etape.getLibelle() + "...");
+                    updateProgress(etape.ordinal() + avancement, PublicationAnnonce.Etape.values().length);
+                });
+            }
+        };
+        tache.messageProperty().addListener((obs, old, val) -> showSuccess(val));
+        publicationProgress.progressProperty().bind(tache.progressProperty());
+        publicationProgress.visibleProperty().bind(tache.runningProperty());
+        publierButton.disableProperty().bind(tache.runningProperty());
+
+        tache.setOnSucceeded(e -> {
+            if (tache.getValue() == null) {
+                showError("L'annonce existante a été supprimée entre-temps");
+                return;
+            }
             showSuccess("✅ Annonce publiée avec succès !");
+            handleRetour();
+        });
+        tache.setOnCancelled(e -> showError("Publication annulée"));
+        tache.setOnFailed(e -> {
+            Throwable erreur = tache.getException();
+            if (erreur instanceof DoublonException doublon) {
+                proposerFusion(annonce, doublon);
+            } else if (erreur instanceof SQLException sql && MyDatabase.isErreurConnexion(sql)
+                    && offlineQueue.isDisponible()) {
+                publierHorsLigne(annonce);
+            } else if (erreur instanceof IllegalArgumentException) {
+                showError(erreur.getMessage());
+            } else {
+                showError("Erreur: " + erreur.getMessage());
+            }
+        });
 
-            // Retour à la liste après 1 seconde
-            new Thread(() -> {
-                try {
-                    Thread.sleep(1000);
-                } catch (Exception e) {
-                }
-                javafx.application.Platform.runLater(this::handleRetour);
-            }).start();
+        publicationEnCours = tache;
+        publicationAnnulable = annulable;
+        publication.soumettre(tache);
+    }
 
-        } catch (NumberFormatException e) {
-            showError("Prix invalide");
-        } catch (Exception e) {
+    /**
+     * Étapes exécutées par la tâche de publication.
+     */
+    @FunctionalInterface
+    private interface Pipeline {
+        Annonce executer(PublicationAnnonce.Progression progression) throws Exception;
+    }
+
+    /**
+     * L'annonce double une annonce déjà en ligne du même propriétaire : on
+     * propose de mettre l'existante à jour plutôt que de la dupliquer.
+     */
+    private void proposerFusion(Annonce annonce, DoublonException doublon) {
+        ButtonType mettreAJour = new ButtonType("Mettre à jour l'existante", ButtonBar.ButtonData.YES);
+        ButtonType publierQuandMeme = new ButtonType("Publier quand même", ButtonBar.ButtonData.NO);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION,
+                "Vous avez déjà une annonce presque identique en ligne (annonce "
+                        + doublon.getAnnonceExistanteId() + ").\nVoulez-vous la mettre à jour ?",
+                mettreAJour, publierQuandMeme, ButtonType.CANCEL);
+        alert.setTitle("Annonce en double");
+        alert.setHeaderText(null);
+        ButtonType choix = alert.showAndWait().orElse(ButtonType.CANCEL);
+        Path image = selectedImagePath != null ? Paths.get(selectedImagePath) : null;
+        if (choix == mettreAJour) {
+            lancerPublication(annonce, progression -> publication.fusionner(doublon.getAnnonceExistanteId(),
+                    annonce, image, progression));
+        } else if (choix == publierQuandMeme) {
+            lancerPublication(annonce, progression -> publication.publier(annonce, image, true, progression));
+        } else {
+            messageLabel.setText("");
+        }
+    }
+
+    /**
+     * Annule la publication en cours tant qu'elle n'est pas en cours
+     * d'enregistrement, sinon revient à la liste.
+     */
+    @FXML
+    private void handleAnnuler() {
+        if (publicationEnCours != null && publicationEnCours.isRunning()) {
+            if (publicationAnnulable.compareAndSet(true, false)) {
+                publicationEnCours.cancel(true);
+            }
+            // Sinon l'enregistrement est parti : son issue s'affichera d'elle-même
+        } else {
+            handleRetour();
+        }
+    }
+
+    /**
+     * Publication sans réseau : l'annonce est mise en file et sera publiée
+     * automatiquement dès que la base centrale redevient joignable.
+     */
+    private void publierHorsLigne(Annonce annonce) {
+        try {
+            offlineQueue.publier(annonce);
+            showSuccess("📴 Hors-ligne : annonce enregistrée, elle sera publiée dès le retour du réseau.");
+        } catch (SQLException e) {
             showError("Erreur: " + e.getMessage());
         }
     }
@@ -134,9 +302,7 @@ public class AjouterAnnonceController implements Initializable {
     @FXML
     private void handleRetour() {
         try {
-            Parent root = FXMLLoader.load(getClass().getResource("/views/Marketplace.fxml"));
-            Stage stage = (Stage) titreField.getScene().getWindow();
-            stage.setScene(new Scene(root));
+            Navigation.naviguer(titreField, "/views/Marketplace.fxml");
         } catch (Exception e) {
             e.printStackTrace();
         }
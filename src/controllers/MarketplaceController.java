@@ -1,24 +1,53 @@
 package controllers;
 
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.stage.Stage;
 import models.Annonce;
+import models.InscriptionAttente;
+import models.Reservation;
+import models.StatutAnnonce;
+import models.SuiviAnnonce;
 import models.TypeAnnonce;
+import services.AdmissionReservations;
+import services.AnnonceIndisponibleException;
 import services.AnnonceService;
+import services.CatalogueColonnes;
+import services.DetecteurDoublons;
+import services.ListeAttenteService;
+import services.LocalAnnonceStore;
+import services.MarketplaceSync;
+import services.MoteurTarification;
+import services.OfflineQueue;
+import services.Recommandations;
+import services.ReservationService;
+import services.SnapshotCatalogue;
+import services.StockageImages;
+import services.SuggestionPrix;
+import utils.Configuration;
+import utils.MyDatabase;
+import utils.Navigation;
 
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
-public class MarketplaceController implements Initializable {
+public class MarketplaceController implements Initializable, Navigation.Navigable {
 
     @FXML
     private TextField searchField;
@@ -36,6 +65,37 @@ public class MarketplaceController implements Initializable {
     private FlowPane annoncesContainer;
 
     private AnnonceService annonceService;
+    private ReservationService reservationService;
+    private final MoteurTarification tarification = new MoteurTarification();
+    private final ListeAttenteService listeAttente = new ListeAttenteService();
+
+    // Simuler l'utilisateur connecté (normalement vient de la session d'Ayoub)
+    private int currentUserId = 1;
+
+    // Modèle des annonces affichées, indexé par ID (ordre d'affichage conservé)
+    private final Map<Integer, Annonce> annoncesAffichees = new LinkedHashMap<>();
+    private final Map<Integer, VBox> cartesAffichees = new HashMap<>();
+    private boolean filtreActif = false;
+    private boolean chargementTermine = false;
+    private MarketplaceSync sync;
+    private ScheduledExecutorService syncExecutor;
+
+    // Mode hors-ligne : réplica local + file des opérations à répliquer
+    private LocalAnnonceStore localStore;
+    private OfflineQueue offlineQueue;
+
+    // Catalogue complet en colonnes (comptages et filtres des tableaux de bord)
+    private CatalogueColonnes catalogue;
+    private SnapshotCatalogue snapshotCatalogue;
+
+    // "Annonces similaires" / "ont aussi loué", recalculées périodiquement
+    private final Recommandations recommandations = new Recommandations();
+
+    // Annonces chargées d'un coup dans le tableau de bord "Mes Annonces"
+    private static final int TAILLE_PAGE_MES_ANNONCES = 500;
+
+    // Nombre de cartes factices affichées pendant le chargement initial
+    private static final int NB_CARTES_SQUELETTE = 6;
 
     // Gouvernorats de Tunisie
     private final String[] GOUVERNORATS = {
@@ -48,6 +108,33 @@ public class MarketplaceController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         annonceService = new AnnonceService();
+        reservationService = new ReservationService();
+        sync = new MarketplaceSync(annonceService, reservationService);
+        sync.addListener(new MarketplaceSync.Listener() {
+            @Override
+            public void annoncesModifiees(List<Annonce> annonces) {
+                Platform.runLater(() -> appliquerDeltas(annonces));
+            }
+
+            @Override
+            public void annoncesSupprimees(List<Integer> ids) {
+                Platform.runLater(() -> {
+                    ids.forEach(MarketplaceController.this::retirerCarte);
+                    updateCount();
+                });
+            }
+        });
+
+        localStore = new LocalAnnonceStore();
+        offlineQueue = new OfflineQueue();
+        catalogue = new CatalogueColonnes();
+        snapshotCatalogue = new SnapshotCatalogue(catalogue);
+        sync.addListener(catalogue);
+        // Annonces libérées chez les autres : plus de refus anticipé
+        sync.addListener(AdmissionReservations.getInstance());
+        // Prix des annonces publiées ou modifiées par les autres
+        sync.addListener(SuggestionPrix.getInstance());
+        sync.addListener(DetecteurDoublons.getInstance());
 
         // Remplir les ComboBox
         typeCombo.getItems().add(null); // Option "Tous"
@@ -60,27 +147,250 @@ public class MarketplaceController implements Initializable {
             prixLabel.setText(String.format("%.0f TND", val.doubleValue()));
         });
 
-        // Charger les annonces au démarrage
+        // Charger les annonces en arrière-plan puis suivre les modifications :
+        // la fenêtre s'affiche tout de suite avec des cartes squelettes
         loadAnnonces();
+
+        // Écran suivant le plus probable, préparé pendant la consultation
+        Navigation.precharger("/views/AjouterAnnonce.fxml");
     }
 
     private void loadAnnonces() {
-        try {
-            List<Annonce> annonces = annonceService.getAnnoncesDisponibles();
-            displayAnnonces(annonces);
-        } catch (SQLException e) {
-            showError("Erreur lors du chargement des annonces: " + e.getMessage());
+        afficherSquelette();
+
+        Task<List<Annonce>> chargement = new Task<>() {
+            @Override
+            protected List<Annonce> call() throws SQLException {
+                // Réplica local d'abord (instantané), rattrapé par la synchronisation
+                Map<String, String> watermarks = Map.of();
+                if (localStore.isDisponible()) {
+                    sync.addListener(localStore);
+                    watermarks = localStore.getWatermarks();
+                    if (!watermarks.isEmpty()) {
+                        List<Annonce> locales = localStore.getAnnoncesDisponibles();
+                        sync.reprendre(watermarks);
+                        return locales;
+                    }
+                }
+
+                // Premier lancement (réplica vide) ou pas de base locale : lecture centrale,
+                // plutôt qu'un écran vide et une première synchronisation depuis l'origine
+                try {
+                    Instant debut = annonceService.getInstantServeur();
+                    List<Annonce> annonces = annonceService.getAnnoncesDisponibles();
+                    sync.demarrerDepuis(debut);
+                    if (localStore.isDisponible()) {
+                        // Réplica amorcé, et sa position persistée pour le prochain démarrage
+                        localStore.annoncesModifiees(annonces);
+                        localStore.cycleTermine(sync.getWatermarks());
+                    }
+                    return annonces;
+                } catch (SQLException e) {
+                    if (!MyDatabase.isErreurConnexion(e) || !localStore.isDisponible()) {
+                        throw e;
+                    }
+                    // Hors-ligne dès le premier lancement : réplica vide, rempli au retour du réseau
+                    sync.reprendre(watermarks);
+                    return localStore.getAnnoncesDisponibles();
+                }
+            }
+        };
+        chargement.setOnSucceeded(e -> {
+            filtreActif = false;
+            chargementTermine = true;
+            displayAnnonces(chargement.getValue());
+            chargerCatalogue();
+            recommandations.demarrer(Configuration.getInstance().get(Configuration.RECOMMANDATIONS_INTERVALLE_H),
+                    Configuration.getInstance().get(Configuration.RECOMMANDATIONS_DELAI_MIN));
+            demarrerSync();
+        });
+        chargement.setOnFailed(e -> showError(
+                "Erreur lors du chargement des annonces: " + chargement.getException().getMessage()));
+
+        Thread t = new Thread(chargement, "marketplace-chargement");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Charge le catalogue en colonnes après l'affichage des cartes, pour ne
+     * pas retarder le premier écran. Les deltas de synchronisation reçus
+     * pendant le chargement attendent la fin de celui-ci (verrou d'écriture).
+     *
+     * Au redémarrage, le snapshot du lancement précédent est mappé et seul le
+     * delta depuis sa position est lu ; hors-ligne, le catalogue restauré
+     * est utilisé tel quel et rattrapé au premier cycle de synchronisation.
+     */
+    private void chargerCatalogue() {
+        Thread t = new Thread(() -> {
+            try {
+                if (snapshotCatalogue.restaurer()) {
+                    catalogue.rattraper();
+                } else {
+                    catalogue.charger();
+                }
+                SuggestionPrix.getInstance().initialiser(catalogue);
+            } catch (SQLException e) {
+                System.err.println("⚠️ Catalogue en colonnes non à jour : " + e.getMessage());
+            }
+            snapshotCatalogue.demarrer(Configuration.getInstance().get(Configuration.SNAPSHOT_INTERVALLE_MIN));
+            try {
+                DetecteurDoublons.getInstance().initialiser();
+            } catch (SQLException e) {
+                System.err.println("⚠️ Détecteur de doublons non chargé : " + e.getMessage());
+            }
+            try {
+                annonceService.migrerImagesLocales(currentUserId, StockageImages.getInstance());
+            } catch (SQLException e) {
+                System.err.println("⚠️ Migration des images interrompue : " + e.getMessage());
+            }
+        }, "catalogue-chargement");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Cartes grises de la taille des vraies cartes, en attendant les données.
+     */
+    private void afficherSquelette() {
+        annoncesContainer.getChildren().clear();
+        countLabel.setText("(chargement...)");
+        for (int i = 0; i < NB_CARTES_SQUELETTE; i++) {
+            VBox card = new VBox(10);
+            card.setStyle("-fx-background-color: #eeeeee; -fx-padding: 15; -fx-background-radius: 10; " +
+                    "-fx-pref-width: 260; -fx-pref-height: 170;");
+            annoncesContainer.getChildren().add(card);
         }
     }
 
     private void displayAnnonces(List<Annonce> annonces) {
         annoncesContainer.getChildren().clear();
-        countLabel.setText("(" + annonces.size() + " résultats)");
+        annoncesAffichees.clear();
+        cartesAffichees.clear();
 
         for (Annonce annonce : annonces) {
             VBox card = createAnnonceCard(annonce);
+            annoncesAffichees.put(annonce.getId(), annonce);
+            cartesAffichees.put(annonce.getId(), card);
             annoncesContainer.getChildren().add(card);
         }
+        updateCount();
+    }
+
+    private void updateCount() {
+        countLabel.setText("(" + annoncesAffichees.size() + " résultats)");
+    }
+
+    // ==================== RAFRAÎCHISSEMENT INCRÉMENTAL ====================
+
+    /**
+     * Lance le polling des annonces modifiées (réservations, prix, nouvelles
+     * annonces des autres utilisateurs) sans recharger toute la liste.
+     */
+    private void demarrerSync() {
+        if (!chargementTermine || (syncExecutor != null && !syncExecutor.isShutdown())) {
+            return;
+        }
+        syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "marketplace-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncExecutor.scheduleWithFixedDelay(this::synchroniser,
+                0, Configuration.getInstance().get(Configuration.SYNC_INTERVALLE_S), TimeUnit.SECONDS);
+    }
+
+    private void arreterSync() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Retour sur la Marketplace (vue réutilisée) : défilement et résultats
+     * sont conservés, seuls les deltas survenus entre-temps sont rattrapés.
+     */
+    @Override
+    public void onAffichage() {
+        demarrerSync();
+    }
+
+    @Override
+    public void onMasquage() {
+        arreterSync();
+    }
+
+    /**
+     * Exécuté hors du thread JavaFX : réplique d'abord les opérations faites
+     * hors-ligne, puis le moteur de synchronisation notifie les deltas,
+     * appliqués ensuite sur le thread UI.
+     */
+    private void synchroniser() {
+        try {
+            if (offlineQueue.isDisponible()) {
+                List<String> conflits = offlineQueue.rejouer(annonceService, reservationService);
+                if (!conflits.isEmpty()) {
+                    Platform.runLater(() -> showInfo("⚠️ " + String.join("\n", conflits)));
+                }
+            }
+            sync.synchroniser();
+        } catch (SQLException e) {
+            if (MyDatabase.isErreurConnexion(e)) {
+                System.out.println("📴 Base centrale injoignable, mode hors-ligne.");
+            } else {
+                System.err.println("⚠️ Synchronisation de la Marketplace échouée : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applique les modifications carte par carte : retrait des annonces qui ne
+     * sont plus disponibles, mise à jour des cartes existantes, insertion des
+     * nouvelles annonces (uniquement sans filtre actif).
+     */
+    private void appliquerDeltas(List<Annonce> modifiees) {
+        for (Annonce annonce : modifiees) {
+            boolean affichee = annoncesAffichees.containsKey(annonce.getId());
+            if (!annonce.isDisponible()) {
+                if (affichee) {
+                    retirerCarte(annonce.getId());
+                }
+            } else if (affichee) {
+                remplacerCarte(annonce);
+            } else if (!filtreActif) {
+                insererCarte(annonce);
+            }
+        }
+        updateCount();
+    }
+
+    private void retirerCarte(int annonceId) {
+        annoncesAffichees.remove(annonceId);
+        VBox card = cartesAffichees.remove(annonceId);
+        if (card != null) {
+            annoncesContainer.getChildren().remove(card);
+        }
+    }
+
+    private void remplacerCarte(Annonce annonce) {
+        VBox ancienne = cartesAffichees.get(annonce.getId());
+        int index = annoncesContainer.getChildren().indexOf(ancienne);
+        VBox card = createAnnonceCard(annonce);
+        annoncesAffichees.put(annonce.getId(), annonce);
+        cartesAffichees.put(annonce.getId(), card);
+        if (index >= 0) {
+            annoncesContainer.getChildren().set(index, card);
+        } else {
+            annoncesContainer.getChildren().add(0, card);
+        }
+    }
+
+    private void insererCarte(Annonce annonce) {
+        // Les plus récentes en premier, comme getAnnoncesDisponibles()
+        VBox card = createAnnonceCard(annonce);
+        annoncesAffichees.put(annonce.getId(), annonce);
+        cartesAffichees.put(annonce.getId(), card);
+        annoncesContainer.getChildren().add(0, card);
     }
 
     private VBox createAnnonceCard(Annonce annonce) {
@@ -106,10 +416,59 @@ public class MarketplaceController implements Initializable {
         reserverBtn.setStyle("-fx-background-color: #2e7d32; -fx-text-fill: white; -fx-cursor: hand;");
         reserverBtn.setOnAction(e -> handleReserverAnnonce(annonce));
 
-        card.getChildren().addAll(type, titre, localisation, prix, reserverBtn);
+        Button similairesBtn = new Button("🔎 Similaires");
+        similairesBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: #2e7d32; -fx-cursor: hand;");
+        similairesBtn.setOnAction(e -> handleVoirSimilaires(annonce));
+
+        card.getChildren().addAll(type, titre, localisation, prix, new HBox(10, reserverBtn, similairesBtn));
         return card;
     }
 
+    /**
+     * Recommandations de l'annonce, servies depuis la mémoire ; leurs détails
+     * sont lus en une seule requête.
+     */
+    private void handleVoirSimilaires(Annonce annonce) {
+        int[] similaires = recommandations.getSimilaires(annonce.getId());
+        int[] aussiLouees = recommandations.getAussiLouees(annonce.getId());
+        if (similaires.length == 0 && aussiLouees.length == 0) {
+            recommandations.demanderCalcul();
+            showInfo(recommandations.getDateCalcul() == null
+                    ? "Les recommandations sont en cours de calcul, réessayez dans un instant."
+                    : "Aucune recommandation pour cette annonce.");
+            return;
+        }
+        try {
+            Map<Integer, Annonce> details = annonceService.getByIds(IntStream.concat(
+                    IntStream.of(similaires), IntStream.of(aussiLouees)).toArray());
+            StringBuilder texte = new StringBuilder();
+            ajouterRecommandations(texte, "Annonces similaires", similaires, details);
+            ajouterRecommandations(texte, "Les agriculteurs ont aussi loué", aussiLouees, details);
+
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, texte.toString().trim(), ButtonType.OK);
+            alert.setTitle("Recommandations");
+            alert.setHeaderText(annonce.getTitre());
+            alert.showAndWait();
+        } catch (SQLException e) {
+            showError("Erreur: " + e.getMessage());
+        }
+    }
+
+    private void ajouterRecommandations(StringBuilder texte, String titre, int[] ids, Map<Integer, Annonce> details) {
+        if (ids.length == 0) {
+            return;
+        }
+        texte.append(titre).append(" :\n");
+        for (int id : ids) {
+            Annonce a = details.get(id);
+            if (a != null) {
+                texte.append("   • ").append(a.getTitre()).append(" — 📍 ").append(a.getLocalisation())
+                        .append(String.format(" — %.2f TND", a.getPrix())).append('\n');
+            }
+        }
+        texte.append('\n');
+    }
+
     @FXML
     private void handleSearch() {
         try {
@@ -120,7 +479,10 @@ public class MarketplaceController implements Initializable {
                 loc = null;
             Double prixMax = prixSlider.getValue();
 
-            List<Annonce> results = annonceService.searchAdvanced(keyword, type, loc, prixMax);
+            List<Annonce> results = localStore.isDisponible()
+                    ? localStore.searchAdvanced(keyword, type, loc, prixMax)
+                    : annonceService.searchAdvanced(keyword, type, loc, prixMax);
+            filtreActif = true;
             displayAnnonces(results);
         } catch (SQLException e) {
             showError("Erreur de recherche: " + e.getMessage());
@@ -130,39 +492,155 @@ public class MarketplaceController implements Initializable {
     @FXML
     private void handleNouvelleAnnonce() {
         try {
-            Parent root = FXMLLoader.load(getClass().getResource("/views/AjouterAnnonce.fxml"));
-            Stage stage = (Stage) annoncesContainer.getScene().getWindow();
-            stage.setScene(new Scene(root));
+            Navigation.naviguer(annoncesContainer, "/views/AjouterAnnonce.fxml");
         } catch (Exception e) {
             showError("Erreur: " + e.getMessage());
         }
     }
 
+    /**
+     * Tableau de bord du propriétaire : ses annonces, leurs réservations et
+     * les agrégats, chargés hors du thread JavaFX en deux requêtes.
+     */
     @FXML
     private void handleMesAnnonces() {
-        // TODO: Filtrer par currentUser.getId()
-        showInfo("Fonctionnalité 'Mes Annonces' - À implémenter avec la session utilisateur");
+        Task<List<SuiviAnnonce>> chargement = new Task<>() {
+            @Override
+            protected List<SuiviAnnonce> call() throws Exception {
+                return reservationService.getMesAnnonces(currentUserId, 0, TAILLE_PAGE_MES_ANNONCES);
+            }
+        };
+        chargement.setOnSucceeded(e -> afficherMesAnnonces(chargement.getValue()));
+        chargement.setOnFailed(e -> showError(
+                "Erreur lors du chargement de vos annonces: " + chargement.getException().getMessage()));
+
+        Thread t = new Thread(chargement, "mes-annonces");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void afficherMesAnnonces(List<SuiviAnnonce> suivis) {
+        VBox lignes = new VBox(12);
+        lignes.setStyle("-fx-padding: 10;");
+        int enAttente = 0;
+        double revenus = 0;
+        for (SuiviAnnonce suivi : suivis) {
+            Annonce annonce = suivi.getAnnonce();
+            Label titre = new Label(annonce.getTitre() + " — " + annonce.getStatut().getLibelle());
+            titre.setStyle("-fx-font-weight: bold;");
+            Label resume = new Label(suivi.getNbEnAttente() + " demande(s) en attente · "
+                    + String.format("%.2f TND à venir", suivi.getRevenusAVenir()));
+            resume.setStyle("-fx-text-fill: #2e7d32;");
+            VBox ligne = new VBox(4, titre, resume);
+            for (Reservation r : suivi.getReservations()) {
+                String periode = r.getDateDebut() != null ? " du " + r.getDateDebut() + " au " + r.getDateFin() : "";
+                Label reservation = new Label("   • " + r.getStatut().getLibelle() + " — client #" + r.getClientId()
+                        + periode + String.format(" — %.2f TND", r.getMontantTotal()));
+                reservation.setStyle("-fx-text-fill: #666;");
+                ligne.getChildren().add(reservation);
+            }
+            lignes.getChildren().add(ligne);
+            enAttente += suivi.getNbEnAttente();
+            revenus += suivi.getRevenusAVenir();
+        }
+
+        ScrollPane defilement = new ScrollPane(lignes);
+        defilement.setFitToWidth(true);
+        defilement.setPrefSize(560, 480);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Mes Annonces");
+        alert.setHeaderText(suivis.size() + " annonce(s) · " + enAttente + " demande(s) en attente · "
+                + String.format("%.2f TND à venir", revenus));
+        alert.getDialogPane().setContent(defilement);
+        alert.showAndWait();
     }
 
     private void handleReserverAnnonce(Annonce annonce) {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("Confirmer la réservation");
         confirm.setHeaderText("Réserver: " + annonce.getTitre());
-        confirm.setContentText("Voulez-vous réserver ce matériel pour " + annonce.getPrix() + " TND ?");
+        // Période indicative : une semaine à partir d'aujourd'hui, saison comprise
+        LocalDate debut = annonce.getType().isLocation() ? LocalDate.now() : null;
+        LocalDate fin = debut != null ? debut.plusDays(7) : null;
+        if (debut != null) {
+            confirm.setContentText("Voulez-vous réserver ce matériel ?\n"
+                    + String.format("%.2f TND / jour", annonce.getPrix()) + " - "
+                    + tarification.devis(annonce, debut, fin) + " TND pour 7 jours");
+        } else {
+            confirm.setContentText("Voulez-vous réserver ce produit pour "
+                    + tarification.devis(annonce, null, null) + " TND ?");
+        }
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 try {
-                    annonceService.reserverAnnonce(annonce.getId());
+                    // Réservation créée pour le client : son annulation servira la liste d'attente
+                    reservationService.reserver(annonce, currentUserId, debut, fin);
                     showInfo("✅ Réservation effectuée avec succès !");
-                    loadAnnonces(); // Rafraîchir
+                    retirerCarte(annonce.getId()); // Plus disponible : seule sa carte disparaît
+                    updateCount();
+                } catch (AnnonceIndisponibleException e) {
+                    proposerListeAttente(annonce);
+                    retirerCarte(annonce.getId());
+                    updateCount();
                 } catch (SQLException e) {
-                    showError("Erreur: " + e.getMessage());
+                    if (MyDatabase.isErreurConnexion(e) && offlineQueue.isDisponible()) {
+                        reserverHorsLigne(annonce, debut, fin);
+                    } else {
+                        showError("Erreur: " + e.getMessage());
+                    }
                 }
             }
         });
     }
 
+    /**
+     * Réservation perdue : propose de rejoindre la liste d'attente de
+     * l'annonce, qui sera attribuée automatiquement si la réservation en
+     * cours est annulée.
+     */
+    private void proposerListeAttente(Annonce annonce) {
+        try {
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle("Annonce déjà réservée");
+            alert.setHeaderText("⚠️ Cette annonce vient d'être réservée par un autre agriculteur.");
+            alert.setContentText("Rejoindre la liste d'attente ? ("
+                    + listeAttente.getTaille(annonce.getId()) + " agriculteur(s) avant vous)\n"
+                    + "Elle vous sera attribuée automatiquement si la réservation est annulée.");
+            if (alert.showAndWait().filter(r -> r == ButtonType.OK).isEmpty())
+                return;
+
+            // Même période indicative que le devis : une semaine à partir d'aujourd'hui
+            LocalDate debut = annonce.getType().isLocation() ? LocalDate.now() : null;
+            LocalDate fin = debut != null ? debut.plusDays(7) : null;
+            InscriptionAttente inscription = new InscriptionAttente(annonce.getId(), currentUserId, debut, fin,
+                    tarification.devis(annonce, debut, fin).doubleValue());
+            boolean inscrit = listeAttente.inscrire(inscription);
+            int position = listeAttente.getPosition(annonce.getId(), currentUserId);
+            showInfo((inscrit ? "✅ Inscrit en liste d'attente" : "Vous êtes déjà en liste d'attente")
+                    + " : position " + position + ".");
+        } catch (SQLException e) {
+            showError("Erreur: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Réservation sans réseau : mise en file, appliquée tout de suite au
+     * réplica local, confirmée ou signalée en conflit à la reconnexion.
+     */
+    private void reserverHorsLigne(Annonce annonce, LocalDate debut, LocalDate fin) {
+        try {
+            offlineQueue.reserver(annonce.getId(), currentUserId, debut, fin);
+            localStore.changerStatut(annonce.getId(), StatutAnnonce.RESERVE);
+            retirerCarte(annonce.getId());
+            updateCount();
+            showInfo("📴 Hors-ligne : réservation enregistrée, elle sera transmise dès le retour du réseau.");
+        } catch (SQLException e) {
+            showError("Erreur: " + e.getMessage());
+        }
+    }
+
     private void showError(String msg) {
         Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
         alert.showAndWait();
@@ -2,6 +2,7 @@ package models;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 /**
  * Entité Annonce - Représente une offre de location ou vente sur la
@@ -10,6 +11,19 @@ import java.time.LocalDateTime;
  */
 public class Annonce {
 
+    // ==================== SUIVI DES MODIFICATIONS ====================
+    // Un bit par colonne modifiable : AnnonceService.update n'écrit que les
+    // colonnes modifiées depuis la lecture (ou le dernier enregistrement).
+    public static final int CHAMP_TITRE = 1;
+    public static final int CHAMP_DESCRIPTION = 1 << 1;
+    public static final int CHAMP_PRIX = 1 << 2;
+    public static final int CHAMP_TYPE = 1 << 3;
+    public static final int CHAMP_STATUT = 1 << 4;
+    public static final int CHAMP_IMAGE_PATH = 1 << 5;
+    public static final int CHAMP_LOCALISATION = 1 << 6;
+    public static final int CHAMP_DATE_DISPONIBILITE = 1 << 7;
+    public static final int CHAMP_DATE_FIN_DISPONIBILITE = 1 << 8;
+
     private int id;
     private String titre;
     private String description;
@@ -26,6 +40,11 @@ public class Annonce {
     // Clé étrangère vers User (géré par Ayoub)
     private int proprietaireId; // ID de l'agriculteur qui poste l'annonce
 
+    // Verrouillage optimiste : version lue en base, vérifiée à l'UPDATE
+    private int version;
+
+    private int champsModifies; // Bitset des CHAMP_* modifiés
+
     // ==================== CONSTRUCTEURS ====================
 
     public Annonce() {
@@ -82,8 +101,10 @@ public class Annonce {
     }
 
     public void setTitre(String titre) {
-        this.titre = titre;
-        this.dateModification = LocalDateTime.now();
+        if (!Objects.equals(this.titre, titre)) {
+            this.titre = titre;
+            marquer(CHAMP_TITRE);
+        }
     }
 
     public String getDescription() {
@@ -91,8 +112,10 @@ public class Annonce {
     }
 
     public void setDescription(String description) {
-        this.description = description;
-        this.dateModification = LocalDateTime.now();
+        if (!Objects.equals(this.description, description)) {
+            this.description = description;
+            marquer(CHAMP_DESCRIPTION);
+        }
     }
 
     public double getPrix() {
@@ -100,8 +123,10 @@ public class Annonce {
     }
 
     public void setPrix(double prix) {
-        this.prix = prix;
-        this.dateModification = LocalDateTime.now();
+        if (this.prix != prix) {
+            this.prix = prix;
+            marquer(CHAMP_PRIX);
+        }
     }
 
     public TypeAnnonce getType() {
@@ -109,8 +134,10 @@ public class Annonce {
     }
 
     public void setType(TypeAnnonce type) {
-        this.type = type;
-        this.dateModification = LocalDateTime.now();
+        if (this.type != type) {
+            this.type = type;
+            marquer(CHAMP_TYPE);
+        }
     }
 
     public StatutAnnonce getStatut() {
@@ -118,8 +145,10 @@ public class Annonce {
     }
 
     public void setStatut(StatutAnnonce statut) {
-        this.statut = statut;
-        this.dateModification = LocalDateTime.now();
+        if (this.statut != statut) {
+            this.statut = statut;
+            marquer(CHAMP_STATUT);
+        }
     }
 
     public String getImagePath() {
@@ -127,8 +156,10 @@ public class Annonce {
     }
 
     public void setImagePath(String imagePath) {
-        this.imagePath = imagePath;
-        this.dateModification = LocalDateTime.now();
+        if (!Objects.equals(this.imagePath, imagePath)) {
+            this.imagePath = imagePath;
+            marquer(CHAMP_IMAGE_PATH);
+        }
     }
 
     public String getLocalisation() {
@@ -136,8 +167,10 @@ public class Annonce {
     }
 
     public void setLocalisation(String localisation) {
-        this.localisation = localisation;
-        this.dateModification = LocalDateTime.now();
+        if (!Objects.equals(this.localisation, localisation)) {
+            this.localisation = localisation;
+            marquer(CHAMP_LOCALISATION);
+        }
     }
 
     public LocalDate getDateDisponibilite() {
@@ -145,8 +178,10 @@ public class Annonce {
     }
 
     public void setDateDisponibilite(LocalDate dateDisponibilite) {
-        this.dateDisponibilite = dateDisponibilite;
-        this.dateModification = LocalDateTime.now();
+        if (!Objects.equals(this.dateDisponibilite, dateDisponibilite)) {
+            this.dateDisponibilite = dateDisponibilite;
+            marquer(CHAMP_DATE_DISPONIBILITE);
+        }
     }
 
     public LocalDate getDateFinDisponibilite() {
@@ -154,8 +189,10 @@ public class Annonce {
     }
 
     public void setDateFinDisponibilite(LocalDate dateFinDisponibilite) {
-        this.dateFinDisponibilite = dateFinDisponibilite;
-        this.dateModification = LocalDateTime.now();
+        if (!Objects.equals(this.dateFinDisponibilite, dateFinDisponibilite)) {
+            this.dateFinDisponibilite = dateFinDisponibilite;
+            marquer(CHAMP_DATE_FIN_DISPONIBILITE);
+        }
     }
 
     public LocalDateTime getDateCreation() {
@@ -182,6 +219,44 @@ public class Annonce {
         this.proprietaireId = proprietaireId;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    // ==================== SUIVI DES MODIFICATIONS ====================
+
+    private void marquer(int champ) {
+        champsModifies |= champ;
+    }
+
+    /**
+     * Indique si un champ (CHAMP_*) a été modifié depuis le dernier
+     * enregistrement.
+     */
+    public boolean isModifie(int champ) {
+        return (champsModifies & champ) != 0;
+    }
+
+    public boolean hasModifications() {
+        return champsModifies != 0;
+    }
+
+    public int getChampsModifies() {
+        return champsModifies;
+    }
+
+    /**
+     * Marque l'annonce comme synchronisée avec la base (après lecture ou
+     * enregistrement).
+     */
+    public void clearModifications() {
+        champsModifies = 0;
+    }
+
     // ==================== MÉTHODES UTILITAIRES ====================
 
     /**
@@ -196,8 +271,7 @@ public class Annonce {
      */
     public void reserver() {
         if (isDisponible()) {
-            this.statut = StatutAnnonce.RESERVE;
-            this.dateModification = LocalDateTime.now();
+            setStatut(StatutAnnonce.RESERVE);
         }
     }
 
@@ -206,8 +280,7 @@ public class Annonce {
      */
     public void confirmerLocation() {
         if (this.statut == StatutAnnonce.RESERVE) {
-            this.statut = StatutAnnonce.LOUE;
-            this.dateModification = LocalDateTime.now();
+            setStatut(StatutAnnonce.LOUE);
         }
     }
 
@@ -216,8 +289,7 @@ public class Annonce {
      */
     public void confirmerVente() {
         if (this.statut == StatutAnnonce.RESERVE) {
-            this.statut = StatutAnnonce.VENDU;
-            this.dateModification = LocalDateTime.now();
+            setStatut(StatutAnnonce.VENDU);
         }
     }
 
@@ -225,8 +297,7 @@ public class Annonce {
      * Remet l'annonce en disponible (annulation ou fin de location).
      */
     public void liberer() {
-        this.statut = StatutAnnonce.DISPONIBLE;
-        this.dateModification = LocalDateTime.now();
+        setStatut(StatutAnnonce.DISPONIBLE);
     }
 
     @Override
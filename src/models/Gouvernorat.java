@@ -0,0 +1,77 @@
+package models;
+
+import java.text.Normalizer;
+
+/**
+ * Les 24 gouvernorats de Tunisie. La localisation d'une annonce est saisie
+ * librement ("Béja", "Sfax ville", "Nabeul - Hammamet"...) : ce référentiel
+ * permet de la ramener à un code compact pour les analyses.
+ */
+public enum Gouvernorat {
+    TUNIS("Tunis"),
+    ARIANA("Ariana"),
+    BEN_AROUS("Ben Arous"),
+    MANOUBA("Manouba"),
+    NABEUL("Nabeul"),
+    ZAGHOUAN("Zaghouan"),
+    BIZERTE("Bizerte"),
+    BEJA("Béja"),
+    JENDOUBA("Jendouba"),
+    LE_KEF("Le Kef"),
+    SILIANA("Siliana"),
+    SOUSSE("Sousse"),
+    MONASTIR("Monastir"),
+    MAHDIA("Mahdia"),
+    SFAX("Sfax"),
+    KAIROUAN("Kairouan"),
+    KASSERINE("Kasserine"),
+    SIDI_BOUZID("Sidi Bouzid"),
+    GABES("Gabès"),
+    MEDENINE("Médenine"),
+    TATAOUINE("Tataouine"),
+    GAFSA("Gafsa"),
+    TOZEUR("Tozeur"),
+    KEBILI("Kébili"),
+    AUTRE("Autre"); // Localisation vide ou non reconnue
+
+    private final String libelle;
+    private final String cle; // Libellé normalisé (minuscules, sans accents)
+
+    Gouvernorat(String libelle) {
+        this.libelle = libelle;
+        this.cle = normaliser(libelle);
+    }
+
+    public String getLibelle() {
+        return libelle;
+    }
+
+    /**
+     * Gouvernorat d'une localisation libre : premier gouvernorat dont le nom
+     * apparaît dans le texte, sans tenir compte de la casse ni des accents.
+     */
+    public static Gouvernorat depuisLocalisation(String localisation) {
+        if (localisation == null || localisation.isBlank()) {
+            return AUTRE;
+        }
+        String texte = normaliser(localisation);
+        for (Gouvernorat g : values()) {
+            if (g != AUTRE && texte.contains(g.cle)) {
+                return g;
+            }
+        }
+        // "Kef" sans article
+        return texte.contains("kef") ? LE_KEF : AUTRE;
+    }
+
+    private static String normaliser(String texte) {
+        return Normalizer.normalize(texte, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return libelle;
+    }
+}
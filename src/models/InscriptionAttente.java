@@ -0,0 +1,157 @@
+package models;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Entité InscriptionAttente - Un agriculteur en liste d'attente sur une
+ * annonce déjà réservée. Servie automatiquement à l'annulation de la
+ * réservation en cours (priorité décroissante, puis ordre d'inscription).
+ */
+public class InscriptionAttente {
+
+    private int id;
+    private int annonceId; // FK vers Annonce
+    private int clientId; // FK vers User
+    private int priorite; // Plus grande = servie d'abord
+    private LocalDate dateDebut; // Période souhaitée (null si vente)
+    private LocalDate dateFin;
+    private double montantTotal; // Devis au moment de l'inscription
+    private StatutInscription statut;
+    private Integer reservationId; // Réservation créée à l'attribution
+    private LocalDateTime dateInscription;
+
+    /**
+     * Statuts possibles pour une inscription.
+     */
+    public enum StatutInscription {
+        EN_ATTENTE("En attente"), // Dans la file
+        SERVIE("Servie"), // Annonce attribuée (réservation créée)
+        ANNULEE("Annulée"); // Retirée par l'agriculteur
+
+        private final String libelle;
+
+        StatutInscription(String libelle) {
+            this.libelle = libelle;
+        }
+
+        public String getLibelle() {
+            return libelle;
+        }
+
+        @Override
+        public String toString() {
+            return libelle;
+        }
+    }
+
+    // ==================== CONSTRUCTEURS ====================
+
+    public InscriptionAttente() {
+        this.statut = StatutInscription.EN_ATTENTE;
+        this.dateInscription = LocalDateTime.now();
+    }
+
+    public InscriptionAttente(int annonceId, int clientId, LocalDate dateDebut, LocalDate dateFin,
+            double montantTotal) {
+        this();
+        this.annonceId = annonceId;
+        this.clientId = clientId;
+        this.dateDebut = dateDebut;
+        this.dateFin = dateFin;
+        this.montantTotal = montantTotal;
+    }
+
+    // ==================== GETTERS & SETTERS ====================
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getAnnonceId() {
+        return annonceId;
+    }
+
+    public void setAnnonceId(int annonceId) {
+        this.annonceId = annonceId;
+    }
+
+    public int getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(int clientId) {
+        this.clientId = clientId;
+    }
+
+    public int getPriorite() {
+        return priorite;
+    }
+
+    public void setPriorite(int priorite) {
+        this.priorite = priorite;
+    }
+
+    public LocalDate getDateDebut() {
+        return dateDebut;
+    }
+
+    public void setDateDebut(LocalDate dateDebut) {
+        this.dateDebut = dateDebut;
+    }
+
+    public LocalDate getDateFin() {
+        return dateFin;
+    }
+
+    public void setDateFin(LocalDate dateFin) {
+        this.dateFin = dateFin;
+    }
+
+    public double getMontantTotal() {
+        return montantTotal;
+    }
+
+    public void setMontantTotal(double montantTotal) {
+        this.montantTotal = montantTotal;
+    }
+
+    public StatutInscription getStatut() {
+        return statut;
+    }
+
+    public void setStatut(StatutInscription statut) {
+        this.statut = statut;
+    }
+
+    public Integer getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(Integer reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    public LocalDateTime getDateInscription() {
+        return dateInscription;
+    }
+
+    public void setDateInscription(LocalDateTime dateInscription) {
+        this.dateInscription = dateInscription;
+    }
+
+    @Override
+    public String toString() {
+        return "InscriptionAttente{" +
+                "id=" + id +
+                ", annonceId=" + annonceId +
+                ", clientId=" + clientId +
+                ", priorite=" + priorite +
+                ", statut=" + statut +
+                '}';
+    }
+}
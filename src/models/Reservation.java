@@ -18,6 +18,8 @@ public class Reservation {
     private StatutReservation statut;
     private String commentaire; // Message optionnel du client
     private LocalDateTime dateCreation;
+    private LocalDateTime dateModification; // Maintenue par MySQL (ON UPDATE)
+    private int version; // Verrouillage optimiste
 
     /**
      * Statuts possibles pour une réservation.
@@ -151,6 +153,22 @@ public class Reservation {
         this.dateCreation = dateCreation;
     }
 
+    public LocalDateTime getDateModification() {
+        return dateModification;
+    }
+
+    public void setDateModification(LocalDateTime dateModification) {
+        this.dateModification = dateModification;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     // ==================== MÉTHODES UTILITAIRES ====================
 
     /**
@@ -0,0 +1,56 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ligne du tableau de bord "Mes Annonces" : une annonce du propriétaire,
+ * ses réservations et leurs agrégats (calculés par la base).
+ */
+public class SuiviAnnonce {
+
+    private final Annonce annonce;
+    private final int nbEnAttente; // Demandes à confirmer
+    private final double revenusAVenir; // Réservations en cours ou à venir (EN_ATTENTE / CONFIRMEE)
+    private List<Reservation> reservations = new ArrayList<>();
+
+    // ==================== CONSTRUCTEURS ====================
+
+    public SuiviAnnonce(Annonce annonce, int nbEnAttente, double revenusAVenir) {
+        this.annonce = annonce;
+        this.nbEnAttente = nbEnAttente;
+        this.revenusAVenir = revenusAVenir;
+    }
+
+    // ==================== GETTERS & SETTERS ====================
+
+    public Annonce getAnnonce() {
+        return annonce;
+    }
+
+    public int getNbEnAttente() {
+        return nbEnAttente;
+    }
+
+    public double getRevenusAVenir() {
+        return revenusAVenir;
+    }
+
+    public List<Reservation> getReservations() {
+        return reservations;
+    }
+
+    public void setReservations(List<Reservation> reservations) {
+        this.reservations = reservations;
+    }
+
+    @Override
+    public String toString() {
+        return "SuiviAnnonce{" +
+                "annonceId=" + annonce.getId() +
+                ", nbEnAttente=" + nbEnAttente +
+                ", revenusAVenir=" + revenusAVenir +
+                ", reservations=" + reservations.size() +
+                '}';
+    }
+}
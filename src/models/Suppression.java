@@ -0,0 +1,57 @@
+package models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entrée du journal des suppressions (tombstone).
+ * Alimenté par les triggers de suppression_log, il permet aux réplicas
+ * locaux de retirer les lignes supprimées lors d'une synchronisation
+ * incrémentale.
+ */
+public class Suppression {
+
+    public static final String ENTITE_ANNONCE = "ANNONCE";
+    public static final String ENTITE_RESERVATION = "RESERVATION";
+
+    private long id; // ID du journal (ordre des suppressions)
+    private String entite; // ANNONCE ou RESERVATION
+    private int entiteId; // ID de la ligne supprimée
+    private LocalDateTime dateSuppression;
+
+    // ==================== CONSTRUCTEURS ====================
+
+    public Suppression(long id, String entite, int entiteId, LocalDateTime dateSuppression) {
+        this.id = id;
+        this.entite = entite;
+        this.entiteId = entiteId;
+        this.dateSuppression = dateSuppression;
+    }
+
+    // ==================== GETTERS ====================
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEntite() {
+        return entite;
+    }
+
+    public int getEntiteId() {
+        return entiteId;
+    }
+
+    public LocalDateTime getDateSuppression() {
+        return dateSuppression;
+    }
+
+    @Override
+    public String toString() {
+        return "Suppression{" +
+                "id=" + id +
+                ", entite=" + entite +
+                ", entiteId=" + entiteId +
+                ", dateSuppression=" + dateSuppression +
+                '}';
+    }
+}
@@ -6,29 +6,35 @@ package models;
  */
 public enum TypeAnnonce {
     // Matériel Agricole - Location
-    TRACTEUR("Tracteur"),
-    MOISSONNEUSE("Moissonneuse-batteuse"),
-    SEMOIR("Semoir"),
-    PULVERISATEUR("Pulvérisateur"),
-    REMORQUE("Remorque agricole"),
-    IRRIGATION("Système d'irrigation"),
+    TRACTEUR("Tracteur", true),
+    MOISSONNEUSE("Moissonneuse-batteuse", true),
+    SEMOIR("Semoir", true),
+    PULVERISATEUR("Pulvérisateur", true),
+    REMORQUE("Remorque agricole", true),
+    IRRIGATION("Système d'irrigation", true),
     
     // Produits - Vente
-    SEMENCES("Semences"),
-    ENGRAIS("Engrais"),
-    PRODUIT_RECOLTE("Produit de récolte"),
-    AUTRE("Autre");
+    SEMENCES("Semences", false),
+    ENGRAIS("Engrais", false),
+    PRODUIT_RECOLTE("Produit de récolte", false),
+    AUTRE("Autre", false);
 
     private final String libelle;
+    private final boolean location; // true : prix à la journée, false : prix de vente
 
-    TypeAnnonce(String libelle) {
+    TypeAnnonce(String libelle, boolean location) {
         this.libelle = libelle;
+        this.location = location;
     }
 
     public String getLibelle() {
         return libelle;
     }
 
+    public boolean isLocation() {
+        return location;
+    }
+
     @Override
     public String toString() {
         return libelle;
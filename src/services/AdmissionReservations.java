@@ -0,0 +1,238 @@
+package services;
+
+import models.Annonce;
+import models.StatutAnnonce;
+import utils.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contrôle d'admission des réservations, en mémoire, devant
+ * {@link AnnonceService#reserverAnnonce} : en pleine saison, des dizaines de
+ * clics "Réserver" arrivent sur la même moissonneuse ; un seul part vers
+ * MySQL, les autres sont refusés immédiatement.
+ *
+ * Chaque annonce a au plus un état : EN_COURS (une tentative est partie
+ * vers la base) ou INDISPONIBLE (la base vient de dire qu'elle est prise).
+ * La base reste l'arbitre : un état n'est qu'un refus anticipé, qui
+ * expire (cache.admission.dureeVieMs, voir {@link Configuration}) et est effacé dès que l'annonce est
+ * libérée (ici ou chez un autre utilisateur, via la synchronisation).
+ *
+ * Table id -> état découpée en segments indépendants (verrou par segment,
+ * index {@link CatalogueColonnes.IndexEntier} dans chacun) : deux annonces
+ * différentes ne se disputent presque jamais le même verrou.
+ */
+public class AdmissionReservations implements MarketplaceSync.Listener {
+
+    private static final int BITS_SEGMENTS = 6;
+    private static final int NB_SEGMENTS = 1 << BITS_SEGMENTS;
+
+    private static final byte EN_COURS = 1;
+    private static final byte INDISPONIBLE = 2;
+
+    // ==================== SINGLETON ====================
+    private static final AdmissionReservations INSTANCE = new AdmissionReservations();
+
+    public static AdmissionReservations getInstance() {
+        return INSTANCE;
+    }
+
+    private final Segment[] segments = new Segment[NB_SEGMENTS];
+
+    // ==================== STATISTIQUES ====================
+    private final LongAdder tentatives = new LongAdder();
+    private final LongAdder admises = new LongAdder();
+    private final LongAdder refusEnCours = new LongAdder();
+    private final LongAdder refusIndisponible = new LongAdder();
+    private final LongAdder expirees = new LongAdder();
+
+    private AdmissionReservations() {
+        for (int i = 0; i < NB_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // ==================== ADMISSION ====================
+
+    /**
+     * Réclame l'annonce pour une tentative de réservation.
+     *
+     * @return false si une autre tentative est en cours ou si l'annonce est
+     *         connue comme prise : inutile d'interroger la base
+     */
+    public boolean tenter(int annonceId) {
+        tentatives.increment();
+        byte refus = segment(annonceId).reclamer(annonceId, System.currentTimeMillis());
+        if (refus == 0) {
+            admises.increment();
+            return true;
+        }
+        (refus == EN_COURS ? refusEnCours : refusIndisponible).increment();
+        return false;
+    }
+
+    /**
+     * La base a répondu que l'annonce est prise (par cette tentative ou par
+     * une autre) : les prochains contendants sont refusés sans requête.
+     */
+    public void marquerIndisponible(int annonceId) {
+        segment(annonceId).poser(annonceId, INDISPONIBLE, System.currentTimeMillis() + dureeVie());
+    }
+
+    /**
+     * Oublie l'annonce : tentative échouée (erreur SQL) ou annonce libérée.
+     */
+    public void liberer(int annonceId) {
+        segment(annonceId).retirer(annonceId);
+    }
+
+    // ==================== SYNCHRONISATION ====================
+
+    @Override
+    public void annoncesModifiees(List<Annonce> annonces) {
+        for (Annonce a : annonces) {
+            if (a.getStatut() == StatutAnnonce.DISPONIBLE) {
+                liberer(a.getId());
+            }
+        }
+    }
+
+    @Override
+    public void annoncesSupprimees(List<Integer> ids) {
+        ids.forEach(this::liberer);
+    }
+
+    // ==================== STATISTIQUES ====================
+
+    public long getTentatives() {
+        return tentatives.sum();
+    }
+
+    public long getAdmises() {
+        return admises.sum();
+    }
+
+    public long getRefusEnCours() {
+        return refusEnCours.sum();
+    }
+
+    public long getRefusIndisponible() {
+        return refusIndisponible.sum();
+    }
+
+    public long getExpirees() {
+        return expirees.sum();
+    }
+
+    /**
+     * Part des tentatives refusées sans aller jusqu'à la base.
+     */
+    public double getTauxRefus() {
+        long total = tentatives.sum();
+        return total == 0 ? 0 : (double) (refusEnCours.sum() + refusIndisponible.sum()) / total;
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionReservations{" +
+                "tentatives=" + tentatives +
+                ", admises=" + admises +
+                ", refusEnCours=" + refusEnCours +
+                ", refusIndisponible=" + refusIndisponible +
+                ", expirees=" + expirees +
+                '}';
+    }
+
+    // ==================== SEGMENTS ====================
+
+    private Segment segment(int annonceId) {
+        // Bits de poids fort : les bits faibles servent au sondage dans l'index du segment
+        return segments[CatalogueColonnes.IndexEntier.hache(annonceId) >>> (32 - BITS_SEGMENTS)];
+    }
+
+    private static long dureeVie() {
+        return Configuration.getInstance().get(Configuration.CACHE_ADMISSION_MS);
+    }
+
+    /**
+     * Un segment : index id -> emplacement ({@link CatalogueColonnes.IndexEntier},
+     * adressage ouvert) et états rangés de façon dense dans des tableaux
+     * parallèles ; le dernier emplacement comble celui d'une entrée retirée.
+     * Les entrées expirées sont retirées quand le segment est plein.
+     */
+    private final class Segment {
+        private final CatalogueColonnes.IndexEntier index = new CatalogueColonnes.IndexEntier(16);
+        private int[] cles = new int[16];
+        private byte[] etats = new byte[16];
+        private long[] expirations = new long[16];
+        private int nombre;
+
+        /**
+         * @return 0 si la réclamation est acceptée, sinon l'état qui la refuse
+         */
+        synchronized byte reclamer(int cle, long maintenant) {
+            int i = index.get(cle);
+            if (i >= 0) {
+                if (expirations[i] > maintenant) {
+                    return etats[i];
+                }
+                expirees.increment();
+            }
+            poser(cle, EN_COURS, maintenant + dureeVie());
+            return 0;
+        }
+
+        synchronized void poser(int cle, byte etat, long expiration) {
+            int i = index.get(cle);
+            if (i < 0) {
+                if (nombre == cles.length) {
+                    agrandir();
+                }
+                i = nombre++;
+                cles[i] = cle;
+                index.put(cle, i);
+            }
+            etats[i] = etat;
+            expirations[i] = expiration;
+        }
+
+        synchronized void retirer(int cle) {
+            int i = index.get(cle);
+            if (i >= 0) {
+                supprimer(i);
+            }
+        }
+
+        private void supprimer(int i) {
+            index.remove(cles[i]);
+            int dernier = --nombre;
+            if (i != dernier) {
+                cles[i] = cles[dernier];
+                etats[i] = etats[dernier];
+                expirations[i] = expirations[dernier];
+                index.put(cles[i], i);
+            }
+        }
+
+        /**
+         * Segment plein : abandonne d'abord les entrées expirées, puis double
+         * la capacité s'il reste plus d'une moitié d'entrées vivantes.
+         */
+        private void agrandir() {
+            long maintenant = System.currentTimeMillis();
+            // À rebours : l'entrée déplacée dans le trou a déjà été examinée
+            for (int i = nombre - 1; i >= 0; i--) {
+                if (expirations[i] <= maintenant) {
+                    supprimer(i);
+                }
+            }
+            if (nombre * 2 > cles.length) {
+                cles = Arrays.copyOf(cles, cles.length * 2);
+                etats = Arrays.copyOf(etats, etats.length * 2);
+                expirations = Arrays.copyOf(expirations, expirations.length * 2);
+            }
+        }
+    }
+}
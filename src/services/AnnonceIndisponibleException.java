@@ -0,0 +1,26 @@
+package services;
+
+import java.sql.SQLException;
+
+/**
+ * Levée quand une réservation est refusée parce que l'annonce n'est plus
+ * disponible : réservée par un autre agriculteur, tentative concurrente en
+ * cours ou refus anticipé (voir {@link AdmissionReservations}). Aucune
+ * réservation n'a été créée ; l'appelant peut proposer la liste d'attente.
+ * Hérite de SQLException pour respecter le contrat de {@link IService}.
+ */
+public class AnnonceIndisponibleException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int annonceId;
+
+    public AnnonceIndisponibleException(int annonceId) {
+        super("Annonce " + annonceId + " déjà réservée ou indisponible");
+        this.annonceId = annonceId;
+    }
+
+    public int getAnnonceId() {
+        return annonceId;
+    }
+}
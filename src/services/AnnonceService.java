@@ -2,14 +2,28 @@ package services;
 
 import models.Annonce;
 import models.StatutAnnonce;
+import models.SuiviAnnonce;
+import models.Suppression;
 import models.TypeAnnonce;
 import utils.MyDatabase;
+import utils.ReplicasLecture;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Service CRUD pour la gestion des Annonces.
@@ -17,24 +31,49 @@ import java.util.List;
  */
 public class AnnonceService implements IService<Annonce> {
 
-    private Connection connection;
+    // Nombre maximal d'IDs par clause IN (...)
+    static final int TAILLE_LOT_IN = 1000;
 
-    public AnnonceService() {
-        this.connection = MyDatabase.getInstance().getConnection();
+    // getById regroupés : fenêtre de 2 ms, lots de TAILLE_LOT_IN au plus
+    private static final ChargeurLots<Annonce> CHARGEUR = new ChargeurLots<>(
+            ids -> new AnnonceService().getByIds(ids), 2_000, TAILLE_LOT_IN);
+
+    private final ListeAttenteService listeAttente = new ListeAttenteService();
+
+    /**
+     * Connexion courante, réobtenue à chaque requête : le service reste
+     * utilisable après une coupure réseau ou un démarrage hors-ligne.
+     */
+    private Connection connection() throws SQLException {
+        return MyDatabase.getInstance().getConnectionOrThrow();
     }
 
     // ==================== CRUD DE BASE ====================
 
     @Override
     public void add(Annonce annonce) throws SQLException {
+        add(annonce, false);
+    }
+
+    /**
+     * @param forcer Publier même si l'annonce double une annonce active du
+     *               même propriétaire (sinon {@link DoublonException})
+     */
+    public void add(Annonce annonce, boolean forcer) throws SQLException {
+        if (!forcer) {
+            DetecteurDoublons.Doublon doublon = DetecteurDoublons.getInstance().chercher(annonce);
+            if (doublon != null) {
+                throw new DoublonException(doublon.getAnnonceId(), doublon.getSimilarite());
+            }
+        }
         String query = """
                 INSERT INTO annonce (titre, description, prix, type, statut, image_path,
                                      localisation, date_disponibilite, date_fin_disponibilite,
                                      date_creation, date_modification, proprietaire_id)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(3), ?)
                 """;
 
-        try (PreparedStatement ps = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement ps = connection().prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, annonce.getTitre());
             ps.setString(2, annonce.getDescription());
             ps.setDouble(3, annonce.getPrix());
@@ -46,8 +85,7 @@ public class AnnonceService implements IService<Annonce> {
             ps.setDate(9,
                     annonce.getDateFinDisponibilite() != null ? Date.valueOf(annonce.getDateFinDisponibilite()) : null);
             ps.setTimestamp(10, Timestamp.valueOf(annonce.getDateCreation()));
-            ps.setTimestamp(11, Timestamp.valueOf(annonce.getDateModification()));
-            ps.setInt(12, annonce.getProprietaireId());
+            ps.setInt(11, annonce.getProprietaireId());
 
             ps.executeUpdate();
 
@@ -57,50 +95,192 @@ public class AnnonceService implements IService<Annonce> {
                     annonce.setId(generatedKeys.getInt(1));
                 }
             }
+            annonce.clearModifications();
+            ReplicasLecture.getInstance().noterEcriture();
+            SuggestionPrix.getInstance().enregistrer(annonce);
+            DetecteurDoublons.getInstance().indexer(annonce);
 
             System.out.println("✅ Annonce ajoutée avec succès : " + annonce.getTitre());
         }
     }
 
+    /**
+     * Met à jour uniquement les colonnes modifiées depuis la lecture (suivi
+     * des champs dans Annonce) : aucun aller-retour si rien n'a changé.
+     */
     @Override
     public void update(Annonce annonce) throws SQLException {
-        String query = """
-                UPDATE annonce SET
-                    titre = ?, description = ?, prix = ?, type = ?, statut = ?,
-                    image_path = ?, localisation = ?, date_disponibilite = ?,
-                    date_fin_disponibilite = ?, date_modification = ?
-                WHERE id = ?
-                """;
+        if (!annonce.hasModifications()) {
+            return;
+        }
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, annonce.getTitre());
-            ps.setString(2, annonce.getDescription());
-            ps.setDouble(3, annonce.getPrix());
-            ps.setString(4, annonce.getType().name());
-            ps.setString(5, annonce.getStatut().name());
-            ps.setString(6, annonce.getImagePath());
-            ps.setString(7, annonce.getLocalisation());
-            ps.setDate(8, annonce.getDateDisponibilite() != null ? Date.valueOf(annonce.getDateDisponibilite()) : null);
-            ps.setDate(9,
-                    annonce.getDateFinDisponibilite() != null ? Date.valueOf(annonce.getDateFinDisponibilite()) : null);
-            ps.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setInt(11, annonce.getId());
+        StringBuilder queryBuilder = new StringBuilder("UPDATE annonce SET ");
+        List<Object> params = new ArrayList<>();
 
-            int rowsAffected = ps.executeUpdate();
-            if (rowsAffected > 0) {
-                System.out.println("✅ Annonce mise à jour : " + annonce.getTitre());
+        if (annonce.isModifie(Annonce.CHAMP_TITRE)) {
+            queryBuilder.append("titre = ?, ");
+            params.add(annonce.getTitre());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_DESCRIPTION)) {
+            queryBuilder.append("description = ?, ");
+            params.add(annonce.getDescription());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_PRIX)) {
+            queryBuilder.append("prix = ?, ");
+            params.add(annonce.getPrix());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_TYPE)) {
+            queryBuilder.append("type = ?, ");
+            params.add(annonce.getType().name());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_STATUT)) {
+            queryBuilder.append("statut = ?, ");
+            params.add(annonce.getStatut().name());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_IMAGE_PATH)) {
+            queryBuilder.append("image_path = ?, ");
+            params.add(annonce.getImagePath());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_LOCALISATION)) {
+            queryBuilder.append("localisation = ?, ");
+            params.add(annonce.getLocalisation());
+        }
+        if (annonce.isModifie(Annonce.CHAMP_DATE_DISPONIBILITE)) {
+            queryBuilder.append("date_disponibilite = ?, ");
+            params.add(annonce.getDateDisponibilite() != null ? Date.valueOf(annonce.getDateDisponibilite()) : null);
+        }
+        if (annonce.isModifie(Annonce.CHAMP_DATE_FIN_DISPONIBILITE)) {
+            queryBuilder.append("date_fin_disponibilite = ?, ");
+            params.add(annonce.getDateFinDisponibilite() != null
+                    ? Date.valueOf(annonce.getDateFinDisponibilite()) : null);
+        }
+
+        // Horloge du serveur : le watermark de synchronisation des autres postes s'y réfère
+        queryBuilder.append("date_modification = NOW(3), version = version + 1 WHERE id = ? AND version = ?");
+
+        // Retour à DISPONIBLE : la liste d'attente est servie dans la même transaction
+        boolean liberation = annonce.isModifie(Annonce.CHAMP_STATUT)
+                && annonce.getStatut() == StatutAnnonce.DISPONIBLE;
+        int rowsAffected;
+        Integer attribuee = null;
+        if (liberation) {
+            try (Connection c = MyDatabase.getInstance().emprunterConnexion()) {
+                c.setAutoCommit(false);
+                try {
+                    rowsAffected = executerUpdate(c, queryBuilder.toString(), params, annonce);
+                    if (rowsAffected > 0) {
+                        attribuee = listeAttente.attribuerAuSuivant(c, annonce.getId());
+                    }
+                    c.commit();
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                }
+            }
+        } else {
+            rowsAffected = executerUpdate(connection(), queryBuilder.toString(), params, annonce);
+        }
+
+        if (rowsAffected > 0) {
+            boolean prixModifie = annonce.isModifie(Annonce.CHAMP_PRIX) || annonce.isModifie(Annonce.CHAMP_TYPE)
+                    || annonce.isModifie(Annonce.CHAMP_LOCALISATION);
+            boolean texteModifie = annonce.isModifie(Annonce.CHAMP_TITRE)
+                    || annonce.isModifie(Annonce.CHAMP_DESCRIPTION) || annonce.isModifie(Annonce.CHAMP_TYPE)
+                    || annonce.isModifie(Annonce.CHAMP_STATUT);
+            annonce.setVersion(annonce.getVersion() + 1);
+            annonce.setDateModification(LocalDateTime.now()); // Indicatif : la base fait foi
+            if (attribuee != null) {
+                // Aussitôt réattribuée au premier de la file
+                annonce.setStatut(StatutAnnonce.RESERVE);
+                annonce.setVersion(annonce.getVersion() + 1);
+            }
+            annonce.clearModifications();
+            if (liberation) {
+                apresLiberation(annonce.getId(), attribuee);
+            } else {
+                ReplicasLecture.getInstance().noterEcriture();
+            }
+            if (prixModifie) {
+                SuggestionPrix.getInstance().enregistrer(annonce);
+            }
+            if (texteModifie) {
+                DetecteurDoublons.getInstance().indexer(annonce);
+            }
+            System.out.println("✅ Annonce mise à jour : " + annonce.getTitre());
+        } else if (getById(annonce.getId()) != null) {
+            // La ligne existe mais sa version a changé depuis la lecture
+            throw new ConflitVersionException("Annonce", annonce.getId(), annonce.getVersion());
+        }
+    }
+
+    /**
+     * Lecture-modification-écriture avec relecture automatique en cas de
+     * conflit de version. Réservé aux modifications idempotentes (ex: changer
+     * un prix ou un statut), qui peuvent être ré-appliquées sur la version
+     * fraîche sans perdre l'intention de l'utilisateur.
+     *
+     * @return L'annonce mise à jour, ou null si elle n'existe plus
+     */
+    public Annonce updateAvecRetry(int id, Consumer<Annonce> modification, int maxTentatives)
+            throws SQLException {
+        for (int tentative = 1;; tentative++) {
+            Annonce annonce = getById(id);
+            if (annonce == null) {
+                return null;
+            }
+            modification.accept(annonce);
+            try {
+                update(annonce);
+                return annonce;
+            } catch (ConflitVersionException e) {
+                if (tentative >= maxTentatives) {
+                    throw e;
+                }
+                System.out.println("🔄 Conflit de version sur l'annonce " + id + ", nouvelle tentative...");
+                try {
+                    // Backoff court et aléatoire pour désynchroniser les écrivains concurrents
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(10, 50) * tentative);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
             }
         }
     }
 
+    /**
+     * Republication d'une annonce déjà en ligne : l'annonce existante reprend
+     * le texte, le prix et les dates de la nouvelle (et redevient DISPONIBLE
+     * si elle avait été retirée), au lieu de créer un doublon.
+     *
+     * @return L'annonce existante mise à jour, ou null si elle n'existe plus
+     */
+    public Annonce fusionner(int existanteId, Annonce nouvelle) throws SQLException {
+        return updateAvecRetry(existanteId, existante -> {
+            existante.setTitre(nouvelle.getTitre());
+            existante.setDescription(nouvelle.getDescription());
+            existante.setPrix(nouvelle.getPrix());
+            existante.setDateDisponibilite(nouvelle.getDateDisponibilite());
+            existante.setDateFinDisponibilite(nouvelle.getDateFinDisponibilite());
+            if (nouvelle.getImagePath() != null) {
+                existante.setImagePath(nouvelle.getImagePath());
+            }
+            if (existante.getStatut() == StatutAnnonce.INDISPONIBLE) {
+                existante.setStatut(StatutAnnonce.DISPONIBLE);
+            }
+        }, 3);
+    }
+
     @Override
     public void delete(int id) throws SQLException {
         String query = "DELETE FROM annonce WHERE id = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
             ps.setInt(1, id);
             int rowsAffected = ps.executeUpdate();
             if (rowsAffected > 0) {
+                ReplicasLecture.getInstance().noterEcriture();
+                DetecteurDoublons.getInstance().retirer(id);
                 System.out.println("✅ Annonce supprimée (ID: " + id + ")");
             }
         }
@@ -111,7 +291,7 @@ public class AnnonceService implements IService<Annonce> {
         List<Annonce> annonces = new ArrayList<>();
         String query = "SELECT * FROM annonce ORDER BY date_creation DESC";
 
-        try (Statement st = connection.createStatement();
+        try (Statement st = connection().createStatement();
                 ResultSet rs = st.executeQuery(query)) {
             while (rs.next()) {
                 annonces.add(mapResultSetToAnnonce(rs));
@@ -124,7 +304,7 @@ public class AnnonceService implements IService<Annonce> {
     public Annonce getById(int id) throws SQLException {
         String query = "SELECT * FROM annonce WHERE id = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -135,51 +315,86 @@ public class AnnonceService implements IService<Annonce> {
         return null;
     }
 
+    /**
+     * Lecture par lots de {@link #TAILLE_LOT_IN} IDs, une requête par lot.
+     */
+    @Override
+    public Map<Integer, Annonce> getByIds(int[] ids) throws SQLException {
+        Map<Integer, Annonce> annonces = new HashMap<>();
+        int[] distincts = IntStream.of(ids).distinct().toArray();
+        for (int debut = 0; debut < distincts.length; debut += TAILLE_LOT_IN) {
+            int fin = Math.min(debut + TAILLE_LOT_IN, distincts.length);
+            String query = "SELECT * FROM annonce WHERE id IN ("
+                    + String.join(", ", Collections.nCopies(fin - debut, "?")) + ")";
+            try (PreparedStatement ps = connection().prepareStatement(query)) {
+                for (int i = debut; i < fin; i++) {
+                    ps.setInt(i - debut + 1, distincts[i]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Annonce annonce = mapResultSetToAnnonce(rs);
+                        annonces.put(annonce.getId(), annonce);
+                    }
+                }
+            }
+        }
+        return annonces;
+    }
+
+    /**
+     * Comme {@link #getById}, mais regroupée avec les lectures concurrentes
+     * (toutes instances confondues) en un seul getByIds : à privilégier dans
+     * les chemins appelés en rafale depuis plusieurs threads.
+     */
+    public Annonce getByIdGroupe(int id) throws SQLException {
+        return CHARGEUR.get(id);
+    }
+
     // ==================== MÉTHODES DE RECHERCHE SPÉCIFIQUES ====================
 
     /**
      * Récupère toutes les annonces disponibles.
      */
     public List<Annonce> getAnnoncesDisponibles() throws SQLException {
-        List<Annonce> annonces = new ArrayList<>();
-        String query = "SELECT * FROM annonce WHERE statut = 'DISPONIBLE' ORDER BY date_creation DESC";
-
-        try (Statement st = connection.createStatement();
-                ResultSet rs = st.executeQuery(query)) {
-            while (rs.next()) {
-                annonces.add(mapResultSetToAnnonce(rs));
-            }
-        }
-        return annonces;
+        return listerSurReplica("SELECT * FROM annonce WHERE statut = 'DISPONIBLE' ORDER BY date_creation DESC");
     }
 
     /**
      * Récupère les annonces par type (ex: tous les tracteurs).
      */
     public List<Annonce> getByType(TypeAnnonce type) throws SQLException {
-        List<Annonce> annonces = new ArrayList<>();
-        String query = "SELECT * FROM annonce WHERE type = ? AND statut = 'DISPONIBLE' ORDER BY date_creation DESC";
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, type.name());
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    annonces.add(mapResultSetToAnnonce(rs));
-                }
-            }
-        }
-        return annonces;
+        return listerSurReplica(
+                "SELECT * FROM annonce WHERE type = ? AND statut = 'DISPONIBLE' ORDER BY date_creation DESC",
+                type.name());
     }
 
     /**
      * Récupère les annonces par localisation (Gouvernorat).
      */
     public List<Annonce> getByLocalisation(String localisation) throws SQLException {
+        return listerSurReplica(
+                "SELECT * FROM annonce WHERE localisation LIKE ? AND statut = 'DISPONIBLE' ORDER BY date_creation DESC",
+                "%" + localisation + "%");
+    }
+
+    /**
+     * Récupère les annonces dans une fourchette de prix.
+     */
+    public List<Annonce> getByPrixRange(double prixMin, double prixMax) throws SQLException {
+        return listerSurReplica(
+                "SELECT * FROM annonce WHERE prix BETWEEN ? AND ? AND statut = 'DISPONIBLE' ORDER BY prix ASC",
+                prixMin, prixMax);
+    }
+
+    /**
+     * Récupère les annonces d'un propriétaire spécifique (Mes Annonces).
+     */
+    public List<Annonce> getByProprietaire(int proprietaireId) throws SQLException {
         List<Annonce> annonces = new ArrayList<>();
-        String query = "SELECT * FROM annonce WHERE localisation LIKE ? AND statut = 'DISPONIBLE' ORDER BY date_creation DESC";
+        String query = "SELECT * FROM annonce WHERE proprietaire_id = ? ORDER BY date_creation DESC";
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, "%" + localisation + "%");
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            ps.setInt(1, proprietaireId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     annonces.add(mapResultSetToAnnonce(rs));
@@ -190,65 +405,119 @@ public class AnnonceService implements IService<Annonce> {
     }
 
     /**
-     * Récupère les annonces dans une fourchette de prix.
+     * Reprend dans le stockage d'images les annonces d'un propriétaire dont
+     * l'image est encore un chemin absolu (publiées avant le stockage géré).
+     * Seul le poste d'origine possède ces fichiers : les chemins introuvables
+     * ici sont laissés tels quels.
+     *
+     * @return Le nombre d'annonces migrées
      */
-    public List<Annonce> getByPrixRange(double prixMin, double prixMax) throws SQLException {
-        List<Annonce> annonces = new ArrayList<>();
-        String query = "SELECT * FROM annonce WHERE prix BETWEEN ? AND ? AND statut = 'DISPONIBLE' ORDER BY prix ASC";
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setDouble(1, prixMin);
-            ps.setDouble(2, prixMax);
+    public int migrerImagesLocales(int proprietaireId, StockageImages stockage) throws SQLException {
+        Map<Integer, String> chemins = new HashMap<>();
+        String query = """
+                SELECT id, image_path FROM annonce
+                WHERE proprietaire_id = ? AND image_path IS NOT NULL AND image_path <> ''
+                """;
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            ps.setInt(1, proprietaireId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    annonces.add(mapResultSetToAnnonce(rs));
+                    if (!StockageImages.estCle(rs.getString("image_path"))) {
+                        chemins.put(rs.getInt("id"), rs.getString("image_path"));
+                    }
                 }
             }
         }
-        return annonces;
+
+        int migrees = 0;
+        String update = """
+                UPDATE annonce SET image_path = ?, date_modification = NOW(3), version = version + 1
+                WHERE id = ? AND image_path = ?
+                """;
+        for (Map.Entry<Integer, String> e : chemins.entrySet()) {
+            String cle;
+            try {
+                Path fichier = Path.of(e.getValue());
+                if (!Files.isRegularFile(fichier)) {
+                    continue;
+                }
+                cle = stockage.enregistrer(fichier, null);
+            } catch (IOException | InvalidPathException ex) {
+                System.err.println("⚠️ Image de l'annonce " + e.getKey() + " non migrée : " + ex.getMessage());
+                continue;
+            }
+            try (PreparedStatement ps = connection().prepareStatement(update)) {
+                ps.setString(1, cle);
+                ps.setInt(2, e.getKey());
+                ps.setString(3, e.getValue());
+                migrees += ps.executeUpdate();
+            }
+        }
+        if (migrees > 0) {
+            ReplicasLecture.getInstance().noterEcriture();
+            System.out.println("✅ " + migrees + " image(s) d'annonces reprise(s) dans le stockage");
+        }
+        return migrees;
     }
 
     /**
-     * Récupère les annonces d'un propriétaire spécifique (Mes Annonces).
+     * Page du tableau de bord d'un propriétaire : ses annonces (plus récentes
+     * d'abord) avec, pour chacune, le nombre de demandes en attente et les
+     * revenus à venir, agrégés par la base en une seule requête. Les
+     * réservations elles-mêmes sont chargées par
+     * {@link ReservationService#getMesAnnonces}.
      */
-    public List<Annonce> getByProprietaire(int proprietaireId) throws SQLException {
-        List<Annonce> annonces = new ArrayList<>();
-        String query = "SELECT * FROM annonce WHERE proprietaire_id = ? ORDER BY date_creation DESC";
+    public List<SuiviAnnonce> getSuiviProprietaire(int proprietaireId, int offset, int limite)
+            throws SQLException {
+        List<SuiviAnnonce> page = new ArrayList<>();
+        String query = """
+                SELECT a.*,
+                       COALESCE(s.nb_en_attente, 0) AS nb_en_attente,
+                       COALESCE(s.revenus_a_venir, 0) AS revenus_a_venir
+                FROM annonce a
+                LEFT JOIN (
+                    SELECT r.annonce_id,
+                           SUM(r.statut = 'EN_ATTENTE') AS nb_en_attente,
+                           SUM(CASE WHEN r.statut IN ('EN_ATTENTE', 'CONFIRMEE')
+                                     AND (r.date_fin IS NULL OR r.date_fin >= CURDATE())
+                                    THEN r.montant_total ELSE 0 END) AS revenus_a_venir
+                    FROM reservation r
+                    JOIN annonce p ON p.id = r.annonce_id
+                    WHERE p.proprietaire_id = ?
+                    GROUP BY r.annonce_id
+                ) s ON s.annonce_id = a.id
+                WHERE a.proprietaire_id = ?
+                ORDER BY a.date_creation DESC, a.id DESC
+                LIMIT ? OFFSET ?
+                """;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
             ps.setInt(1, proprietaireId);
+            ps.setInt(2, proprietaireId);
+            ps.setInt(3, limite);
+            ps.setInt(4, offset);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    annonces.add(mapResultSetToAnnonce(rs));
+                    page.add(new SuiviAnnonce(mapResultSetToAnnonce(rs),
+                            rs.getInt("nb_en_attente"), rs.getDouble("revenus_a_venir")));
                 }
             }
         }
-        return annonces;
+        return page;
     }
 
     /**
      * Recherche par mot-clé dans le titre et la description.
      */
     public List<Annonce> search(String keyword) throws SQLException {
-        List<Annonce> annonces = new ArrayList<>();
         String query = """
                 SELECT * FROM annonce
                 WHERE (titre LIKE ? OR description LIKE ?)
                 AND statut = 'DISPONIBLE'
                 ORDER BY date_creation DESC
                 """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            String pattern = "%" + keyword + "%";
-            ps.setString(1, pattern);
-            ps.setString(2, pattern);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    annonces.add(mapResultSetToAnnonce(rs));
-                }
-            }
-        }
-        return annonces;
+        String pattern = "%" + keyword + "%";
+        return listerSurReplica(query, pattern, pattern);
     }
 
     /**
@@ -256,7 +525,6 @@ public class AnnonceService implements IService<Annonce> {
      */
     public List<Annonce> searchAdvanced(String keyword, TypeAnnonce type,
             String localisation, Double prixMax) throws SQLException {
-        List<Annonce> annonces = new ArrayList<>();
         StringBuilder queryBuilder = new StringBuilder(
                 "SELECT * FROM annonce WHERE statut = 'DISPONIBLE'");
         List<Object> params = new ArrayList<>();
@@ -284,16 +552,110 @@ public class AnnonceService implements IService<Annonce> {
 
         queryBuilder.append(" ORDER BY date_creation DESC");
 
-        try (PreparedStatement ps = connection.prepareStatement(queryBuilder.toString())) {
-            for (int i = 0; i < params.size(); i++) {
-                Object param = params.get(i);
-                if (param instanceof String) {
-                    ps.setString(i + 1, (String) param);
-                } else if (param instanceof Double) {
-                    ps.setDouble(i + 1, (Double) param);
+        return listerSurReplica(queryBuilder.toString(), params.toArray());
+    }
+
+    /**
+     * Lecture de navigation, servie par un réplica assez frais s'il y en a
+     * un (voir {@link ReplicasLecture}), sinon par le primaire. Un réplica
+     * qui tombe pendant la lecture est écarté et la lecture refaite sur le
+     * primaire.
+     */
+    private List<Annonce> listerSurReplica(String query, Object... params) throws SQLException {
+        ReplicasLecture replicas = ReplicasLecture.getInstance();
+        Connection replica = replicas.connexionLecture();
+        if (replica != null) {
+            try {
+                return lister(replica, query, params);
+            } catch (SQLException e) {
+                if (!MyDatabase.isErreurConnexion(e)) {
+                    throw e;
+                }
+                replicas.signalerPanne(replica);
+            }
+        }
+        return lister(connection(), query, params);
+    }
+
+    private List<Annonce> lister(Connection c, String query, Object... params) throws SQLException {
+        List<Annonce> annonces = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    annonces.add(mapResultSetToAnnonce(rs));
+                }
+            }
+        }
+        return annonces;
+    }
+
+    // ==================== EXPORT ====================
+
+    /**
+     * Exporte toutes les annonces en flux (CSV ou binaire en colonnes), à
+     * mémoire constante : contrairement à getAll(), aucune liste n'est
+     * construite.
+     *
+     * @param progression Peut être null
+     * @return Le nombre de lignes exportées
+     */
+    public long exporter(Path fichier, ExportStreaming.Format format, ExportStreaming.Progression progression)
+            throws SQLException, IOException {
+        return ExportStreaming.exporter("SELECT * FROM annonce ORDER BY id", "SELECT COUNT(*) FROM annonce",
+                fichier, format, progression);
+    }
+
+    // ==================== SYNCHRONISATION INCRÉMENTALE ====================
+
+    /**
+     * Récupère les annonces modifiées depuis un watermark (inclus), dans l'ordre
+     * de l'index (date_modification, id). Comparaison inclusive : les lignes
+     * déjà vues sont simplement ré-appliquées par l'appelant.
+     */
+    public List<Annonce> getModifiedSince(Instant watermark, int limit) throws SQLException {
+        List<Annonce> annonces = new ArrayList<>();
+        String query = """
+                SELECT * FROM annonce
+                WHERE date_modification >= ?
+                ORDER BY date_modification ASC, id ASC
+                LIMIT ?
+                """;
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            ps.setTimestamp(1, Timestamp.from(watermark));
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    annonces.add(mapResultSetToAnnonce(rs));
                 }
             }
+        }
+        return annonces;
+    }
 
+    /**
+     * Page suivante strictement après le couple (watermark, dernierId) :
+     * pagination par clé sans doublon ni perte, même si plus de {@code limit}
+     * lignes partagent la même date_modification.
+     */
+    public List<Annonce> getModifiedSince(Instant watermark, int dernierId, int limit) throws SQLException {
+        List<Annonce> annonces = new ArrayList<>();
+        String query = """
+                SELECT * FROM annonce
+                WHERE date_modification > ? OR (date_modification = ? AND id > ?)
+                ORDER BY date_modification ASC, id ASC
+                LIMIT ?
+                """;
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            Timestamp ts = Timestamp.from(watermark);
+            ps.setTimestamp(1, ts);
+            ps.setTimestamp(2, ts);
+            ps.setInt(3, dernierId);
+            ps.setInt(4, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     annonces.add(mapResultSetToAnnonce(rs));
@@ -303,38 +665,164 @@ public class AnnonceService implements IService<Annonce> {
         return annonces;
     }
 
+    /**
+     * Récupère les annonces supprimées (tombstones du journal suppression_log)
+     * après un ID de journal donné.
+     */
+    public List<Suppression> getSuppressionsDepuis(long apresLogId, int limit) throws SQLException {
+        List<Suppression> suppressions = new ArrayList<>();
+        String query = """
+                SELECT * FROM suppression_log
+                WHERE entite = 'ANNONCE' AND id > ?
+                ORDER BY id ASC
+                LIMIT ?
+                """;
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            ps.setLong(1, apresLogId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    suppressions.add(new Suppression(
+                            rs.getLong("id"),
+                            rs.getString("entite"),
+                            rs.getInt("entite_id"),
+                            rs.getTimestamp("date_suppression").toLocalDateTime()));
+                }
+            }
+        }
+        return suppressions;
+    }
+
+    /**
+     * Dernier ID du journal des suppressions (point de départ d'une
+     * synchronisation qui ne rejoue pas l'historique).
+     */
+    public long getDernierIdSuppression() throws SQLException {
+        try (Statement st = connection().createStatement();
+                ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM suppression_log")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Heure du serveur, référence des watermarks (date_modification est
+     * posée par NOW(3)) : l'horloge du poste peut être décalée.
+     */
+    public Instant getInstantServeur() throws SQLException {
+        try (Statement st = connection().createStatement();
+                ResultSet rs = st.executeQuery("SELECT NOW(3)")) {
+            rs.next();
+            return rs.getTimestamp(1).toInstant();
+        }
+    }
+
     // ==================== MÉTHODES P2P SPÉCIFIQUES ====================
 
     /**
      * Réserve une annonce (P2P : action directe de l'agriculteur B).
+     *
+     * @return false si l'annonce n'était plus disponible (réservée entre-temps)
      */
-    public void reserverAnnonce(int annonceId) throws SQLException {
-        String query = "UPDATE annonce SET statut = 'RESERVE', date_modification = ? WHERE id = ? AND statut = 'DISPONIBLE'";
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setInt(2, annonceId);
+    public boolean reserverAnnonce(int annonceId) throws SQLException {
+        // Refus immédiat si une autre tentative est déjà partie vers la base
+        AdmissionReservations admission = AdmissionReservations.getInstance();
+        if (!admission.tenter(annonceId)) {
+            System.out.println("⚠️ L'annonce n'est plus disponible (refus anticipé).");
+            return false;
+        }
 
-            int rowsAffected = ps.executeUpdate();
-            if (rowsAffected > 0) {
+        try {
+            boolean reclamee = reclamer(connection(), annonceId);
+            // Prise dans les deux cas : par cette tentative ou par une autre
+            admission.marquerIndisponible(annonceId);
+            if (reclamee) {
+                ReplicasLecture.getInstance().noterEcriture();
                 System.out.println("✅ Annonce réservée (ID: " + annonceId + ")");
-            } else {
-                System.out.println("⚠️ L'annonce n'est plus disponible.");
+                return true;
             }
+            System.out.println("⚠️ L'annonce n'est plus disponible.");
+            return false;
+        } catch (SQLException e) {
+            admission.liberer(annonceId);
+            throw e;
+        }
+    }
+
+    /**
+     * Passe l'annonce de DISPONIBLE à RESERVE sur la connexion donnée (dans
+     * la transaction de l'appelant, ex: {@link ReservationService#add}).
+     *
+     * @return false si l'annonce n'était plus disponible
+     */
+    boolean reclamer(Connection c, int annonceId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("UPDATE annonce SET statut = 'RESERVE', "
+                + "date_modification = NOW(3), version = version + 1 WHERE id = ? AND statut = 'DISPONIBLE'")) {
+            ps.setInt(1, annonceId);
+            return ps.executeUpdate() > 0;
         }
     }
 
     /**
-     * Libère une annonce (Retour à disponible).
+     * Libère une annonce (Retour à disponible). Dans la même transaction,
+     * l'annonce est attribuée au premier de sa liste d'attente s'il y en a
+     * un : elle ne reste jamais DISPONIBLE sous ses yeux. Sans effet si
+     * l'annonce n'est ni RESERVE ni LOUE.
      */
     public void libererAnnonce(int annonceId) throws SQLException {
-        String query = "UPDATE annonce SET statut = 'DISPONIBLE', date_modification = ? WHERE id = ?";
+        String query = "UPDATE annonce SET statut = 'DISPONIBLE', date_modification = NOW(3), version = version + 1 "
+                + "WHERE id = ? AND statut IN ('RESERVE', 'LOUE')";
+
+        boolean liberee;
+        Integer attribuee = null;
+        try (Connection c = MyDatabase.getInstance().emprunterConnexion()) {
+            c.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = c.prepareStatement(query)) {
+                    ps.setInt(1, annonceId);
+                    liberee = ps.executeUpdate() > 0;
+                }
+                if (liberee) {
+                    attribuee = listeAttente.attribuerAuSuivant(c, annonceId);
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        }
+        if (!liberee) {
+            // Ni réservée ni louée : rien à libérer
+            System.out.println("⚠️ L'annonce " + annonceId + " n'était ni réservée ni louée.");
+            return;
+        }
+        apresLiberation(annonceId, attribuee);
+        System.out.println("✅ Annonce libérée (ID: " + annonceId + ")");
+    }
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setInt(2, annonceId);
-            ps.executeUpdate();
-            System.out.println("✅ Annonce libérée (ID: " + annonceId + ")");
+    /**
+     * Suites d'une libération validée : file en mémoire rechargée si
+     * l'annonce a été attribuée, sinon de nouveau ouverte aux réservations.
+     */
+    private void apresLiberation(int annonceId, Integer attribuee) {
+        ReplicasLecture.getInstance().noterEcriture();
+        if (attribuee != null) {
+            listeAttente.invalider(annonceId);
+        } else {
+            AdmissionReservations.getInstance().liberer(annonceId);
+        }
+    }
+
+    private static int executerUpdate(Connection c, String query, List<Object> params, Annonce annonce)
+            throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(query)) {
+            for (int i = 0; i < params.size(); i++) {
+                // setObject gère les valeurs NULL (description, dates optionnelles)
+                ps.setObject(i + 1, params.get(i));
+            }
+            ps.setInt(params.size() + 1, annonce.getId());
+            ps.setInt(params.size() + 2, annonce.getVersion());
+            return ps.executeUpdate();
         }
     }
 
@@ -344,7 +832,7 @@ public class AnnonceService implements IService<Annonce> {
      * Convertit un ResultSet en objet Annonce.
      */
     private Annonce mapResultSetToAnnonce(ResultSet rs) throws SQLException {
-        return new Annonce(
+        Annonce annonce = new Annonce(
                 rs.getInt("id"),
                 rs.getString("titre"),
                 rs.getString("description"),
@@ -359,5 +847,7 @@ public class AnnonceService implements IService<Annonce> {
                 rs.getTimestamp("date_creation").toLocalDateTime(),
                 rs.getTimestamp("date_modification").toLocalDateTime(),
                 rs.getInt("proprietaire_id"));
+        annonce.setVersion(rs.getInt("version"));
+        return annonce;
     }
 }
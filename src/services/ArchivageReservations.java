@@ -0,0 +1,161 @@
+package services;
+
+import utils.Configuration;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Archivage des réservations closes : les réservations TERMINEE / ANNULEE
+ * dont la dernière modification date de plus que la durée de rétention sont
+ * déplacées vers `reservation_archive` (partitionnée par année, compressée).
+ *
+ * La table `reservation` ne garde ainsi que l'activité récente : les
+ * lectures courantes (getByClient, getByAnnonce, getAll) restent petites quel
+ * que soit le volume d'historique. L'historique complet reste accessible via
+ * {@link ReservationService#getHistoriqueClient}.
+ *
+ * Exécuté par {@link CycleVieReservations}, sous son verrou consultatif.
+ */
+public class ArchivageReservations {
+
+    private final Duration retention;
+    private final int tailleLot;
+
+    private final AtomicLong reservationsArchivees = new AtomicLong();
+
+    /**
+     * Réglages lus dans la {@link Configuration} (archivage.*) ; par défaut
+     * 90 jours après la clôture, lots de 500.
+     */
+    public ArchivageReservations() {
+        this(Duration.ofDays(Configuration.getInstance().get(Configuration.ARCHIVAGE_RETENTION_JOURS)),
+                Configuration.getInstance().get(Configuration.ARCHIVAGE_TAILLE_LOT));
+    }
+
+    public ArchivageReservations(Duration retention, int tailleLot) {
+        this.retention = retention;
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Déplace les réservations closes par lots : INSERT ... SELECT dans
+     * l'archive puis DELETE, dans la même transaction par lot.
+     *
+     * @return Le nombre de réservations archivées
+     */
+    public long archiver(Connection c) throws SQLException {
+        preparerPartitions(c, LocalDate.now().getYear() + 1);
+
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        long total = 0;
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            while (true) {
+                List<Integer> ids = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement("""
+                        SELECT id FROM reservation
+                        WHERE statut IN ('TERMINEE', 'ANNULEE') AND date_modification < ?
+                        ORDER BY date_modification ASC
+                        LIMIT ?
+                        FOR UPDATE
+                        """)) {
+                    ps.setTimestamp(1, limite);
+                    ps.setInt(2, tailleLot);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt("id"));
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    c.commit();
+                    break;
+                }
+
+                String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+                try (PreparedStatement ps = c.prepareStatement("""
+                        INSERT INTO reservation_archive (id, annonce_id, client_id, date_debut, date_fin,
+                                                         montant_total, statut, commentaire, date_creation,
+                                                         date_modification, version)
+                        SELECT id, annonce_id, client_id, date_debut, date_fin, montant_total, statut,
+                               commentaire, COALESCE(date_creation, date_modification), date_modification, version
+                        FROM reservation WHERE id IN (""" + in + ")")) {
+                    bind(ps, ids);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM reservation WHERE id IN (" + in + ")")) {
+                    bind(ps, ids);
+                    ps.executeUpdate();
+                }
+                c.commit();
+
+                total += ids.size();
+                if (ids.size() < tailleLot) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+
+        reservationsArchivees.addAndGet(total);
+        if (total > 0) {
+            System.out.println("📦 Archivage : " + total + " réservation(s) close(s) déplacée(s).");
+        }
+        return total;
+    }
+
+    /**
+     * Crée les partitions annuelles manquantes jusqu'à l'année donnée, en
+     * découpant la partition pmax (vide en temps normal, donc instantané).
+     */
+    void preparerPartitions(Connection c, int jusquA) throws SQLException {
+        int derniere = 0;
+        try (PreparedStatement ps = c.prepareStatement("""
+                SELECT partition_description FROM information_schema.partitions
+                WHERE table_schema = DATABASE() AND table_name = 'reservation_archive'
+                  AND partition_description <> 'MAXVALUE'
+                """);
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                // VALUES LESS THAN (annee + 1)
+                derniere = Math.max(derniere, Integer.parseInt(rs.getString(1)) - 1);
+            }
+        }
+        if (derniere == 0 || derniere >= jusquA) {
+            return;
+        }
+
+        StringBuilder partitions = new StringBuilder();
+        for (int annee = derniere + 1; annee <= jusquA; annee++) {
+            partitions.append("PARTITION p").append(annee)
+                    .append(" VALUES LESS THAN (").append(annee + 1).append("), ");
+        }
+        try (Statement st = c.createStatement()) {
+            st.execute("ALTER TABLE reservation_archive REORGANIZE PARTITION pmax INTO ("
+                    + partitions + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+        }
+        System.out.println("📦 Partitions d'archive ajoutées jusqu'à " + jusquA + ".");
+    }
+
+    private static void bind(PreparedStatement ps, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            ps.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    public long getReservationsArchivees() {
+        return reservationsArchivees.get();
+    }
+}
@@ -0,0 +1,615 @@
+package services;
+
+import models.Annonce;
+import models.Gouvernorat;
+import models.StatutAnnonce;
+import models.Suppression;
+import models.TypeAnnonce;
+import utils.Configuration;
+import utils.MyDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Catalogue complet des annonces en colonnes, hors tas (direct buffers),
+ * pour les tableaux de bord et les filtres rapides.
+ *
+ * Une annonce y occupe 27 octets répartis en colonnes de types primitifs
+ * (ids en int, prix en centimes long, type / statut / gouvernorat en
+ * ordinal byte, dates en epoch day int), au lieu d'un objet Annonce avec ses
+ * chaînes et ses LocalDateTime. Les comptages et agrégats sont des boucles
+ * simples sur ces colonnes, sans allocation ni déréférencement.
+ *
+ * Alimenté une fois par {@link #charger()} (ou restauré depuis un
+ * {@link SnapshotCatalogue}) puis tenu à jour par {@link MarketplaceSync}
+ * (Listener). Lectures concurrentes, écritures
+ * exclusives (ReadWriteLock). Une suppression déplace la dernière ligne
+ * dans le trou : l'ordre des lignes n'a pas de sens.
+ */
+public class CatalogueColonnes implements MarketplaceSync.Listener {
+
+    /** Valeur de date absente dans les colonnes epoch day. */
+    public static final int SANS_DATE = Integer.MIN_VALUE;
+
+    /** Prix maximal sans limite (filtre de prix désactivé). */
+    public static final long SANS_LIMITE = Long.MAX_VALUE;
+
+    private static final int CAPACITE_INITIALE = 1_024;
+    private static final int TAILLE_PAGE = 500;
+
+    // ==================== COLONNES ====================
+    private ByteBuffer ids; // int
+    private ByteBuffer proprietaires; // int
+    private ByteBuffer prixCentimes; // long
+    private ByteBuffer types; // byte : TypeAnnonce.ordinal()
+    private ByteBuffer statuts; // byte : StatutAnnonce.ordinal()
+    private ByteBuffer gouvernorats; // byte : Gouvernorat.ordinal()
+    private ByteBuffer datesDisponibilite; // int : epoch day
+    private ByteBuffer datesCreation; // int : epoch day
+
+    private int taille;
+    private int capacite;
+
+    // id -> ligne
+    private IndexEntier index = new IndexEntier(CAPACITE_INITIALE);
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    // Position du catalogue dans le flux des modifications (mêmes conventions
+    // que MarketplaceSync) : permet de rattraper un snapshot restauré
+    private Instant watermark = Instant.EPOCH;
+    private int dernierId;
+    private long suppressionId;
+    private volatile boolean aRattraper = true; // Jusqu'au premier chargement complet
+
+    private final AnnonceService annonceService = new AnnonceService();
+
+    public CatalogueColonnes() {
+        allouer(CAPACITE_INITIALE);
+    }
+
+    // ==================== CHARGEMENT ====================
+
+    /**
+     * Charge tout le catalogue depuis la base centrale, en flux et sans
+     * construire d'objets Annonce.
+     *
+     * La position (heure du serveur, dernier ID du journal) et les annonces
+     * sont lues dans un même instantané transactionnel. Les deltas que la
+     * synchronisation a pu appliquer avant la prise du verrou sont effacés
+     * par le chargement : ils sont relus par un rattrapage depuis cette
+     * position, sous le même verrou d'écriture, avant qu'un cycleTermine
+     * ne déplace le watermark.
+     */
+    public void charger() throws SQLException {
+        String query = """
+                SELECT id, proprietaire_id, prix, type, statut, localisation, date_disponibilite, date_creation
+                FROM annonce
+                """;
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion();
+                PreparedStatement ps = c.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+            // Première lecture de la transaction : fixe l'instantané de la lecture des annonces
+            c.setAutoCommit(false);
+            Instant debut;
+            long dernierLog;
+            try (Statement st = c.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT NOW(3), COALESCE(MAX(id), 0) FROM suppression_log")) {
+                rs.next();
+                debut = rs.getTimestamp(1).toInstant();
+                dernierLog = rs.getLong(2);
+            }
+            ps.setFetchSize(Integer.MIN_VALUE);
+            verrou.writeLock().lock();
+            try {
+                try (ResultSet rs = ps.executeQuery()) {
+                    vider();
+                    watermark = debut;
+                    dernierId = 0;
+                    suppressionId = dernierLog;
+                    while (rs.next()) {
+                        Date dispo = rs.getDate("date_disponibilite");
+                        Timestamp creation = rs.getTimestamp("date_creation");
+                        ecrire(rs.getInt("id"), rs.getInt("proprietaire_id"),
+                                rs.getBigDecimal("prix").movePointRight(2).longValue(),
+                                TypeAnnonce.valueOf(rs.getString("type")),
+                                StatutAnnonce.valueOf(rs.getString("statut")),
+                                Gouvernorat.depuisLocalisation(rs.getString("localisation")),
+                                dispo != null ? (int) dispo.toLocalDate().toEpochDay() : SANS_DATE,
+                                creation != null ? (int) creation.toLocalDateTime().toLocalDate().toEpochDay()
+                                        : SANS_DATE);
+                    }
+                }
+                c.commit();
+                rattraper();
+            } finally {
+                verrou.writeLock().unlock();
+            }
+        }
+        System.out.println("✅ Catalogue en colonnes chargé : " + taille + " annonce(s).");
+    }
+
+    /**
+     * Applique les modifications et suppressions survenues depuis la position
+     * du catalogue (après restauration d'un snapshot ou un chargement),
+     * fenêtre de recouvrement comprise (voir {@link MarketplaceSync}) : les
+     * mises à jour par id sont idempotentes.
+     */
+    public void rattraper() throws SQLException {
+        verrou.writeLock().lock();
+        try {
+            Instant curseur = watermark.minusMillis(
+                    Configuration.getInstance().get(Configuration.SYNC_RECOUVREMENT_MS));
+            int curseurId = 0;
+            List<Annonce> page;
+            do {
+                page = annonceService.getModifiedSince(curseur, curseurId, TAILLE_PAGE);
+                for (Annonce a : page) {
+                    mettreAJour(a);
+                    curseur = a.getDateModification().atZone(ZoneId.systemDefault()).toInstant();
+                    curseurId = a.getId();
+                    if (curseur.isAfter(watermark) || (curseur.equals(watermark) && curseurId > dernierId)) {
+                        watermark = curseur;
+                        dernierId = curseurId;
+                    }
+                }
+            } while (page.size() == TAILLE_PAGE);
+
+            List<Suppression> suppressions;
+            do {
+                suppressions = annonceService.getSuppressionsDepuis(suppressionId, TAILLE_PAGE);
+                for (Suppression s : suppressions) {
+                    supprimer(s.getEntiteId());
+                    suppressionId = s.getId();
+                }
+            } while (suppressions.size() == TAILLE_PAGE);
+            aRattraper = false;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // ==================== MISE À JOUR (MarketplaceSync.Listener) ====================
+
+    @Override
+    public void annoncesModifiees(List<Annonce> annonces) {
+        verrou.writeLock().lock();
+        try {
+            for (Annonce a : annonces) {
+                mettreAJour(a);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void annoncesSupprimees(List<Integer> ids) {
+        verrou.writeLock().lock();
+        try {
+            for (int id : ids) {
+                supprimer(id);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suit la position de la synchronisation ; un snapshot restauré hors-ligne
+     * est d'abord rattrapé, dès que la base centrale répond de nouveau.
+     */
+    @Override
+    public void cycleTermine(Map<String, String> watermarks) {
+        if (aRattraper) {
+            try {
+                rattraper();
+            } catch (SQLException e) {
+                System.err.println("⚠️ Rattrapage du catalogue échoué : " + e.getMessage());
+                return;
+            }
+        }
+        verrou.writeLock().lock();
+        try {
+            watermark = Instant.parse(watermarks.get("annonce.watermark"));
+            dernierId = Integer.parseInt(watermarks.get("annonce.dernierId"));
+            suppressionId = Long.parseLong(watermarks.get("annonce.suppressionId"));
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute ou remplace une annonce (par id).
+     */
+    public void mettreAJour(Annonce a) {
+        verrou.writeLock().lock();
+        try {
+            ecrire(a.getId(), a.getProprietaireId(), MoteurTarification.toCentimes(a.getPrix()),
+                    a.getType(), a.getStatut(), Gouvernorat.depuisLocalisation(a.getLocalisation()),
+                    a.getDateDisponibilite() != null ? (int) a.getDateDisponibilite().toEpochDay() : SANS_DATE,
+                    a.getDateCreation() != null ? (int) a.getDateCreation().toLocalDate().toEpochDay() : SANS_DATE);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public void supprimer(int id) {
+        verrou.writeLock().lock();
+        try {
+            int ligne = index.get(id);
+            if (ligne < 0) {
+                return;
+            }
+            int derniere = taille - 1;
+            if (ligne != derniere) {
+                copierLigne(derniere, ligne);
+                index.put(ids.getInt(ligne * Integer.BYTES), ligne);
+            }
+            index.remove(id);
+            taille--;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void ecrire(int id, int proprietaire, long prix, TypeAnnonce type, StatutAnnonce statut,
+            Gouvernorat gouvernorat, int dateDispo, int dateCreation) {
+        int ligne = index.get(id);
+        if (ligne < 0) {
+            if (taille == capacite) {
+                allouer(Math.max(CAPACITE_INITIALE, capacite * 2));
+            }
+            ligne = taille++;
+            index.put(id, ligne);
+        }
+        ids.putInt(ligne * Integer.BYTES, id);
+        proprietaires.putInt(ligne * Integer.BYTES, proprietaire);
+        prixCentimes.putLong(ligne * Long.BYTES, prix);
+        types.put(ligne, (byte) type.ordinal());
+        statuts.put(ligne, (byte) statut.ordinal());
+        gouvernorats.put(ligne, (byte) gouvernorat.ordinal());
+        datesDisponibilite.putInt(ligne * Integer.BYTES, dateDispo);
+        datesCreation.putInt(ligne * Integer.BYTES, dateCreation);
+    }
+
+    private void copierLigne(int de, int vers) {
+        ids.putInt(vers * Integer.BYTES, ids.getInt(de * Integer.BYTES));
+        proprietaires.putInt(vers * Integer.BYTES, proprietaires.getInt(de * Integer.BYTES));
+        prixCentimes.putLong(vers * Long.BYTES, prixCentimes.getLong(de * Long.BYTES));
+        types.put(vers, types.get(de));
+        statuts.put(vers, statuts.get(de));
+        gouvernorats.put(vers, gouvernorats.get(de));
+        datesDisponibilite.putInt(vers * Integer.BYTES, datesDisponibilite.getInt(de * Integer.BYTES));
+        datesCreation.putInt(vers * Integer.BYTES, datesCreation.getInt(de * Integer.BYTES));
+    }
+
+    private void vider() {
+        taille = 0;
+        index = new IndexEntier(capacite);
+    }
+
+    /**
+     * (Ré)alloue les colonnes hors tas en conservant les lignes existantes.
+     */
+    private void allouer(int nouvelleCapacite) {
+        ids = agrandir(ids, nouvelleCapacite * Integer.BYTES);
+        proprietaires = agrandir(proprietaires, nouvelleCapacite * Integer.BYTES);
+        prixCentimes = agrandir(prixCentimes, nouvelleCapacite * Long.BYTES);
+        types = agrandir(types, nouvelleCapacite);
+        statuts = agrandir(statuts, nouvelleCapacite);
+        gouvernorats = agrandir(gouvernorats, nouvelleCapacite);
+        datesDisponibilite = agrandir(datesDisponibilite, nouvelleCapacite * Integer.BYTES);
+        datesCreation = agrandir(datesCreation, nouvelleCapacite * Integer.BYTES);
+        capacite = nouvelleCapacite;
+    }
+
+    // ==================== ÉTAT (SnapshotCatalogue) ====================
+
+    ReentrantReadWriteLock verrou() {
+        return verrou;
+    }
+
+    /**
+     * Colonnes dans l'ordre du snapshot, avec la largeur d'une valeur.
+     * À lire sous le verrou de lecture.
+     */
+    ByteBuffer[] colonnes() {
+        return new ByteBuffer[] { ids, proprietaires, prixCentimes, types, statuts, gouvernorats,
+                datesDisponibilite, datesCreation };
+    }
+
+    static final int[] LARGEURS = { Integer.BYTES, Integer.BYTES, Long.BYTES, 1, 1, 1, Integer.BYTES,
+            Integer.BYTES };
+
+    int taille() {
+        return taille;
+    }
+
+    IndexEntier index() {
+        return index;
+    }
+
+    Instant watermark() {
+        return watermark;
+    }
+
+    int dernierId() {
+        return dernierId;
+    }
+
+    long suppressionId() {
+        return suppressionId;
+    }
+
+    /**
+     * Installe un état restauré (colonnes éventuellement mappées sur un
+     * fichier) ; le catalogue devra être rattrapé avant d'être à jour.
+     */
+    void installer(ByteBuffer[] colonnes, int nouvelleTaille, IndexEntier nouvelIndex,
+            Instant nouveauWatermark, int nouveauDernierId, long nouveauSuppressionId) {
+        verrou.writeLock().lock();
+        try {
+            ids = colonnes[0];
+            proprietaires = colonnes[1];
+            prixCentimes = colonnes[2];
+            types = colonnes[3];
+            statuts = colonnes[4];
+            gouvernorats = colonnes[5];
+            datesDisponibilite = colonnes[6];
+            datesCreation = colonnes[7];
+            taille = nouvelleTaille;
+            capacite = nouvelleTaille; // Le prochain ajout réalloue hors du fichier
+            index = nouvelIndex;
+            watermark = nouveauWatermark;
+            dernierId = nouveauDernierId;
+            suppressionId = nouveauSuppressionId;
+            aRattraper = true;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private static ByteBuffer agrandir(ByteBuffer ancien, int octets) {
+        ByteBuffer nouveau = ByteBuffer.allocateDirect(octets).order(ByteOrder.nativeOrder());
+        if (ancien != null) {
+            nouveau.put(0, ancien, 0, Math.min(ancien.capacity(), octets));
+        }
+        return nouveau;
+    }
+
+    // ==================== REQUÊTES ====================
+
+    /**
+     * Compte les annonces correspondant aux filtres (null = pas de filtre),
+     * ex. SEMOIR disponibles à moins de 200 TND à Sfax :
+     * compter(SEMOIR, DISPONIBLE, SFAX, 20_000).
+     *
+     * @param prixMaxCentimes Prix maximal inclus, {@link #SANS_LIMITE} pour ignorer
+     */
+    public int compter(TypeAnnonce type, StatutAnnonce statut, Gouvernorat gouvernorat, long prixMaxCentimes) {
+        int t = type != null ? type.ordinal() : -1;
+        int s = statut != null ? statut.ordinal() : -1;
+        int g = gouvernorat != null ? gouvernorat.ordinal() : -1;
+
+        verrou.readLock().lock();
+        try {
+            int n = taille;
+            int resultat = 0;
+            for (int i = 0; i < n; i++) {
+                if ((t < 0 || types.get(i) == t)
+                        && (s < 0 || statuts.get(i) == s)
+                        && (g < 0 || gouvernorats.get(i) == g)
+                        && prixCentimes.getLong(i * Long.BYTES) <= prixMaxCentimes) {
+                    resultat++;
+                }
+            }
+            return resultat;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids des annonces correspondant aux filtres (mêmes conventions que
+     * {@link #compter}).
+     */
+    public int[] rechercher(TypeAnnonce type, StatutAnnonce statut, Gouvernorat gouvernorat, long prixMaxCentimes) {
+        int t = type != null ? type.ordinal() : -1;
+        int s = statut != null ? statut.ordinal() : -1;
+        int g = gouvernorat != null ? gouvernorat.ordinal() : -1;
+
+        verrou.readLock().lock();
+        try {
+            int n = taille;
+            int[] resultat = new int[Math.min(n, 64)];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if ((t < 0 || types.get(i) == t)
+                        && (s < 0 || statuts.get(i) == s)
+                        && (g < 0 || gouvernorats.get(i) == g)
+                        && prixCentimes.getLong(i * Long.BYTES) <= prixMaxCentimes) {
+                    if (k == resultat.length) {
+                        resultat = Arrays.copyOf(resultat, k * 2);
+                    }
+                    resultat[k++] = ids.getInt(i * Integer.BYTES);
+                }
+            }
+            return Arrays.copyOf(resultat, k);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nombre d'annonces par type (indice = TypeAnnonce.ordinal()) pour un
+     * statut donné (null = tous).
+     */
+    public int[] compterParType(StatutAnnonce statut) {
+        int s = statut != null ? statut.ordinal() : -1;
+        int[] parType = new int[TypeAnnonce.values().length];
+
+        verrou.readLock().lock();
+        try {
+            int n = taille;
+            for (int i = 0; i < n; i++) {
+                if (s < 0 || statuts.get(i) == s) {
+                    parType[types.get(i)]++;
+                }
+            }
+            return parType;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Prix moyen (centimes) des annonces disponibles d'un type dans un
+     * gouvernorat (null = tous), ou -1 s'il n'y en a aucune.
+     */
+    public long prixMoyenCentimes(TypeAnnonce type, Gouvernorat gouvernorat) {
+        int t = type != null ? type.ordinal() : -1;
+        int g = gouvernorat != null ? gouvernorat.ordinal() : -1;
+        int disponible = StatutAnnonce.DISPONIBLE.ordinal();
+
+        verrou.readLock().lock();
+        try {
+            int n = taille;
+            long somme = 0;
+            int nombre = 0;
+            for (int i = 0; i < n; i++) {
+                if (statuts.get(i) == disponible
+                        && (t < 0 || types.get(i) == t)
+                        && (g < 0 || gouvernorats.get(i) == g)) {
+                    somme += prixCentimes.getLong(i * Long.BYTES);
+                    nombre++;
+                }
+            }
+            return nombre > 0 ? somme / nombre : -1;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    public int getTaille() {
+        verrou.readLock().lock();
+        try {
+            return taille;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // ==================== INDEX ID -> LIGNE ====================
+
+    /**
+     * Table de hachage int -> int à adressage ouvert (sondage linéaire),
+     * sans boxing. Suppression par décalage arrière, sans marqueur.
+     */
+    static final class IndexEntier {
+        private static final int LIBRE = 0; // Les ids MySQL commencent à 1
+
+        private int[] cles;
+        private int[] valeurs;
+        private int nombre;
+
+        IndexEntier(int[] cles, int[] valeurs, int nombre) {
+            this.cles = cles;
+            this.valeurs = valeurs;
+            this.nombre = nombre;
+        }
+
+        IndexEntier(int capaciteAttendue) {
+            int capacite = Integer.highestOneBit(Math.max(16, capaciteAttendue * 2 - 1)) << 1;
+            cles = new int[capacite];
+            valeurs = new int[capacite];
+        }
+
+        int[] cles() {
+            return cles;
+        }
+
+        int[] valeurs() {
+            return valeurs;
+        }
+
+        int nombre() {
+            return nombre;
+        }
+
+        int get(int cle) {
+            int masque = cles.length - 1;
+            for (int i = hache(cle) & masque; cles[i] != LIBRE; i = (i + 1) & masque) {
+                if (cles[i] == cle) {
+                    return valeurs[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(int cle, int valeur) {
+            if ((nombre + 1) * 2 > cles.length) {
+                redimensionner();
+            }
+            int masque = cles.length - 1;
+            int i = hache(cle) & masque;
+            while (cles[i] != LIBRE && cles[i] != cle) {
+                i = (i + 1) & masque;
+            }
+            if (cles[i] == LIBRE) {
+                nombre++;
+            }
+            cles[i] = cle;
+            valeurs[i] = valeur;
+        }
+
+        void remove(int cle) {
+            int masque = cles.length - 1;
+            int i = hache(cle) & masque;
+            while (cles[i] != cle) {
+                if (cles[i] == LIBRE) {
+                    return;
+                }
+                i = (i + 1) & masque;
+            }
+            // Décalage arrière : remonte les entrées suivantes du même groupe
+            int trou = i;
+            for (int j = (trou + 1) & masque; cles[j] != LIBRE; j = (j + 1) & masque) {
+                int ideal = hache(cles[j]) & masque;
+                if (((j - ideal) & masque) >= ((j - trou) & masque)) {
+                    cles[trou] = cles[j];
+                    valeurs[trou] = valeurs[j];
+                    trou = j;
+                }
+            }
+            cles[trou] = LIBRE;
+            nombre--;
+        }
+
+        private void redimensionner() {
+            int[] anciennesCles = cles;
+            int[] anciennesValeurs = valeurs;
+            cles = new int[anciennesCles.length * 2];
+            valeurs = new int[anciennesCles.length * 2];
+            nombre = 0;
+            for (int i = 0; i < anciennesCles.length; i++) {
+                if (anciennesCles[i] != LIBRE) {
+                    put(anciennesCles[i], anciennesValeurs[i]);
+                }
+            }
+        }
+
+        static int hache(int cle) {
+            int h = cle * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
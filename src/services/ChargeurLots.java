@@ -0,0 +1,105 @@
+package services;
+
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regroupement des lectures par ID (à la manière d'un DataLoader) : les
+ * getById concurrents arrivés dans une courte fenêtre partent vers la base
+ * en un seul getByIds (IN (...)).
+ *
+ * Le premier appelant d'un lot en est le meneur : il attend la fin de la
+ * fenêtre (ou que le lot soit plein), exécute la requête et distribue le
+ * résultat ; les autres attendent simplement ce résultat.
+ *
+ * @param <T> Type de l'entité
+ */
+final class ChargeurLots<T> {
+
+    /**
+     * Lecture groupée (typiquement IService::getByIds).
+     */
+    @FunctionalInterface
+    interface Chargement<T> {
+        Map<Integer, T> charger(int[] ids) throws SQLException;
+    }
+
+    private static final class Lot<T> {
+        final Set<Integer> ids = new LinkedHashSet<>();
+        final CompletableFuture<Map<Integer, T>> resultat = new CompletableFuture<>();
+    }
+
+    private final Chargement<T> chargement;
+    private final long fenetreNanos;
+    private final int tailleMax;
+
+    private Lot<T> lotOuvert; // Protégé par this
+
+    ChargeurLots(Chargement<T> chargement, long fenetreMicros, int tailleMax) {
+        this.chargement = chargement;
+        this.fenetreNanos = TimeUnit.MICROSECONDS.toNanos(fenetreMicros);
+        this.tailleMax = tailleMax;
+    }
+
+    /**
+     * @return L'entité ou null si elle n'existe pas
+     */
+    T get(int id) throws SQLException {
+        Lot<T> lot;
+        boolean meneur = false;
+        synchronized (this) {
+            if (lotOuvert == null) {
+                lotOuvert = new Lot<>();
+                meneur = true;
+            }
+            lot = lotOuvert;
+            lot.ids.add(id);
+            if (lot.ids.size() >= tailleMax) {
+                lotOuvert = null; // Plein : les suivants ouvrent un nouveau lot
+                notifyAll();
+            }
+        }
+        if (meneur) {
+            executer(lot);
+        }
+        try {
+            return lot.resultat.get().get(id);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) {
+                throw sql;
+            }
+            throw new SQLException("Lecture groupée échouée", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Lecture groupée interrompue", e);
+        }
+    }
+
+    private void executer(Lot<T> lot) {
+        int[] ids;
+        synchronized (this) {
+            long fin = System.nanoTime() + fenetreNanos;
+            try {
+                for (long restant = fenetreNanos; lotOuvert == lot && restant > 0; restant = fin - System.nanoTime()) {
+                    TimeUnit.NANOSECONDS.timedWait(this, restant);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // On charge quand même le lot
+            }
+            if (lotOuvert == lot) {
+                lotOuvert = null;
+            }
+            ids = lot.ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+        try {
+            lot.resultat.complete(chargement.charger(ids));
+        } catch (SQLException | RuntimeException e) {
+            lot.resultat.completeExceptionally(e);
+        }
+    }
+}
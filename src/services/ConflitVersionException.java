@@ -0,0 +1,37 @@
+package services;
+
+import java.sql.SQLException;
+
+/**
+ * Levée quand un UPDATE optimiste échoue : la ligne a été modifiée par un
+ * autre utilisateur depuis sa lecture (la version en base ne correspond plus).
+ * Hérite de SQLException pour respecter le contrat de {@link IService}.
+ */
+public class ConflitVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String entite;
+    private final int entiteId;
+    private final int versionAttendue;
+
+    public ConflitVersionException(String entite, int entiteId, int versionAttendue) {
+        super(entite + " " + entiteId + " modifiée par un autre utilisateur (version " + versionAttendue
+                + " périmée)");
+        this.entite = entite;
+        this.entiteId = entiteId;
+        this.versionAttendue = versionAttendue;
+    }
+
+    public String getEntite() {
+        return entite;
+    }
+
+    public int getEntiteId() {
+        return entiteId;
+    }
+
+    public int getVersionAttendue() {
+        return versionAttendue;
+    }
+}
@@ -0,0 +1,330 @@
+package services;
+
+import utils.Configuration;
+import utils.MyDatabase;
+import utils.ReplicasLecture;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traitement de fond du cycle de vie des réservations :
+ * - CONFIRMEE dont la date de fin est passée -> TERMINEE ;
+ * - EN_ATTENTE sans réponse depuis trop longtemps -> ANNULEE ;
+ * en libérant les annonces correspondantes (RESERVE / LOUE -> DISPONIBLE),
+ * ou en les attribuant au premier de leur liste d'attente.
+ *
+ * Les transitions sont appliquées par lots, chaque lot dans une transaction
+ * sur une connexion dédiée, avec des UPDATE ensemblistes (IN (...)).
+ * Un seul poste exécute le traitement à la fois grâce au verrou
+ * consultatif MySQL GET_LOCK : les autres instances passent leur tour.
+ * Chaque passe se termine par l'archivage des réservations closes
+ * ({@link ArchivageReservations}).
+ */
+public class CycleVieReservations {
+
+    private static final String NOM_VERROU = "agriflow.cycle_reservations";
+
+    private final long intervalleSecondes;
+    private final Duration expirationEnAttente;
+    private final int tailleLot;
+    private final ArchivageReservations archivage;
+    private final ListeAttenteService listeAttente = new ListeAttenteService();
+
+    private ScheduledExecutorService executor;
+
+    // ==================== MÉTRIQUES ====================
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong executionsSansVerrou = new AtomicLong();
+    private final AtomicLong reservationsTerminees = new AtomicLong();
+    private final AtomicLong reservationsExpirees = new AtomicLong();
+    private final AtomicLong annoncesLiberees = new AtomicLong();
+    private final AtomicLong annoncesAttribuees = new AtomicLong(); // Servies à une liste d'attente
+    // Ancienneté de la plus vieille réservation échue traitée par la dernière passe
+    // (0 : à jour), et son calcul pendant la passe en cours
+    private volatile long retardDernierePasseJours;
+    private long retardPasseEnCours;
+    private volatile LocalDateTime derniereExecution;
+
+    /**
+     * Réglages lus dans la {@link Configuration} (cycle.* et archivage.*) ;
+     * par défaut toutes les 5 minutes, demandes EN_ATTENTE expirées après
+     * 48 h, lots de 200 réservations.
+     */
+    public CycleVieReservations() {
+        this(Configuration.getInstance().get(Configuration.CYCLE_INTERVALLE_S),
+                Duration.ofHours(Configuration.getInstance().get(Configuration.CYCLE_EXPIRATION_EN_ATTENTE_H)),
+                Configuration.getInstance().get(Configuration.CYCLE_TAILLE_LOT),
+                new ArchivageReservations());
+    }
+
+    public CycleVieReservations(long intervalleSecondes, Duration expirationEnAttente, int tailleLot,
+            ArchivageReservations archivage) {
+        this.intervalleSecondes = intervalleSecondes;
+        this.expirationEnAttente = expirationEnAttente;
+        this.tailleLot = tailleLot;
+        this.archivage = archivage;
+    }
+
+    /**
+     * Démarre le traitement périodique (thread démon).
+     */
+    public synchronized void demarrer() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cycle-vie-reservations");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::executerSansErreur, intervalleSecondes, intervalleSecondes,
+                TimeUnit.SECONDS);
+    }
+
+    public synchronized void arreter() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void executerSansErreur() {
+        try {
+            executer();
+        } catch (SQLException e) {
+            System.err.println("⚠️ Cycle de vie des réservations : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Une passe complète, si ce poste obtient le verrou consultatif.
+     */
+    public void executer() throws SQLException {
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion()) {
+            if (!acquerirVerrou(c)) {
+                executionsSansVerrou.incrementAndGet();
+                return;
+            }
+            try {
+                retardPasseEnCours = 0;
+                LocalDate aujourdhui = LocalDate.now();
+                LocalDateTime limiteEnAttente = LocalDateTime.now().minus(expirationEnAttente);
+
+                long terminees = traiterParLots(c, """
+                        SELECT id, annonce_id, date_fin FROM reservation
+                        WHERE statut = 'CONFIRMEE' AND date_fin < ?
+                        ORDER BY date_fin ASC
+                        LIMIT ?
+                        FOR UPDATE
+                        """, Date.valueOf(aujourdhui), "TERMINEE", aujourdhui);
+                long expirees = traiterParLots(c, """
+                        SELECT id, annonce_id, NULL AS date_fin FROM reservation
+                        WHERE statut = 'EN_ATTENTE' AND date_creation < ?
+                        ORDER BY date_creation ASC
+                        LIMIT ?
+                        FOR UPDATE
+                        """, Timestamp.valueOf(limiteEnAttente), "ANNULEE", aujourdhui);
+                archivage.archiver(c);
+
+                reservationsTerminees.addAndGet(terminees);
+                reservationsExpirees.addAndGet(expirees);
+                executions.incrementAndGet();
+                retardDernierePasseJours = retardPasseEnCours;
+                derniereExecution = LocalDateTime.now();
+                if (terminees + expirees > 0) {
+                    System.out.println("✅ Cycle de vie : " + terminees + " réservation(s) terminée(s), "
+                            + expirees + " demande(s) expirée(s).");
+                }
+            } finally {
+                libererVerrou(c);
+            }
+        }
+    }
+
+    /**
+     * Sélectionne un lot (verrouillé FOR UPDATE), applique la transition et
+     * libère les annonces en deux UPDATE ensemblistes, puis valide. Recommence
+     * tant que des lots pleins sont trouvés.
+     */
+    private long traiterParLots(Connection c, String selection, Object borne, String nouveauStatut,
+            LocalDate aujourdhui) throws SQLException {
+        long total = 0;
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            while (true) {
+                List<Integer> reservationIds = new ArrayList<>();
+                List<Integer> annonceIds = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement(selection)) {
+                    ps.setObject(1, borne);
+                    ps.setInt(2, tailleLot);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            reservationIds.add(rs.getInt("id"));
+                            annonceIds.add(rs.getInt("annonce_id"));
+                            Date dateFin = rs.getDate("date_fin");
+                            if (dateFin != null) {
+                                long retard = aujourdhui.toEpochDay() - dateFin.toLocalDate().toEpochDay();
+                                retardPasseEnCours = Math.max(retardPasseEnCours, retard);
+                            }
+                        }
+                    }
+                }
+                if (reservationIds.isEmpty()) {
+                    c.commit();
+                    return total;
+                }
+
+                try (PreparedStatement ps = c.prepareStatement("UPDATE reservation SET statut = ?, "
+                        + "version = version + 1 WHERE id IN (" + placeholders(reservationIds.size()) + ")")) {
+                    ps.setString(1, nouveauStatut);
+                    bind(ps, 2, reservationIds);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = c.prepareStatement("UPDATE annonce SET statut = 'DISPONIBLE', "
+                        + "date_modification = NOW(3), version = version + 1 "
+                        + "WHERE statut IN ('RESERVE', 'LOUE') AND id IN (" + placeholders(annonceIds.size()) + ")")) {
+                    bind(ps, 1, annonceIds);
+                    annoncesLiberees.addAndGet(ps.executeUpdate());
+                }
+                List<Integer> attribuees = servirListesAttente(c, annonceIds);
+                c.commit();
+                ReplicasLecture.getInstance().noterEcriture();
+                attribuees.forEach(listeAttente::invalider);
+
+                total += reservationIds.size();
+                if (reservationIds.size() < tailleLot) {
+                    return total;
+                }
+            }
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Attribue les annonces libérées par le lot au premier de leur liste
+     * d'attente, dans la même transaction. Une seule requête pour trouver
+     * les annonces concernées, puis une attribution par annonce attendue.
+     *
+     * @return Les annonces attribuées
+     */
+    private List<Integer> servirListesAttente(Connection c, List<Integer> annonceIds) throws SQLException {
+        List<Integer> attendues = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT DISTINCT annonce_id FROM liste_attente "
+                + "WHERE statut = 'EN_ATTENTE' AND annonce_id IN (" + placeholders(annonceIds.size()) + ")")) {
+            bind(ps, 1, annonceIds);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    attendues.add(rs.getInt(1));
+            }
+        }
+        Collections.sort(attendues); // Verrous posés dans un ordre stable
+        List<Integer> attribuees = new ArrayList<>();
+        for (int annonceId : attendues) {
+            if (listeAttente.attribuerAuSuivant(c, annonceId) != null) {
+                attribuees.add(annonceId);
+                annoncesAttribuees.incrementAndGet();
+            }
+        }
+        return attribuees;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+
+    private static void bind(PreparedStatement ps, int debut, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            ps.setInt(debut + i, ids.get(i));
+        }
+    }
+
+    // ==================== VERROU CONSULTATIF ====================
+
+    private boolean acquerirVerrou(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            ps.setString(1, NOM_VERROU);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void libererVerrou(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, NOM_VERROU);
+            ps.executeQuery().close();
+        }
+    }
+
+    // ==================== MÉTRIQUES ====================
+
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    public long getExecutionsSansVerrou() {
+        return executionsSansVerrou.get();
+    }
+
+    public long getReservationsTerminees() {
+        return reservationsTerminees.get();
+    }
+
+    public long getReservationsExpirees() {
+        return reservationsExpirees.get();
+    }
+
+    public long getAnnoncesLiberees() {
+        return annoncesLiberees.get();
+    }
+
+    public long getAnnoncesAttribuees() {
+        return annoncesAttribuees.get();
+    }
+
+    /**
+     * Retard de la dernière passe complète : une passe lente ponctuelle
+     * ne fige pas la mesure.
+     */
+    public long getRetardDernierePasseJours() {
+        return retardDernierePasseJours;
+    }
+
+    public long getReservationsArchivees() {
+        return archivage.getReservationsArchivees();
+    }
+
+    public LocalDateTime getDerniereExecution() {
+        return derniereExecution;
+    }
+
+    @Override
+    public String toString() {
+        return "CycleVieReservations{" +
+                "executions=" + executions +
+                ", sansVerrou=" + executionsSansVerrou +
+                ", terminees=" + reservationsTerminees +
+                ", expirees=" + reservationsExpirees +
+                ", annoncesLiberees=" + annoncesLiberees +
+                ", annoncesAttribuees=" + annoncesAttribuees +
+                ", archivees=" + archivage.getReservationsArchivees() +
+                ", retardDernierePasseJours=" + retardDernierePasseJours +
+                ", derniereExecution=" + derniereExecution +
+                '}';
+    }
+}
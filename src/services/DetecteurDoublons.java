@@ -0,0 +1,670 @@
+package services;
+
+import models.Annonce;
+import models.StatutAnnonce;
+import models.TypeAnnonce;
+import utils.Configuration;
+import utils.MyDatabase;
+import utils.ReplicasLecture;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Détection des annonces en double ou quasi-double (même propriétaire, même
+ * type, texte presque identique) : un propriétaire qui republie son
+ * tracteur est averti à la publication, et les doublons existants peuvent
+ * être retirés en lot.
+ *
+ * Empreinte MinHash du titre + description (paires de mots consécutifs,
+ * {@link #NB_HACHAGES} fonctions de hachage), rangée dans des seaux LSH
+ * (4 bandes de 4 minima, clé incluant propriétaire et type) : deux annonces
+ * ne sont comparées que si elles partagent un seau, soit en pratique leurs
+ * quasi-doublons. La similarité est estimée sur l'octet de poids faible de
+ * chaque minimum (16 octets par annonce).
+ *
+ * Seules les annonces actives (DISPONIBLE, RESERVE, LOUE) sont indexées :
+ * republier un article vendu ou retiré est légitime.
+ */
+public class DetecteurDoublons implements MarketplaceSync.Listener {
+
+    static final int NB_HACHAGES = 16;
+    private static final int NB_BANDES = 4; // 4 bandes x 4 minima : seuil LSH vers 0,7
+    private static final int PAR_BANDE = NB_HACHAGES / NB_BANDES;
+
+    private static final int TAILLE_LOT_CHARGEMENT = 10_000;
+
+    private static final long[] GRAINES = new SplittableRandom(0x5EED).longs(NB_HACHAGES).toArray();
+
+    // ==================== SINGLETON ====================
+    private static final DetecteurDoublons INSTANCE = new DetecteurDoublons();
+
+    public static DetecteurDoublons getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== LIGNES ====================
+    private int n;
+    private int[] ids = new int[1_024]; // 0 : ligne abandonnée (annonce modifiée ou retirée)
+    private int[] proprietaires = new int[1_024];
+    private byte[] types = new byte[1_024];
+    private byte[] signatures = new byte[1_024 * NB_HACHAGES];
+    private int[] clesBandes = new int[1_024 * NB_BANDES];
+    private int abandonnees;
+    private volatile boolean charge;
+
+    // id -> ligne courante
+    private CatalogueColonnes.IndexEntier lignes = new CatalogueColonnes.IndexEntier(1_024);
+
+    // Seaux LSH : multimap clé -> ligne à adressage ouvert (une entrée par bande et par ligne)
+    private int[] clesSeaux = new int[4_096];
+    private int[] lignesSeaux = new int[4_096];
+    private int nbEntrees;
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    private DetecteurDoublons() {
+    }
+
+    /**
+     * Annonce existante jugée identique.
+     */
+    public static final class Doublon {
+        private final int annonceId;
+        private final double similarite;
+
+        Doublon(int annonceId, double similarite) {
+            this.annonceId = annonceId;
+            this.similarite = similarite;
+        }
+
+        public int getAnnonceId() {
+            return annonceId;
+        }
+
+        public double getSimilarite() {
+            return similarite;
+        }
+    }
+
+    /**
+     * Groupe de doublons trouvé par l'analyse en lot : l'annonce la plus
+     * ancienne est conservée.
+     */
+    public static final class GroupeDoublons {
+        private final int originalId;
+        private final int[] doublonIds;
+
+        GroupeDoublons(int originalId, int[] doublonIds) {
+            this.originalId = originalId;
+            this.doublonIds = doublonIds;
+        }
+
+        public int getOriginalId() {
+            return originalId;
+        }
+
+        public int[] getDoublonIds() {
+            return doublonIds;
+        }
+
+        @Override
+        public String toString() {
+            return "GroupeDoublons{original=" + originalId + ", doublons=" + Arrays.toString(doublonIds) + '}';
+        }
+    }
+
+    // ==================== CONSULTATION ====================
+
+    /**
+     * Cherche une annonce active du même propriétaire, du même type, au
+     * texte quasi identique (l'annonce elle-même exclue).
+     *
+     * @return Le doublon le plus proche, ou null
+     */
+    public Doublon chercher(Annonce annonce) {
+        Empreinte e = Empreinte.calculer(annonce);
+        if (e == null) {
+            return null;
+        }
+        verrou.readLock().lock();
+        try {
+            int meilleureLigne = -1;
+            double meilleure = 0;
+            double seuil = seuil();
+            for (int cle : e.cles) {
+                int masque = clesSeaux.length - 1;
+                for (int s = hache(cle) & masque; clesSeaux[s] != 0; s = (s + 1) & masque) {
+                    int ligne = lignesSeaux[s];
+                    if (clesSeaux[s] != cle || ids[ligne] == 0 || ids[ligne] == annonce.getId()
+                            || proprietaires[ligne] != e.proprietaireId || types[ligne] != e.type) {
+                        continue;
+                    }
+                    double similarite = similarite(e.signature, ligne);
+                    if (similarite >= seuil && similarite > meilleure) {
+                        meilleure = similarite;
+                        meilleureLigne = ligne;
+                    }
+                }
+            }
+            return meilleureLigne < 0 ? null : new Doublon(ids[meilleureLigne], meilleure);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    public int getTaille() {
+        verrou.readLock().lock();
+        try {
+            return n - abandonnees;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // ==================== MISE À JOUR ====================
+
+    /**
+     * Indexe une annonce publiée ou modifiée (ou la retire si elle n'est
+     * plus active).
+     */
+    public void indexer(Annonce annonce) {
+        if (!estActive(annonce.getStatut())) {
+            retirer(annonce.getId());
+            return;
+        }
+        Empreinte e = Empreinte.calculer(annonce);
+        verrou.writeLock().lock();
+        try {
+            int ancienne = lignes.get(annonce.getId());
+            if (ancienne >= 0 && e != null && proprietaires[ancienne] == e.proprietaireId
+                    && types[ancienne] == e.type && Arrays.equals(signatures, ancienne * NB_HACHAGES,
+                            (ancienne + 1) * NB_HACHAGES, e.signature, 0, NB_HACHAGES)) {
+                return; // Texte inchangé (ex: changement de prix)
+            }
+            retirerLigne(annonce.getId());
+            if (e != null) {
+                ajouterLigne(annonce.getId(), e);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public void retirer(int annonceId) {
+        verrou.writeLock().lock();
+        try {
+            retirerLigne(annonceId);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void annoncesModifiees(List<Annonce> annonces) {
+        for (Annonce a : annonces) {
+            indexer(a);
+        }
+    }
+
+    @Override
+    public void annoncesSupprimees(List<Integer> ids) {
+        ids.forEach(this::retirer);
+    }
+
+    private void ajouterLigne(int annonceId, Empreinte e) {
+        if (n == ids.length) {
+            int capacite = n * 2;
+            ids = Arrays.copyOf(ids, capacite);
+            proprietaires = Arrays.copyOf(proprietaires, capacite);
+            types = Arrays.copyOf(types, capacite);
+            signatures = Arrays.copyOf(signatures, capacite * NB_HACHAGES);
+            clesBandes = Arrays.copyOf(clesBandes, capacite * NB_BANDES);
+        }
+        int ligne = n++;
+        ids[ligne] = annonceId;
+        proprietaires[ligne] = e.proprietaireId;
+        types[ligne] = e.type;
+        System.arraycopy(e.signature, 0, signatures, ligne * NB_HACHAGES, NB_HACHAGES);
+        System.arraycopy(e.cles, 0, clesBandes, ligne * NB_BANDES, NB_BANDES);
+        for (int cle : e.cles) {
+            ajouterEntree(cle, ligne);
+        }
+        lignes.put(annonceId, ligne);
+    }
+
+    private void retirerLigne(int annonceId) {
+        int ligne = lignes.get(annonceId);
+        if (ligne < 0) {
+            return;
+        }
+        ids[ligne] = 0; // Ses entrées de seaux sont ignorées jusqu'au compactage
+        lignes.remove(annonceId);
+        if (++abandonnees > 1_024 && abandonnees * 2 > n) {
+            compacter();
+        }
+    }
+
+    private void ajouterEntree(int cle, int ligne) {
+        if ((nbEntrees + 1) * 2 > clesSeaux.length) {
+            redimensionnerSeaux(clesSeaux.length * 2);
+        }
+        int masque = clesSeaux.length - 1;
+        int s = hache(cle) & masque;
+        while (clesSeaux[s] != 0) {
+            s = (s + 1) & masque;
+        }
+        clesSeaux[s] = cle;
+        lignesSeaux[s] = ligne;
+        nbEntrees++;
+    }
+
+    private void redimensionnerSeaux(int capacite) {
+        int[] anciennesCles = clesSeaux;
+        int[] anciennesLignes = lignesSeaux;
+        clesSeaux = new int[capacite];
+        lignesSeaux = new int[capacite];
+        nbEntrees = 0;
+        for (int s = 0; s < anciennesCles.length; s++) {
+            if (anciennesCles[s] != 0) {
+                ajouterEntree(anciennesCles[s], anciennesLignes[s]);
+            }
+        }
+    }
+
+    /**
+     * Reconstruit lignes et seaux sans les lignes abandonnées.
+     */
+    private void compacter() {
+        int vivantes = 0;
+        for (int ligne = 0; ligne < n; ligne++) {
+            if (ids[ligne] == 0) {
+                continue;
+            }
+            ids[vivantes] = ids[ligne];
+            proprietaires[vivantes] = proprietaires[ligne];
+            types[vivantes] = types[ligne];
+            System.arraycopy(signatures, ligne * NB_HACHAGES, signatures, vivantes * NB_HACHAGES, NB_HACHAGES);
+            System.arraycopy(clesBandes, ligne * NB_BANDES, clesBandes, vivantes * NB_BANDES, NB_BANDES);
+            vivantes++;
+        }
+        n = vivantes;
+        abandonnees = 0;
+        lignes = new CatalogueColonnes.IndexEntier(Math.max(1_024, n));
+        int capacite = Integer.highestOneBit(Math.max(4_096, n * NB_BANDES * 2 - 1)) << 1;
+        clesSeaux = new int[capacite];
+        lignesSeaux = new int[capacite];
+        nbEntrees = 0;
+        for (int ligne = 0; ligne < n; ligne++) {
+            lignes.put(ids[ligne], ligne);
+            for (int b = 0; b < NB_BANDES; b++) {
+                ajouterEntree(clesBandes[ligne * NB_BANDES + b], ligne);
+            }
+        }
+    }
+
+    // ==================== CHARGEMENT ET ANALYSE EN LOT ====================
+
+    /**
+     * Premier chargement de l'index. Sans effet si déjà fait.
+     */
+    public synchronized void initialiser() throws SQLException {
+        if (!charge) {
+            charger();
+        }
+    }
+
+    /**
+     * (Re)construit l'index depuis la base : annonces actives lues en flux,
+     * empreintes calculées en parallèle par lots.
+     */
+    public void charger() throws SQLException {
+        long debut = System.currentTimeMillis();
+        String query = """
+                SELECT id, proprietaire_id, type, titre, description FROM annonce
+                WHERE statut IN ('DISPONIBLE', 'RESERVE', 'LOUE')
+                ORDER BY id
+                """;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        verrou.writeLock().lock();
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion();
+                PreparedStatement ps = c.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY)) {
+            vider();
+            ps.setFetchSize(Integer.MIN_VALUE); // Lecture en flux (MySQL)
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Annonce> lot = new ArrayList<>(TAILLE_LOT_CHARGEMENT);
+                boolean suite = true;
+                while (suite) {
+                    suite = rs.next();
+                    if (suite) {
+                        Annonce a = new Annonce();
+                        a.setId(rs.getInt("id"));
+                        a.setProprietaireId(rs.getInt("proprietaire_id"));
+                        a.setType(TypeAnnonce.valueOf(rs.getString("type")));
+                        a.setTitre(rs.getString("titre"));
+                        a.setDescription(rs.getString("description"));
+                        lot.add(a);
+                    }
+                    if (lot.size() == TAILLE_LOT_CHARGEMENT || (!suite && !lot.isEmpty())) {
+                        Empreinte[] empreintes = new Empreinte[lot.size()];
+                        List<Annonce> annonces = lot;
+                        pool.submit(() -> IntStream.range(0, annonces.size()).parallel()
+                                .forEach(i -> empreintes[i] = Empreinte.calculer(annonces.get(i)))).join();
+                        for (int i = 0; i < empreintes.length; i++) {
+                            if (empreintes[i] != null) {
+                                ajouterLigne(annonces.get(i).getId(), empreintes[i]);
+                            }
+                        }
+                        lot = new ArrayList<>(TAILLE_LOT_CHARGEMENT);
+                    }
+                }
+            }
+            charge = true;
+        } finally {
+            verrou.writeLock().unlock();
+            pool.shutdown();
+        }
+        System.out.println("✅ Détecteur de doublons chargé (" + getTaille() + " annonces actives) en "
+                + (System.currentTimeMillis() - debut) + " ms");
+    }
+
+    /**
+     * Dédoublonnage complet de la table : rechargement de l'index, analyse
+     * parallèle puis retrait des doublons.
+     *
+     * @return Le nombre d'annonces retirées
+     */
+    public int dedoublonner() throws SQLException {
+        charger();
+        List<GroupeDoublons> groupes = analyser();
+        System.out.println("🔎 " + groupes.size() + " groupe(s) de doublons trouvé(s)");
+        return retirerDoublons(groupes);
+    }
+
+    /**
+     * Groupes de doublons parmi les annonces indexées. Les paires sont
+     * cherchées en parallèle (chaque ligne interroge ses seaux), puis
+     * regroupées par union-find ; la plus ancienne annonce (plus petit ID)
+     * de chaque groupe est l'original.
+     */
+    public List<GroupeDoublons> analyser() {
+        verrou.readLock().lock();
+        try {
+            ConcurrentLinkedQueue<long[]> paires = new ConcurrentLinkedQueue<>();
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+            try {
+                pool.submit(() -> IntStream.range(0, n).parallel().forEach(ligne -> {
+                    List<Long> trouvees = pairesDe(ligne);
+                    if (!trouvees.isEmpty()) {
+                        paires.add(trouvees.stream().mapToLong(Long::longValue).toArray());
+                    }
+                })).join();
+            } finally {
+                pool.shutdown();
+            }
+
+            int[] parents = new int[n];
+            for (int i = 0; i < n; i++) {
+                parents[i] = i;
+            }
+            for (long[] lot : paires) {
+                for (long paire : lot) {
+                    unir(parents, (int) (paire >>> 32), (int) paire);
+                }
+            }
+            Map<Integer, List<Integer>> groupes = new HashMap<>();
+            for (int ligne = 0; ligne < n; ligne++) {
+                if (ids[ligne] != 0 && racine(parents, ligne) != ligne) {
+                    groupes.computeIfAbsent(racine(parents, ligne), k -> new ArrayList<>()).add(ids[ligne]);
+                }
+            }
+            List<GroupeDoublons> resultat = new ArrayList<>();
+            for (Map.Entry<Integer, List<Integer>> g : groupes.entrySet()) {
+                List<Integer> membres = g.getValue();
+                membres.add(ids[g.getKey()]);
+                Collections.sort(membres);
+                resultat.add(new GroupeDoublons(membres.get(0),
+                        membres.subList(1, membres.size()).stream().mapToInt(Integer::intValue).toArray()));
+            }
+            return resultat;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Paires (ligne antérieure, ligne) de doublons de la ligne donnée.
+     */
+    private List<Long> pairesDe(int ligne) {
+        List<Long> trouvees = new ArrayList<>(0);
+        if (ids[ligne] == 0) {
+            return trouvees;
+        }
+        byte[] signature = Arrays.copyOfRange(signatures, ligne * NB_HACHAGES, (ligne + 1) * NB_HACHAGES);
+        double seuil = seuil();
+        int masque = clesSeaux.length - 1;
+        for (int b = 0; b < NB_BANDES; b++) {
+            int cle = clesBandes[ligne * NB_BANDES + b];
+            for (int s = hache(cle) & masque; clesSeaux[s] != 0; s = (s + 1) & masque) {
+                int autre = lignesSeaux[s];
+                if (clesSeaux[s] == cle && autre < ligne && ids[autre] != 0
+                        && proprietaires[autre] == proprietaires[ligne] && types[autre] == types[ligne]
+                        && similarite(signature, autre) >= seuil) {
+                    long paire = (long) autre << 32 | ligne;
+                    if (!trouvees.contains(paire)) {
+                        trouvees.add(paire);
+                    }
+                }
+            }
+        }
+        return trouvees;
+    }
+
+    /**
+     * Retire les doublons trouvés : ils passent INDISPONIBLE (pas de
+     * suppression, leurs réservations restent intactes). Seuls ceux encore
+     * DISPONIBLE sont touchés, et seuls ceux-là quittent l'index : les lignes
+     * sont verrouillées et relues dans la transaction du lot.
+     *
+     * @return Le nombre d'annonces retirées
+     */
+    public int retirerDoublons(List<GroupeDoublons> groupes) throws SQLException {
+        int[] doublons = groupes.stream().flatMapToInt(g -> IntStream.of(g.getDoublonIds())).toArray();
+        int retirees = 0;
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion()) {
+            c.setAutoCommit(false);
+            for (int debut = 0; debut < doublons.length; debut += AnnonceService.TAILLE_LOT_IN) {
+                int fin = Math.min(debut + AnnonceService.TAILLE_LOT_IN, doublons.length);
+                List<Integer> disponibles = new ArrayList<>();
+                try {
+                    try (PreparedStatement ps = c.prepareStatement("SELECT id FROM annonce "
+                            + "WHERE statut = 'DISPONIBLE' AND id IN ("
+                            + String.join(", ", Collections.nCopies(fin - debut, "?")) + ") FOR UPDATE")) {
+                        for (int i = debut; i < fin; i++) {
+                            ps.setInt(i - debut + 1, doublons[i]);
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next())
+                                disponibles.add(rs.getInt(1));
+                        }
+                    }
+                    if (!disponibles.isEmpty()) {
+                        try (PreparedStatement ps = c.prepareStatement("UPDATE annonce SET statut = 'INDISPONIBLE', "
+                                + "date_modification = NOW(3), version = version + 1 WHERE id IN ("
+                                + String.join(", ", Collections.nCopies(disponibles.size(), "?")) + ")")) {
+                            for (int i = 0; i < disponibles.size(); i++) {
+                                ps.setInt(i + 1, disponibles.get(i));
+                            }
+                            ps.executeUpdate();
+                        }
+                    }
+                    c.commit();
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                }
+                if (!disponibles.isEmpty()) {
+                    ReplicasLecture.getInstance().noterEcriture();
+                }
+                // Les autres (réservées, louées entre-temps) restent indexées
+                disponibles.forEach(this::retirer);
+                retirees += disponibles.size();
+            }
+        }
+        System.out.println("✅ " + retirees + " doublon(s) retiré(s) de la Marketplace");
+        return retirees;
+    }
+
+    private static int racine(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void unir(int[] parents, int a, int b) {
+        int ra = racine(parents, a);
+        int rb = racine(parents, b);
+        // La plus petite ligne (lue en premier : plus petit ID) reste racine
+        if (ra < rb) {
+            parents[rb] = ra;
+        } else if (rb < ra) {
+            parents[ra] = rb;
+        }
+    }
+
+    private void vider() {
+        n = 0;
+        abandonnees = 0;
+        lignes = new CatalogueColonnes.IndexEntier(1_024);
+        Arrays.fill(clesSeaux, 0);
+        nbEntrees = 0;
+    }
+
+    // ==================== EMPREINTES ====================
+
+    private double similarite(byte[] signature, int ligne) {
+        int egaux = 0;
+        int base = ligne * NB_HACHAGES;
+        for (int k = 0; k < NB_HACHAGES; k++) {
+            if (signatures[base + k] == signature[k]) {
+                egaux++;
+            }
+        }
+        // Correction des coïncidences d'octets (1 chance sur 256)
+        return Math.max(0, ((double) egaux / NB_HACHAGES - 1.0 / 256) / (1 - 1.0 / 256));
+    }
+
+    /**
+     * Similarité (Jaccard estimée) à partir de laquelle deux annonces sont
+     * des doublons (recherche.doublons.seuil).
+     */
+    private static double seuil() {
+        return Configuration.getInstance().get(Configuration.RECHERCHE_SEUIL_DOUBLONS);
+    }
+
+    private static boolean estActive(StatutAnnonce statut) {
+        return statut == StatutAnnonce.DISPONIBLE || statut == StatutAnnonce.RESERVE || statut == StatutAnnonce.LOUE;
+    }
+
+    private static int hache(int cle) {
+        int h = cle * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long melanger(long h) {
+        // Finaliseur de MurmurHash3
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Empreinte d'une annonce : signature (octet faible de chaque minimum)
+     * et clés des bandes LSH.
+     */
+    static final class Empreinte {
+        final int proprietaireId;
+        final byte type;
+        final byte[] signature = new byte[NB_HACHAGES];
+        final int[] cles = new int[NB_BANDES];
+
+        private Empreinte(int proprietaireId, byte type) {
+            this.proprietaireId = proprietaireId;
+            this.type = type;
+        }
+
+        /**
+         * @return null si le texte ne contient aucun mot
+         */
+        static Empreinte calculer(Annonce annonce) {
+            long[] bardeaux = bardeaux(annonce.getTitre(), annonce.getDescription());
+            if (bardeaux.length == 0 || annonce.getType() == null) {
+                return null;
+            }
+            Empreinte e = new Empreinte(annonce.getProprietaireId(), (byte) annonce.getType().ordinal());
+            long[] minima = new long[NB_HACHAGES];
+            Arrays.fill(minima, Long.MAX_VALUE);
+            for (long bardeau : bardeaux) {
+                for (int k = 0; k < NB_HACHAGES; k++) {
+                    long h = melanger(bardeau ^ GRAINES[k]);
+                    if (h < minima[k]) {
+                        minima[k] = h;
+                    }
+                }
+            }
+            for (int k = 0; k < NB_HACHAGES; k++) {
+                e.signature[k] = (byte) minima[k];
+            }
+            for (int b = 0; b < NB_BANDES; b++) {
+                long h = melanger(((long) e.proprietaireId << 8 | e.type) * 31 + b);
+                for (int k = b * PAR_BANDE; k < (b + 1) * PAR_BANDE; k++) {
+                    h = melanger(h ^ minima[k]);
+                }
+                int cle = (int) (h ^ (h >>> 32));
+                e.cles[b] = cle != 0 ? cle : 1; // 0 : case libre des seaux
+            }
+            return e;
+        }
+
+        /**
+         * Paires de mots consécutifs (un seul mot : le mot lui-même) du texte
+         * normalisé (sans accents ni casse), hachées sur 64 bits.
+         */
+        static long[] bardeaux(String titre, String description) {
+            String texte = Normalizer.normalize((titre != null ? titre : "") + " "
+                    + (description != null ? description : ""), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}", "").toLowerCase();
+            long[] mots = Arrays.stream(texte.split("[^a-z0-9]+"))
+                    .filter(m -> !m.isEmpty())
+                    .mapToLong(m -> melanger(m.hashCode() * 0x9E3779B97F4A7C15L + m.length()))
+                    .toArray();
+            if (mots.length <= 1) {
+                return mots;
+            }
+            long[] paires = new long[mots.length - 1];
+            for (int i = 0; i + 1 < mots.length; i++) {
+                paires[i] = melanger(mots[i] * 31 + mots[i + 1]);
+            }
+            return paires;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package services;
+
+import java.sql.SQLException;
+
+/**
+ * Levée à la publication d'une annonce quasi identique à une annonce active
+ * du même propriétaire (voir {@link DetecteurDoublons}). L'appelant peut
+ * mettre à jour l'existante ({@link AnnonceService#fusionner}) ou publier
+ * quand même ({@link AnnonceService#add(models.Annonce, boolean)}).
+ * Hérite de SQLException pour respecter le contrat de {@link IService}.
+ */
+public class DoublonException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int annonceExistanteId;
+    private final double similarite;
+
+    public DoublonException(int annonceExistanteId, double similarite) {
+        super("Annonce quasi identique à l'annonce " + annonceExistanteId + " (similarité "
+                + Math.round(similarite * 100) + " %)");
+        this.annonceExistanteId = annonceExistanteId;
+        this.similarite = similarite;
+    }
+
+    public int getAnnonceExistanteId() {
+        return annonceExistanteId;
+    }
+
+    public double getSimilarite() {
+        return similarite;
+    }
+}
@@ -0,0 +1,335 @@
+package services;
+
+import utils.MyDatabase;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Export en flux d'une requête vers un fichier, à mémoire constante quel que
+ * soit le nombre de lignes (exports comptables de la coopérative).
+ *
+ * La lecture se fait ligne à ligne (curseur TYPE_FORWARD_ONLY, fetch size
+ * Integer.MIN_VALUE : mode streaming du driver MySQL) sur une connexion
+ * dédiée, puisqu'un résultat en streaming bloque sa connexion jusqu'à sa
+ * fermeture. Le fichier est écrit dans un fichier temporaire puis renommé :
+ * un export interrompu ne laisse pas de fichier tronqué.
+ *
+ * Deux formats :
+ * - CSV (RFC 4180, UTF-8, séparateur ';' pour Excel en locale française) ;
+ * - COLONNES : binaire en colonnes par groupes de lignes, chaque colonne
+ *   compressée séparément (Deflate), à la manière de Parquet.
+ *
+ * Format COLONNES (big-endian) :
+ * <pre>
+ * "AGFC" | version:byte | nbColonnes:int | (nom:UTF, type:byte [, echelle:byte si DECIMAL])*
+ * groupe* : nbLignes:int | (tailleCompressee:int, octets)* par colonne
+ * fin     : 0:int | totalLignes:long
+ * </pre>
+ * Encodage des valeurs avant compression : INT (int), LONG et TIMESTAMP
+ * (long, epoch ms), DOUBLE (double), DECIMAL (long, valeur non mise à
+ * l'échelle : montants exacts), DATE (int, epoch day), STRING (longueur:int
+ * puis octets UTF-8).
+ * Les valeurs NULL sont précédées d'un octet de présence (0 = NULL, 1 = valeur).
+ */
+public final class ExportStreaming {
+
+    public enum Format {
+        CSV, COLONNES
+    }
+
+    /**
+     * Progression d'un export, appelée toutes les {@value #PAS_PROGRESSION}
+     * lignes et en fin d'export (depuis le thread de l'export).
+     */
+    @FunctionalInterface
+    public interface Progression {
+        void avancer(long lignesEcrites, long totalLignes);
+    }
+
+    private static final int PAS_PROGRESSION = 1_000;
+    private static final int LIGNES_PAR_GROUPE = 8_192;
+    private static final int TAILLE_TAMPON = 64 * 1024;
+    private static final byte[] MAGIC = { 'A', 'G', 'F', 'C' };
+    private static final byte VERSION = 1;
+
+    static final byte INT = 1, LONG = 2, DOUBLE = 3, STRING = 4, DATE = 5, TIMESTAMP = 6, DECIMAL = 7;
+
+    private ExportStreaming() {
+    }
+
+    /**
+     * Exporte le résultat de la requête vers le fichier.
+     *
+     * @param requete       SELECT sans paramètre
+     * @param requeteTotal  SELECT COUNT(*) correspondant (total de la progression)
+     * @param progression   Peut être null
+     * @return Le nombre de lignes exportées
+     */
+    static long exporter(String requete, String requeteTotal, Path fichier, Format format,
+            Progression progression) throws SQLException, IOException {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".part");
+        long lignes;
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion()) {
+            long total = compter(c, requeteTotal);
+            try (PreparedStatement ps = c.prepareStatement(requete, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = ps.executeQuery();
+                        FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    Progression p = progression != null ? progression : (n, t) -> {
+                    };
+                    lignes = format == Format.CSV
+                            ? ecrireCsv(rs, canal, total, p)
+                            : ecrireColonnes(rs, canal, total, p);
+                    canal.force(false);
+                }
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaire);
+            throw e;
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("✅ Export " + format + " terminé : " + lignes + " ligne(s) -> " + fichier);
+        return lignes;
+    }
+
+    private static long compter(Connection c, String requeteTotal) throws SQLException {
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery(requeteTotal)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    // ==================== CSV ====================
+
+    static long ecrireCsv(ResultSet rs, FileChannel canal, long total, Progression progression)
+            throws SQLException, IOException {
+        BufferedWriter out = new BufferedWriter(
+                Channels.newWriter(canal, StandardCharsets.UTF_8.newEncoder(), TAILLE_TAMPON), TAILLE_TAMPON);
+        ResultSetMetaData meta = rs.getMetaData();
+        int n = meta.getColumnCount();
+
+        out.write('\uFEFF'); // BOM : Excel reconnaît l'UTF-8
+        for (int i = 1; i <= n; i++) {
+            if (i > 1) {
+                out.write(';');
+            }
+            ecrireChampCsv(out, meta.getColumnLabel(i));
+        }
+        out.write("\r\n");
+
+        long lignes = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= n; i++) {
+                if (i > 1) {
+                    out.write(';');
+                }
+                String valeur = rs.getString(i);
+                if (valeur != null) {
+                    ecrireChampCsv(out, valeur);
+                }
+            }
+            out.write("\r\n");
+            if (++lignes % PAS_PROGRESSION == 0) {
+                progression.avancer(lignes, total);
+            }
+        }
+        out.flush();
+        progression.avancer(lignes, total);
+        return lignes;
+    }
+
+    private static void ecrireChampCsv(BufferedWriter out, String valeur) throws IOException {
+        boolean guillemets = false;
+        for (int i = 0; i < valeur.length() && !guillemets; i++) {
+            char ch = valeur.charAt(i);
+            guillemets = ch == ';' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!guillemets) {
+            out.write(valeur);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < valeur.length(); i++) {
+            char ch = valeur.charAt(i);
+            if (ch == '"') {
+                out.write('"');
+            }
+            out.write(ch);
+        }
+        out.write('"');
+    }
+
+    // ==================== COLONNES ====================
+
+    static long ecrireColonnes(ResultSet rs, FileChannel canal, long total, Progression progression)
+            throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int n = meta.getColumnCount();
+        byte[] types = new byte[n];
+        int[] echelles = new int[n];
+
+        ByteArrayOutputStream entete = new ByteArrayOutputStream();
+        DataOutputStream dEntete = new DataOutputStream(entete);
+        dEntete.write(MAGIC);
+        dEntete.writeByte(VERSION);
+        dEntete.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            types[i] = typeColonne(meta.getColumnType(i + 1));
+            dEntete.writeUTF(meta.getColumnLabel(i + 1));
+            dEntete.writeByte(types[i]);
+            if (types[i] == DECIMAL) {
+                echelles[i] = meta.getScale(i + 1);
+                dEntete.writeByte(echelles[i]);
+            }
+        }
+        ecrire(canal, entete.toByteArray());
+
+        // Un tampon par colonne, réutilisé d'un groupe à l'autre : la mémoire
+        // dépend de LIGNES_PAR_GROUPE, pas de la taille de la table
+        ByteArrayOutputStream[] tampons = new ByteArrayOutputStream[n];
+        DataOutputStream[] colonnes = new DataOutputStream[n];
+        for (int i = 0; i < n; i++) {
+            tampons[i] = new ByteArrayOutputStream();
+            colonnes[i] = new DataOutputStream(tampons[i]);
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        ByteArrayOutputStream compresse = new ByteArrayOutputStream();
+
+        long lignes = 0;
+        int lignesGroupe = 0;
+        try {
+            while (rs.next()) {
+                for (int i = 0; i < n; i++) {
+                    ecrireValeur(rs, i + 1, types[i], echelles[i], colonnes[i]);
+                }
+                lignesGroupe++;
+                if (++lignes % PAS_PROGRESSION == 0) {
+                    progression.avancer(lignes, total);
+                }
+                if (lignesGroupe == LIGNES_PAR_GROUPE) {
+                    ecrireGroupe(canal, lignesGroupe, tampons, colonnes, deflater, compresse);
+                    lignesGroupe = 0;
+                }
+            }
+            if (lignesGroupe > 0) {
+                ecrireGroupe(canal, lignesGroupe, tampons, colonnes, deflater, compresse);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ecrire(canal, ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(0).putLong(lignes).array());
+        progression.avancer(lignes, total);
+        return lignes;
+    }
+
+    private static void ecrireGroupe(FileChannel canal, int nbLignes, ByteArrayOutputStream[] tampons,
+            DataOutputStream[] colonnes, Deflater deflater, ByteArrayOutputStream compresse) throws IOException {
+        ecrire(canal, ByteBuffer.allocate(Integer.BYTES).putInt(nbLignes).array());
+        for (int i = 0; i < tampons.length; i++) {
+            colonnes[i].flush();
+            compresse.reset();
+            deflater.reset();
+            try (OutputStream z = new DeflaterOutputStream(compresse, deflater, TAILLE_TAMPON)) {
+                tampons[i].writeTo(z);
+            }
+            ecrire(canal, ByteBuffer.allocate(Integer.BYTES).putInt(compresse.size()).array());
+            ecrire(canal, compresse.toByteArray());
+            tampons[i].reset();
+        }
+    }
+
+    private static void ecrireValeur(ResultSet rs, int colonne, byte type, int echelle, DataOutputStream out)
+            throws SQLException, IOException {
+        switch (type) {
+            case INT -> {
+                int v = rs.getInt(colonne);
+                if (presence(rs, out)) {
+                    out.writeInt(v);
+                }
+            }
+            case LONG -> {
+                long v = rs.getLong(colonne);
+                if (presence(rs, out)) {
+                    out.writeLong(v);
+                }
+            }
+            case DOUBLE -> {
+                double v = rs.getDouble(colonne);
+                if (presence(rs, out)) {
+                    out.writeDouble(v);
+                }
+            }
+            case DECIMAL -> {
+                BigDecimal v = rs.getBigDecimal(colonne);
+                if (presence(rs, out)) {
+                    out.writeLong(v.setScale(echelle, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+                }
+            }
+            case DATE -> {
+                Date v = rs.getDate(colonne);
+                if (presence(rs, out)) {
+                    out.writeInt((int) v.toLocalDate().toEpochDay());
+                }
+            }
+            case TIMESTAMP -> {
+                Timestamp v = rs.getTimestamp(colonne);
+                if (presence(rs, out)) {
+                    out.writeLong(v.getTime());
+                }
+            }
+            default -> {
+                String v = rs.getString(colonne);
+                if (presence(rs, out)) {
+                    byte[] octets = v.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(octets.length);
+                    out.write(octets);
+                }
+            }
+        }
+    }
+
+    private static boolean presence(ResultSet rs, DataOutputStream out) throws SQLException, IOException {
+        boolean present = !rs.wasNull();
+        out.writeByte(present ? 1 : 0);
+        return present;
+    }
+
+    private static byte typeColonne(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> INT;
+            case Types.BIGINT -> LONG;
+            case Types.DECIMAL, Types.NUMERIC -> DECIMAL;
+            case Types.DOUBLE, Types.FLOAT, Types.REAL -> DOUBLE;
+            case Types.DATE -> DATE;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> TIMESTAMP;
+            default -> STRING;
+        };
+    }
+
+    private static void ecrire(FileChannel canal, byte[] octets) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(octets);
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package services;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface générique CRUD pour tous les services AGRIFLOW.
@@ -52,4 +53,13 @@ public interface IService<T> {
      * @throws SQLException En cas d'erreur SQL
      */
     T getById(int id) throws SQLException;
+
+    /**
+     * Récupère plusieurs entités en une lecture groupée (IN (...)).
+     * 
+     * @param ids Les identifiants (doublons tolérés)
+     * @return Les entités trouvées, indexées par ID (les absentes sont omises)
+     * @throws SQLException En cas d'erreur SQL
+     */
+    Map<Integer, T> getByIds(int[] ids) throws SQLException;
 }
@@ -0,0 +1,283 @@
+package services;
+
+import models.InscriptionAttente;
+import models.InscriptionAttente.StatutInscription;
+import utils.Configuration;
+import utils.MyDatabase;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service de la liste d'attente des annonces déjà réservées.
+ *
+ * La table `liste_attente` fait foi ; chaque file consultée est gardée en
+ * mémoire (ensemble trié par priorité puis ordre d'inscription) pour
+ * afficher longueur et position sans requête, et rechargée après une
+ * attribution ou au bout de cache.listeAttente.dureeMs (inscriptions des
+ * autres postes, voir {@link Configuration}).
+ *
+ * L'attribution au premier de la file se fait dans la transaction qui
+ * libère l'annonce ({@link #attribuerAuSuivant}) : l'annonce ne repasse
+ * jamais DISPONIBLE entre-temps, aucun autre agriculteur ne peut la prendre.
+ * Ordre des verrous commun à toutes ces transactions : réservation
+ * ({@link ReservationService#cloturer}, {@link CycleVieReservations}), puis
+ * annonce, puis liste_attente.
+ */
+public class ListeAttenteService {
+
+    /** Ordre de service : priorité décroissante, puis ordre d'inscription. */
+    static final Comparator<InscriptionAttente> ORDRE = Comparator
+            .comparingInt(InscriptionAttente::getPriorite).reversed()
+            .thenComparingInt(InscriptionAttente::getId);
+
+    /**
+     * File en mémoire d'une annonce (miroir des inscriptions EN_ATTENTE).
+     */
+    private static final class File {
+        final TreeSet<InscriptionAttente> inscriptions = new TreeSet<>(ORDRE);
+        final long chargement = System.currentTimeMillis();
+    }
+
+    // Partagé par toutes les instances du service
+    private static final Map<Integer, File> FILES = new ConcurrentHashMap<>();
+
+    private Connection connection() throws SQLException {
+        return MyDatabase.getInstance().getConnectionOrThrow();
+    }
+
+    // ==================== INSCRIPTION ====================
+
+    /**
+     * Inscrit un agriculteur dans la file d'une annonce. Le doublon est
+     * refusé par la base (clé unique uk_client_en_attente), pas par le miroir
+     * en mémoire qui peut ignorer les inscriptions des autres postes.
+     *
+     * @return false s'il y était déjà
+     */
+    public boolean inscrire(InscriptionAttente inscription) throws SQLException {
+        String query = """
+                INSERT INTO liste_attente (annonce_id, client_id, priorite, date_debut, date_fin,
+                                           montant_total, statut, date_inscription)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+        try (PreparedStatement ps = connection().prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, inscription.getAnnonceId());
+            ps.setInt(2, inscription.getClientId());
+            ps.setInt(3, inscription.getPriorite());
+            ps.setDate(4, inscription.getDateDebut() != null ? Date.valueOf(inscription.getDateDebut()) : null);
+            ps.setDate(5, inscription.getDateFin() != null ? Date.valueOf(inscription.getDateFin()) : null);
+            ps.setBigDecimal(6, BigDecimal.valueOf(inscription.getMontantTotal()).setScale(2, RoundingMode.HALF_UP));
+            ps.setString(7, inscription.getStatut().name());
+            ps.setTimestamp(8, Timestamp.valueOf(inscription.getDateInscription()));
+            try {
+                ps.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Déjà EN_ATTENTE sur cette annonce (éventuellement depuis un autre poste)
+                invalider(inscription.getAnnonceId());
+                return false;
+            }
+
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next())
+                    inscription.setId(rs.getInt(1));
+            }
+        }
+
+        File file = FILES.get(inscription.getAnnonceId());
+        if (file != null) {
+            synchronized (file) {
+                file.inscriptions.add(inscription);
+            }
+        }
+        System.out.println("✅ Inscription en liste d'attente (annonce ID: " + inscription.getAnnonceId() + ")");
+        return true;
+    }
+
+    /**
+     * Retire une inscription de la file.
+     */
+    public void desinscrire(InscriptionAttente inscription) throws SQLException {
+        try (PreparedStatement ps = connection().prepareStatement(
+                "UPDATE liste_attente SET statut='ANNULEE' WHERE id=? AND statut='EN_ATTENTE'")) {
+            ps.setInt(1, inscription.getId());
+            ps.executeUpdate();
+        }
+        File file = FILES.get(inscription.getAnnonceId());
+        if (file != null) {
+            synchronized (file) {
+                file.inscriptions.removeIf(i -> i.getId() == inscription.getId());
+            }
+        }
+    }
+
+    // ==================== CONSULTATION (mémoire) ====================
+
+    /**
+     * Nombre d'agriculteurs en attente sur une annonce.
+     */
+    public int getTaille(int annonceId) throws SQLException {
+        File file = file(annonceId);
+        synchronized (file) {
+            return file.inscriptions.size();
+        }
+    }
+
+    /**
+     * Position d'un agriculteur dans la file (1 = prochain servi), 0 s'il
+     * n'y est pas.
+     */
+    public int getPosition(int annonceId, int clientId) throws SQLException {
+        File file = file(annonceId);
+        synchronized (file) {
+            int position = 0;
+            for (InscriptionAttente i : file.inscriptions) {
+                position++;
+                if (i.getClientId() == clientId) {
+                    return position;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Inscriptions d'un agriculteur, toutes annonces confondues.
+     */
+    public List<InscriptionAttente> getByClient(int clientId) throws SQLException {
+        List<InscriptionAttente> list = new ArrayList<>();
+        try (PreparedStatement ps = connection().prepareStatement(
+                "SELECT * FROM liste_attente WHERE client_id=? ORDER BY date_inscription DESC")) {
+            ps.setInt(1, clientId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(map(rs));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Oublie la file en mémoire d'une annonce (rechargée au prochain accès).
+     */
+    public void invalider(int annonceId) {
+        FILES.remove(annonceId);
+    }
+
+    private File file(int annonceId) throws SQLException {
+        File file = FILES.get(annonceId);
+        if (file != null && System.currentTimeMillis() - file.chargement
+                < Configuration.getInstance().get(Configuration.CACHE_LISTE_ATTENTE_MS)) {
+            return file;
+        }
+        File nouvelle = new File();
+        try (PreparedStatement ps = connection().prepareStatement(
+                "SELECT * FROM liste_attente WHERE annonce_id=? AND statut='EN_ATTENTE'")) {
+            ps.setInt(1, annonceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    nouvelle.inscriptions.add(map(rs));
+            }
+        }
+        FILES.put(annonceId, nouvelle);
+        return nouvelle;
+    }
+
+    // ==================== ATTRIBUTION ====================
+
+    /**
+     * Attribue une annonce qui vient d'être libérée (DISPONIBLE) au premier de
+     * sa file : réservation EN_ATTENTE créée pour lui, inscription SERVIE,
+     * annonce RESERVE. À appeler dans la transaction qui libère l'annonce,
+     * puis {@link #invalider} après validation.
+     *
+     * @return L'ID de la réservation créée, ou null (file vide, annonce non
+     *         disponible)
+     */
+    public Integer attribuerAuSuivant(Connection c, int annonceId) throws SQLException {
+        // Annonce avant liste_attente (ordre commun, voir la classe)
+        try (PreparedStatement ps = c.prepareStatement("SELECT statut FROM annonce WHERE id=? FOR UPDATE")) {
+            ps.setInt(1, annonceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || !"DISPONIBLE".equals(rs.getString("statut")))
+                    return null;
+            }
+        }
+
+        InscriptionAttente premier;
+        try (PreparedStatement ps = c.prepareStatement("""
+                SELECT * FROM liste_attente
+                WHERE annonce_id=? AND statut='EN_ATTENTE'
+                ORDER BY priorite DESC, id ASC
+                LIMIT 1
+                FOR UPDATE
+                """)) {
+            ps.setInt(1, annonceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next())
+                    return null;
+                premier = map(rs);
+            }
+        }
+
+        int reservationId;
+        try (PreparedStatement ps = c.prepareStatement("""
+                INSERT INTO reservation (annonce_id, client_id, date_debut, date_fin, montant_total, statut,
+                                         commentaire, date_creation)
+                VALUES (?, ?, ?, ?, ?, 'EN_ATTENTE', ?, ?)
+                """, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, annonceId);
+            ps.setInt(2, premier.getClientId());
+            ps.setDate(3, premier.getDateDebut() != null ? Date.valueOf(premier.getDateDebut()) : null);
+            ps.setDate(4, premier.getDateFin() != null ? Date.valueOf(premier.getDateFin()) : null);
+            ps.setBigDecimal(5, BigDecimal.valueOf(premier.getMontantTotal()).setScale(2, RoundingMode.HALF_UP));
+            ps.setString(6, "Attribuée depuis la liste d'attente");
+            ps.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                rs.next();
+                reservationId = rs.getInt(1);
+            }
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE liste_attente SET statut='SERVIE', reservation_id=? WHERE id=?")) {
+            ps.setInt(1, reservationId);
+            ps.setInt(2, premier.getId());
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE annonce SET statut='RESERVE', date_modification=NOW(3), version=version+1 WHERE id=?")) {
+            ps.setInt(1, annonceId);
+            ps.executeUpdate();
+        }
+        System.out.println("✅ Annonce " + annonceId + " attribuée au client " + premier.getClientId()
+                + " (liste d'attente)");
+        return reservationId;
+    }
+
+    // ==================== MAPPING ====================
+
+    private InscriptionAttente map(ResultSet rs) throws SQLException {
+        InscriptionAttente i = new InscriptionAttente(
+                rs.getInt("annonce_id"), rs.getInt("client_id"),
+                rs.getDate("date_debut") != null ? rs.getDate("date_debut").toLocalDate() : null,
+                rs.getDate("date_fin") != null ? rs.getDate("date_fin").toLocalDate() : null,
+                rs.getDouble("montant_total"));
+        i.setId(rs.getInt("id"));
+        i.setPriorite(rs.getInt("priorite"));
+        i.setStatut(StatutInscription.valueOf(rs.getString("statut")));
+        int reservationId = rs.getInt("reservation_id");
+        i.setReservationId(rs.wasNull() ? null : reservationId);
+        i.setDateInscription(rs.getTimestamp("date_inscription").toLocalDateTime());
+        return i;
+    }
+}
@@ -0,0 +1,262 @@
+package services;
+
+import models.Annonce;
+import models.Reservation;
+import models.StatutAnnonce;
+import models.TypeAnnonce;
+import utils.LocalDatabase;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réplica local (H2) des annonces et réservations, alimenté par
+ * {@link MarketplaceSync}. Sert les lectures de la Marketplace sans attendre
+ * la base centrale, y compris hors-ligne.
+ */
+public class LocalAnnonceStore implements MarketplaceSync.Listener {
+
+    /**
+     * Connexion locale, résolue au premier usage : ouvrir le fichier H2 ne
+     * doit pas bloquer la construction des contrôleurs sur le thread JavaFX.
+     */
+    private Connection connection() {
+        return LocalDatabase.getInstance().getConnection();
+    }
+
+    /**
+     * Indique si le stockage local est utilisable (driver H2 présent).
+     */
+    public boolean isDisponible() {
+        return connection() != null;
+    }
+
+    // ==================== RÉPLICATION (MarketplaceSync.Listener) ====================
+
+    @Override
+    public void annoncesModifiees(List<Annonce> annonces) {
+        String query = """
+                MERGE INTO annonce (id, titre, description, prix, type, statut, image_path,
+                                    localisation, date_disponibilite, date_fin_disponibilite,
+                                    date_creation, date_modification, proprietaire_id)
+                KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            for (Annonce annonce : annonces) {
+                ps.setInt(1, annonce.getId());
+                ps.setString(2, annonce.getTitre());
+                ps.setString(3, annonce.getDescription());
+                ps.setDouble(4, annonce.getPrix());
+                ps.setString(5, annonce.getType().name());
+                ps.setString(6, annonce.getStatut().name());
+                ps.setString(7, annonce.getImagePath());
+                ps.setString(8, annonce.getLocalisation());
+                ps.setDate(9, annonce.getDateDisponibilite() != null
+                        ? Date.valueOf(annonce.getDateDisponibilite()) : null);
+                ps.setDate(10, annonce.getDateFinDisponibilite() != null
+                        ? Date.valueOf(annonce.getDateFinDisponibilite()) : null);
+                ps.setTimestamp(11, Timestamp.valueOf(annonce.getDateCreation()));
+                ps.setTimestamp(12, Timestamp.valueOf(annonce.getDateModification()));
+                ps.setInt(13, annonce.getProprietaireId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            System.err.println("❌ Réplication locale des annonces échouée : " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void annoncesSupprimees(List<Integer> ids) {
+        try (PreparedStatement psA = connection().prepareStatement("DELETE FROM annonce WHERE id = ?");
+                PreparedStatement psR = connection().prepareStatement("DELETE FROM reservation WHERE annonce_id = ?")) {
+            for (int id : ids) {
+                psA.setInt(1, id);
+                psA.addBatch();
+                psR.setInt(1, id);
+                psR.addBatch();
+            }
+            psA.executeBatch();
+            psR.executeBatch();
+        } catch (SQLException e) {
+            System.err.println("❌ Suppression locale des annonces échouée : " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void reservationsModifiees(List<Reservation> reservations) {
+        String query = """
+                MERGE INTO reservation (id, annonce_id, client_id, date_debut, date_fin, montant_total,
+                                        statut, commentaire, date_creation, date_modification)
+                KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            for (Reservation r : reservations) {
+                ps.setInt(1, r.getId());
+                ps.setInt(2, r.getAnnonceId());
+                ps.setInt(3, r.getClientId());
+                ps.setDate(4, r.getDateDebut() != null ? Date.valueOf(r.getDateDebut()) : null);
+                ps.setDate(5, r.getDateFin() != null ? Date.valueOf(r.getDateFin()) : null);
+                ps.setDouble(6, r.getMontantTotal());
+                ps.setString(7, r.getStatut().name());
+                ps.setString(8, r.getCommentaire());
+                ps.setTimestamp(9, Timestamp.valueOf(r.getDateCreation()));
+                ps.setTimestamp(10, r.getDateModification() != null
+                        ? Timestamp.valueOf(r.getDateModification()) : null);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            System.err.println("❌ Réplication locale des réservations échouée : " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void reservationsSupprimees(List<Integer> ids) {
+        try (PreparedStatement ps = connection().prepareStatement("DELETE FROM reservation WHERE id = ?")) {
+            for (int id : ids) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            System.err.println("❌ Suppression locale des réservations échouée : " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void cycleTermine(Map<String, String> watermarks) {
+        try (PreparedStatement ps = connection().prepareStatement("MERGE INTO sync_etat (cle, valeur) KEY (cle) VALUES (?, ?)")) {
+            for (Map.Entry<String, String> e : watermarks.entrySet()) {
+                ps.setString(1, e.getKey());
+                ps.setString(2, e.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            System.err.println("❌ Sauvegarde des watermarks échouée : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Watermarks persistés au dernier cycle (vide au premier lancement).
+     */
+    public Map<String, String> getWatermarks() throws SQLException {
+        Map<String, String> watermarks = new HashMap<>();
+        try (Statement st = connection().createStatement();
+                ResultSet rs = st.executeQuery("SELECT cle, valeur FROM sync_etat")) {
+            while (rs.next()) {
+                watermarks.put(rs.getString("cle"), rs.getString("valeur"));
+            }
+        }
+        return watermarks;
+    }
+
+    /**
+     * Applique localement un changement de statut fait hors-ligne, en attendant
+     * que la base centrale le confirme (ou le corrige) au prochain cycle.
+     */
+    public void changerStatut(int annonceId, StatutAnnonce statut) throws SQLException {
+        try (PreparedStatement ps = connection().prepareStatement("UPDATE annonce SET statut = ? WHERE id = ?")) {
+            ps.setString(1, statut.name());
+            ps.setInt(2, annonceId);
+            ps.executeUpdate();
+        }
+    }
+
+    // ==================== LECTURES LOCALES ====================
+
+    /**
+     * Annonces disponibles du réplica local.
+     */
+    public List<Annonce> getAnnoncesDisponibles() throws SQLException {
+        List<Annonce> annonces = new ArrayList<>();
+        String query = "SELECT * FROM annonce WHERE statut = 'DISPONIBLE' ORDER BY date_creation DESC";
+
+        try (Statement st = connection().createStatement();
+                ResultSet rs = st.executeQuery(query)) {
+            while (rs.next()) {
+                annonces.add(mapResultSetToAnnonce(rs));
+            }
+        }
+        return annonces;
+    }
+
+    /**
+     * Recherche avancée sur le réplica local (mêmes filtres que
+     * {@link AnnonceService#searchAdvanced}).
+     */
+    public List<Annonce> searchAdvanced(String keyword, TypeAnnonce type,
+            String localisation, Double prixMax) throws SQLException {
+        List<Annonce> annonces = new ArrayList<>();
+        StringBuilder queryBuilder = new StringBuilder(
+                "SELECT * FROM annonce WHERE statut = 'DISPONIBLE'");
+        List<Object> params = new ArrayList<>();
+
+        if (keyword != null && !keyword.isEmpty()) {
+            queryBuilder.append(" AND (titre LIKE ? OR description LIKE ?)");
+            params.add("%" + keyword + "%");
+            params.add("%" + keyword + "%");
+        }
+
+        if (type != null) {
+            queryBuilder.append(" AND type = ?");
+            params.add(type.name());
+        }
+
+        if (localisation != null && !localisation.isEmpty()) {
+            queryBuilder.append(" AND localisation LIKE ?");
+            params.add("%" + localisation + "%");
+        }
+
+        if (prixMax != null) {
+            queryBuilder.append(" AND prix <= ?");
+            params.add(prixMax);
+        }
+
+        queryBuilder.append(" ORDER BY date_creation DESC");
+
+        try (PreparedStatement ps = connection().prepareStatement(queryBuilder.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                Object param = params.get(i);
+                if (param instanceof String) {
+                    ps.setString(i + 1, (String) param);
+                } else if (param instanceof Double) {
+                    ps.setDouble(i + 1, (Double) param);
+                }
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    annonces.add(mapResultSetToAnnonce(rs));
+                }
+            }
+        }
+        return annonces;
+    }
+
+    // ==================== MAPPING ====================
+
+    private Annonce mapResultSetToAnnonce(ResultSet rs) throws SQLException {
+        return new Annonce(
+                rs.getInt("id"),
+                rs.getString("titre"),
+                rs.getString("description"),
+                rs.getDouble("prix"),
+                TypeAnnonce.valueOf(rs.getString("type")),
+                StatutAnnonce.valueOf(rs.getString("statut")),
+                rs.getString("image_path"),
+                rs.getString("localisation"),
+                rs.getDate("date_disponibilite") != null ? rs.getDate("date_disponibilite").toLocalDate() : null,
+                rs.getDate("date_fin_disponibilite") != null ? rs.getDate("date_fin_disponibilite").toLocalDate()
+                        : null,
+                rs.getTimestamp("date_creation").toLocalDateTime(),
+                rs.getTimestamp("date_modification").toLocalDateTime(),
+                rs.getInt("proprietaire_id"));
+    }
+}
@@ -0,0 +1,249 @@
+package services;
+
+import models.Annonce;
+import models.Reservation;
+import models.Suppression;
+import utils.Configuration;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Moteur de synchronisation incrémentale côté client.
+ * Maintient un réplica local des annonces et réservations à partir des
+ * watermarks (date_modification, id) et du journal des suppressions :
+ * chaque cycle coûte O(modifications) au lieu de O(table).
+ *
+ * date_modification est posée par l'horloge du serveur (NOW(3)), mais à
+ * l'instant de l'écriture et non de la validation : une transaction longue
+ * peut rendre visible une ligne plus ancienne que le watermark. Chaque
+ * cycle relit donc une fenêtre de recouvrement derrière le watermark
+ * (sync.recouvrementMs) ; les lignes déjà vues dans la même version sont
+ * ignorées.
+ */
+public class MarketplaceSync {
+
+    /**
+     * Notifié après chaque cycle qui a ramené des modifications.
+     * Appelé depuis le thread qui exécute {@link #synchroniser()}.
+     */
+    public interface Listener {
+        void annoncesModifiees(List<Annonce> annonces);
+
+        void annoncesSupprimees(List<Integer> ids);
+
+        default void reservationsModifiees(List<Reservation> reservations) {
+        }
+
+        default void reservationsSupprimees(List<Integer> ids) {
+        }
+
+        /**
+         * Fin d'un cycle ayant ramené des modifications : watermarks à
+         * persister pour reprendre au même point au prochain démarrage.
+         */
+        default void cycleTermine(Map<String, String> watermarks) {
+        }
+    }
+
+    private static final int TAILLE_PAGE = 500;
+
+    private final AnnonceService annonceService;
+    private final ReservationService reservationService;
+
+    // Réplica local
+    private final Map<Integer, Annonce> annonces = new ConcurrentHashMap<>();
+    private final Map<Integer, Reservation> reservations = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Watermarks : position (date_modification, id) et dernier ID de journal lu
+    private Instant annonceWatermark = Instant.EPOCH;
+    private int annonceDernierId = 0;
+    private Instant reservationWatermark = Instant.EPOCH;
+    private int reservationDernierId = 0;
+    private long annonceSuppressionId = 0;
+    private long reservationSuppressionId = 0;
+
+    public MarketplaceSync(AnnonceService annonceService, ReservationService reservationService) {
+        this.annonceService = annonceService;
+        this.reservationService = reservationService;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Démarre la synchronisation à partir d'un instant donné, sans rejouer
+     * l'historique (l'appelant a déjà chargé l'état courant).
+     * Sans appel à cette méthode, le premier cycle charge toute la base.
+     */
+    public synchronized void demarrerDepuis(Instant depuis) throws SQLException {
+        annonceWatermark = depuis;
+        annonceDernierId = 0;
+        reservationWatermark = depuis;
+        reservationDernierId = 0;
+        long dernierLog = annonceService.getDernierIdSuppression();
+        annonceSuppressionId = dernierLog;
+        reservationSuppressionId = dernierLog;
+    }
+
+    /**
+     * Reprend la synchronisation à partir de watermarks persistés
+     * (voir {@link #getWatermarks()}). Les clés absentes repartent de zéro.
+     */
+    public synchronized void reprendre(Map<String, String> watermarks) {
+        annonceWatermark = Instant.parse(watermarks.getOrDefault("annonce.watermark", Instant.EPOCH.toString()));
+        annonceDernierId = Integer.parseInt(watermarks.getOrDefault("annonce.dernierId", "0"));
+        reservationWatermark = Instant.parse(
+                watermarks.getOrDefault("reservation.watermark", Instant.EPOCH.toString()));
+        reservationDernierId = Integer.parseInt(watermarks.getOrDefault("reservation.dernierId", "0"));
+        annonceSuppressionId = Long.parseLong(watermarks.getOrDefault("annonce.suppressionId", "0"));
+        reservationSuppressionId = Long.parseLong(watermarks.getOrDefault("reservation.suppressionId", "0"));
+    }
+
+    /**
+     * Position courante de la synchronisation, sous forme clé/valeur.
+     */
+    public synchronized Map<String, String> getWatermarks() {
+        Map<String, String> watermarks = new HashMap<>();
+        watermarks.put("annonce.watermark", annonceWatermark.toString());
+        watermarks.put("annonce.dernierId", String.valueOf(annonceDernierId));
+        watermarks.put("reservation.watermark", reservationWatermark.toString());
+        watermarks.put("reservation.dernierId", String.valueOf(reservationDernierId));
+        watermarks.put("annonce.suppressionId", String.valueOf(annonceSuppressionId));
+        watermarks.put("reservation.suppressionId", String.valueOf(reservationSuppressionId));
+        return watermarks;
+    }
+
+    /**
+     * Un cycle de synchronisation : lit toutes les pages de modifications et de
+     * suppressions depuis les watermarks, met à jour le réplica et notifie.
+     */
+    public synchronized void synchroniser() throws SQLException {
+        long recouvrementMs = Configuration.getInstance().get(Configuration.SYNC_RECOUVREMENT_MS);
+
+        // Annonces modifiées, depuis le début de la fenêtre de recouvrement
+        List<Annonce> annoncesModifiees = new ArrayList<>();
+        Instant curseur = annonceWatermark.minusMillis(recouvrementMs);
+        int curseurId = 0;
+        List<Annonce> page;
+        do {
+            page = annonceService.getModifiedSince(curseur, curseurId, TAILLE_PAGE);
+            for (Annonce a : page) {
+                curseur = toInstant(a.getDateModification());
+                curseurId = a.getId();
+                if (curseur.isAfter(annonceWatermark)
+                        || (curseur.equals(annonceWatermark) && curseurId > annonceDernierId)) {
+                    annonceWatermark = curseur;
+                    annonceDernierId = curseurId;
+                }
+                Annonce connue = annonces.get(a.getId());
+                if (connue == null || connue.getVersion() < a.getVersion()) {
+                    annonces.put(a.getId(), a);
+                    annoncesModifiees.add(a);
+                }
+            }
+        } while (page.size() == TAILLE_PAGE);
+
+        // Réservations modifiées
+        List<Reservation> reservationsModifiees = new ArrayList<>();
+        curseur = reservationWatermark.minusMillis(recouvrementMs);
+        curseurId = 0;
+        List<Reservation> pageR;
+        do {
+            pageR = reservationService.getModifiedSince(curseur, curseurId, TAILLE_PAGE);
+            for (Reservation r : pageR) {
+                curseur = toInstant(r.getDateModification());
+                curseurId = r.getId();
+                if (curseur.isAfter(reservationWatermark)
+                        || (curseur.equals(reservationWatermark) && curseurId > reservationDernierId)) {
+                    reservationWatermark = curseur;
+                    reservationDernierId = curseurId;
+                }
+                Reservation connue = reservations.get(r.getId());
+                if (connue == null || connue.getVersion() < r.getVersion()) {
+                    reservations.put(r.getId(), r);
+                    reservationsModifiees.add(r);
+                }
+            }
+        } while (pageR.size() == TAILLE_PAGE);
+
+        // Suppressions (tombstones)
+        List<Integer> annoncesSupprimees = new ArrayList<>();
+        List<Suppression> suppressions;
+        do {
+            suppressions = annonceService.getSuppressionsDepuis(annonceSuppressionId, TAILLE_PAGE);
+            for (Suppression s : suppressions) {
+                annonces.remove(s.getEntiteId());
+                // Cascade côté réplica : le trigger MySQL ne voit pas les suppressions en cascade
+                reservations.values().removeIf(r -> r.getAnnonceId() == s.getEntiteId());
+                annoncesSupprimees.add(s.getEntiteId());
+                annonceSuppressionId = s.getId();
+            }
+        } while (suppressions.size() == TAILLE_PAGE);
+
+        List<Integer> reservationsSupprimees = new ArrayList<>();
+        do {
+            suppressions = reservationService.getSuppressionsDepuis(reservationSuppressionId, TAILLE_PAGE);
+            for (Suppression s : suppressions) {
+                reservations.remove(s.getEntiteId());
+                reservationsSupprimees.add(s.getEntiteId());
+                reservationSuppressionId = s.getId();
+            }
+        } while (suppressions.size() == TAILLE_PAGE);
+
+        // Notification
+        if (annoncesModifiees.isEmpty() && annoncesSupprimees.isEmpty()
+                && reservationsModifiees.isEmpty() && reservationsSupprimees.isEmpty()) {
+            return;
+        }
+        Map<String, String> watermarks = getWatermarks();
+        for (Listener listener : listeners) {
+            if (!annoncesModifiees.isEmpty())
+                listener.annoncesModifiees(annoncesModifiees);
+            if (!annoncesSupprimees.isEmpty())
+                listener.annoncesSupprimees(annoncesSupprimees);
+            if (!reservationsModifiees.isEmpty())
+                listener.reservationsModifiees(reservationsModifiees);
+            if (!reservationsSupprimees.isEmpty())
+                listener.reservationsSupprimees(reservationsSupprimees);
+            listener.cycleTermine(watermarks);
+        }
+    }
+
+    // ==================== LECTURE DU RÉPLICA ====================
+
+    public Annonce getAnnonce(int id) {
+        return annonces.get(id);
+    }
+
+    public Collection<Annonce> getAnnonces() {
+        return annonces.values();
+    }
+
+    public Reservation getReservation(int id) {
+        return reservations.get(id);
+    }
+
+    public Collection<Reservation> getReservations() {
+        return reservations.values();
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
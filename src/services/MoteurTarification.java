@@ -0,0 +1,181 @@
+package services;
+
+import models.Annonce;
+import models.TypeAnnonce;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moteur de tarification des réservations.
+ *
+ * Matériel en location : prix journalier de l'annonce, majoré selon les
+ * saisons agricoles (pic de moisson, semis...) propres à chaque type, puis
+ * remisé selon la durée (tarif hebdomadaire / mensuel). Produits en vente :
+ * le prix de l'annonce, sans effet de durée ni de saison.
+ *
+ * Les saisons sont compilées à la construction en tables de sommes
+ * cumulées par type et par jour de l'année : un devis coûte O(nombre
+ * d'années traversées), sans boucle sur les jours ni allocation. Les
+ * montants sont calculés en centimes (entiers) comme le DECIMAL(10,2) de la
+ * base, jamais en double.
+ */
+public class MoteurTarification {
+
+    // Coefficients en points de base : 10 000 = 100 %
+    private static final int BASE = 10_000;
+
+    // Remises de durée (tarifs dégressifs)
+    private static final int JOURS_TARIF_HEBDO = 7;
+    private static final int REMISE_HEBDO = 1_000; // -10 %
+    private static final int JOURS_TARIF_MENSUEL = 30;
+    private static final int REMISE_MENSUELLE = 2_000; // -20 %
+
+    /**
+     * Période de l'année (bornes incluses, peut chevaucher le 31/12) et sa
+     * majoration pour certains types de matériel.
+     */
+    public static final class Saison {
+        private final String nom;
+        private final MonthDay debut;
+        private final MonthDay fin;
+        private final int majoration; // points de base
+        private final Set<TypeAnnonce> types;
+
+        public Saison(String nom, MonthDay debut, MonthDay fin, int majoration, Set<TypeAnnonce> types) {
+            this.nom = nom;
+            this.debut = debut;
+            this.fin = fin;
+            this.majoration = majoration;
+            this.types = types;
+        }
+
+        boolean contient(MonthDay jour) {
+            if (debut.isAfter(fin)) {
+                return !jour.isBefore(debut) || !jour.isAfter(fin);
+            }
+            return !jour.isBefore(debut) && !jour.isAfter(fin);
+        }
+
+        public String getNom() {
+            return nom;
+        }
+    }
+
+    /**
+     * Calendrier agricole tunisien par défaut.
+     */
+    public static List<Saison> saisonsParDefaut() {
+        List<Saison> saisons = new ArrayList<>();
+        saisons.add(new Saison("Pic de moisson", MonthDay.of(Month.MAY, 15), MonthDay.of(Month.JULY, 15), 3_000,
+                EnumSet.of(TypeAnnonce.MOISSONNEUSE)));
+        saisons.add(new Saison("Moisson - transport", MonthDay.of(Month.MAY, 15), MonthDay.of(Month.JULY, 15), 1_500,
+                EnumSet.of(TypeAnnonce.TRACTEUR, TypeAnnonce.REMORQUE)));
+        saisons.add(new Saison("Semis d'automne", MonthDay.of(Month.OCTOBER, 15), MonthDay.of(Month.DECEMBER, 15),
+                2_000, EnumSet.of(TypeAnnonce.SEMOIR, TypeAnnonce.TRACTEUR)));
+        saisons.add(new Saison("Traitements de printemps", MonthDay.of(Month.MARCH, 1), MonthDay.of(Month.APRIL, 30),
+                1_500, EnumSet.of(TypeAnnonce.PULVERISATEUR)));
+        saisons.add(new Saison("Irrigation estivale", MonthDay.of(Month.JUNE, 1), MonthDay.of(Month.AUGUST, 31),
+                2_000, EnumSet.of(TypeAnnonce.IRRIGATION)));
+        return saisons;
+    }
+
+    // cumul[bissextile][type][j] = somme des coefficients des jours 0..j-1 de l'année
+    private final long[][][] cumul = new long[2][TypeAnnonce.values().length][];
+
+    public MoteurTarification() {
+        this(saisonsParDefaut());
+    }
+
+    public MoteurTarification(List<Saison> saisons) {
+        for (int bissextile = 0; bissextile < 2; bissextile++) {
+            LocalDate premierJour = LocalDate.of(bissextile == 1 ? 2024 : 2023, 1, 1);
+            int nbJours = premierJour.lengthOfYear();
+            for (TypeAnnonce type : TypeAnnonce.values()) {
+                long[] table = new long[nbJours + 1];
+                for (int j = 0; j < nbJours; j++) {
+                    MonthDay jour = MonthDay.from(premierJour.plusDays(j));
+                    int coefficient = BASE;
+                    for (Saison saison : saisons) {
+                        if (saison.types.contains(type) && saison.contient(jour)) {
+                            coefficient += saison.majoration;
+                        }
+                    }
+                    table[j + 1] = table[j] + coefficient;
+                }
+                cumul[bissextile][type.ordinal()] = table;
+            }
+        }
+    }
+
+    // ==================== DEVIS ====================
+
+    /**
+     * Montant d'une réservation pour une annonce (TND, 2 décimales).
+     *
+     * @param debut Premier jour de location (inclus)
+     * @param fin   Jour de restitution (exclu), comme Reservation.getDureeJours()
+     */
+    public BigDecimal devis(Annonce annonce, LocalDate debut, LocalDate fin) {
+        return devis(annonce.getType(), annonce.getPrix(), debut, fin);
+    }
+
+    public BigDecimal devis(TypeAnnonce type, double prix, LocalDate debut, LocalDate fin) {
+        return BigDecimal.valueOf(devisCentimes(type, toCentimes(prix), debut, fin), 2);
+    }
+
+    /**
+     * Chemin rapide sans allocation : prix et résultat en centimes.
+     */
+    public long devisCentimes(TypeAnnonce type, long prixCentimes, LocalDate debut, LocalDate fin) {
+        if (!type.isLocation() || debut == null || fin == null) {
+            return prixCentimes;
+        }
+        long jours = fin.toEpochDay() - debut.toEpochDay();
+        if (jours <= 0) {
+            jours = 1;
+            fin = debut.plusDays(1);
+        }
+
+        // Somme des coefficients journaliers, année par année
+        long somme = 0;
+        LocalDate courant = debut;
+        while (courant.isBefore(fin)) {
+            int annee = courant.getYear();
+            long[] table = cumul[courant.isLeapYear() ? 1 : 0][type.ordinal()];
+            int de = courant.getDayOfYear() - 1;
+            int a = fin.getYear() == annee ? fin.getDayOfYear() - 1 : table.length - 1;
+            somme += table[a] - table[de];
+            courant = LocalDate.ofYearDay(annee, 1).plusYears(1);
+        }
+
+        int remise = jours >= JOURS_TARIF_MENSUEL ? REMISE_MENSUELLE
+                : jours >= JOURS_TARIF_HEBDO ? REMISE_HEBDO : 0;
+
+        // montant = prix x somme / BASE x (BASE - remise) / BASE, arrondi au centime
+        long brut = Math.multiplyExact(prixCentimes, somme);
+        if (brut <= Long.MAX_VALUE / BASE) {
+            long diviseur = (long) BASE * BASE;
+            return (brut * (BASE - remise) + diviseur / 2) / diviseur;
+        }
+        return BigDecimal.valueOf(brut)
+                .multiply(BigDecimal.valueOf(BASE - remise))
+                .divide(BigDecimal.valueOf((long) BASE * BASE), 0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    /**
+     * Convertit un prix saisi en double vers des centimes exacts
+     * (représentation décimale la plus courte du double, arrondi HALF_UP).
+     */
+    public static long toCentimes(double prix) {
+        return BigDecimal.valueOf(prix).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,222 @@
+package services;
+
+import models.Annonce;
+import models.TypeAnnonce;
+import utils.LocalDatabase;
+import utils.MyDatabase;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File des opérations faites hors-ligne (publication, réservation),
+ * persistée dans la base locale et rejouée par lots sur la base centrale
+ * dès qu'elle redevient joignable.
+ *
+ * Une réservation hors-ligne est rejouée par {@link ReservationService#reserver} :
+ * elle crée la réservation du client, comme en ligne.
+ *
+ * Conflits : la base centrale fait foi. Une réservation hors-ligne sur une
+ * annonce réservée entre-temps par un autre agriculteur est marquée CONFLIT
+ * et signalée à l'utilisateur ; le réplica local est corrigé par la
+ * synchronisation suivante.
+ */
+public class OfflineQueue {
+
+    private static final String PUBLIER_ANNONCE = "PUBLIER_ANNONCE";
+    private static final String RESERVER_ANNONCE = "RESERVER_ANNONCE";
+
+    // Nombre maximal d'opérations rejouées par passage
+    private static final int TAILLE_LOT = 100;
+
+    /**
+     * Connexion locale, résolue au premier usage : ouvrir le fichier H2 ne
+     * doit pas bloquer la construction des contrôleurs sur le thread JavaFX.
+     */
+    private Connection connection() {
+        return LocalDatabase.getInstance().getConnection();
+    }
+
+    /**
+     * Indique si la file est utilisable (base locale disponible).
+     */
+    public boolean isDisponible() {
+        return connection() != null;
+    }
+
+    // ==================== MISE EN FILE ====================
+
+    /**
+     * Met en attente la publication d'une annonce faite hors-ligne.
+     */
+    public void publier(Annonce annonce) throws SQLException {
+        String query = """
+                INSERT INTO operation_en_attente (operation, titre, description, prix, type, image_path,
+                                                  localisation, date_disponibilite, proprietaire_id)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            ps.setString(1, PUBLIER_ANNONCE);
+            ps.setString(2, annonce.getTitre());
+            ps.setString(3, annonce.getDescription());
+            ps.setDouble(4, annonce.getPrix());
+            ps.setString(5, annonce.getType().name());
+            ps.setString(6, annonce.getImagePath());
+            ps.setString(7, annonce.getLocalisation());
+            ps.setDate(8, annonce.getDateDisponibilite() != null ? Date.valueOf(annonce.getDateDisponibilite()) : null);
+            ps.setInt(9, annonce.getProprietaireId());
+            ps.executeUpdate();
+            System.out.println("📴 Publication mise en attente : " + annonce.getTitre());
+        }
+    }
+
+    /**
+     * Met en attente la réservation d'une annonce faite hors-ligne.
+     *
+     * @param debut Début de la période (null pour une vente)
+     * @param fin   Fin de la période (null pour une vente)
+     */
+    public void reserver(int annonceId, int clientId, LocalDate debut, LocalDate fin) throws SQLException {
+        try (PreparedStatement ps = connection().prepareStatement(
+                "INSERT INTO operation_en_attente (operation, annonce_id, client_id, date_debut, date_fin) "
+                        + "VALUES (?, ?, ?, ?, ?)")) {
+            ps.setString(1, RESERVER_ANNONCE);
+            ps.setInt(2, annonceId);
+            ps.setInt(3, clientId);
+            ps.setDate(4, debut != null ? Date.valueOf(debut) : null);
+            ps.setDate(5, fin != null ? Date.valueOf(fin) : null);
+            ps.executeUpdate();
+            System.out.println("📴 Réservation mise en attente (annonce ID: " + annonceId + ")");
+        }
+    }
+
+    /**
+     * Nombre d'opérations encore à répliquer.
+     */
+    public int getNombreEnAttente() throws SQLException {
+        try (Statement st = connection().createStatement();
+                ResultSet rs = st.executeQuery(
+                        "SELECT COUNT(*) FROM operation_en_attente WHERE statut = 'EN_ATTENTE'")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // ==================== RÉPLICATION ====================
+
+    /**
+     * Rejoue un lot d'opérations en attente, dans l'ordre, sur la base centrale.
+     * S'arrête sans rien perdre à la première erreur de connexion.
+     *
+     * @return Les messages de conflit à afficher à l'utilisateur
+     */
+    public List<String> rejouer(AnnonceService annonceService, ReservationService reservationService)
+            throws SQLException {
+        List<String> conflits = new ArrayList<>();
+        String query = "SELECT * FROM operation_en_attente WHERE statut = 'EN_ATTENTE' ORDER BY id ASC LIMIT ?";
+
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            ps.setInt(1, TAILLE_LOT);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    try {
+                        if (PUBLIER_ANNONCE.equals(rs.getString("operation"))) {
+                            Annonce annonce = mapOperationToAnnonce(rs);
+                            try {
+                                annonceService.add(annonce);
+                            } catch (DoublonException e) {
+                                // Republication faite hors-ligne : l'annonce existante est mise à jour
+                                if (annonceService.fusionner(e.getAnnonceExistanteId(), annonce) != null) {
+                                    conflits.add("« " + annonce.getTitre() + " » était déjà en ligne (annonce "
+                                            + e.getAnnonceExistanteId() + ") : elle a été mise à jour au lieu d'être dupliquée.");
+                                } else {
+                                    // L'existante a été supprimée entre-temps : publication normale.
+                                    // En cas d'échec, l'opération reste en file (catch ci-dessous).
+                                    annonceService.add(annonce, true);
+                                }
+                            }
+                            supprimerOperation(id);
+                        } else if (rejouerReservation(rs, annonceService, reservationService)) {
+                            supprimerOperation(id);
+                        } else {
+                            String message = "L'annonce " + rs.getInt("annonce_id") + " a été réservée par un "
+                                    + "autre agriculteur ou retirée pendant que vous étiez hors-ligne.";
+                            marquerOperation(id, "CONFLIT", message);
+                            conflits.add(message);
+                        }
+                    } catch (SQLException e) {
+                        if (MyDatabase.isErreurConnexion(e)) {
+                            // Toujours hors-ligne : on réessaiera au prochain passage
+                            break;
+                        }
+                        marquerOperation(id, "ERREUR", e.getMessage());
+                    }
+                }
+            }
+        }
+        return conflits;
+    }
+
+    /**
+     * Rejoue une réservation hors-ligne : réservation créée pour le client,
+     * au tarif du moment.
+     *
+     * @return false si l'annonce n'est plus disponible
+     */
+    private boolean rejouerReservation(ResultSet rs, AnnonceService annonceService,
+            ReservationService reservationService) throws SQLException {
+        int annonceId = rs.getInt("annonce_id");
+        int clientId = rs.getInt("client_id");
+        if (rs.wasNull()) {
+            // Mise en file avant que le client soit enregistré : statut seul
+            return annonceService.reserverAnnonce(annonceId);
+        }
+        Annonce annonce = annonceService.getById(annonceId);
+        if (annonce == null) {
+            return false;
+        }
+        Date debut = rs.getDate("date_debut");
+        Date fin = rs.getDate("date_fin");
+        try {
+            reservationService.reserver(annonce, clientId,
+                    debut != null ? debut.toLocalDate() : null, fin != null ? fin.toLocalDate() : null);
+            return true;
+        } catch (AnnonceIndisponibleException e) {
+            return false;
+        }
+    }
+
+    private void supprimerOperation(long id) throws SQLException {
+        try (PreparedStatement ps = connection().prepareStatement("DELETE FROM operation_en_attente WHERE id = ?")) {
+            ps.setLong(1, id);
+            ps.executeUpdate();
+        }
+    }
+
+    private void marquerOperation(long id, String statut, String erreur) throws SQLException {
+        try (PreparedStatement ps = connection().prepareStatement(
+                "UPDATE operation_en_attente SET statut = ?, erreur = ? WHERE id = ?")) {
+            ps.setString(1, statut);
+            ps.setString(2, erreur);
+            ps.setLong(3, id);
+            ps.executeUpdate();
+        }
+    }
+
+    private Annonce mapOperationToAnnonce(ResultSet rs) throws SQLException {
+        Date dateDispo = rs.getDate("date_disponibilite");
+        Annonce annonce = new Annonce(
+                rs.getString("titre"),
+                rs.getString("description"),
+                rs.getDouble("prix"),
+                TypeAnnonce.valueOf(rs.getString("type")),
+                rs.getString("localisation"),
+                dateDispo != null ? dateDispo.toLocalDate() : LocalDate.now(),
+                rs.getInt("proprietaire_id"));
+        annonce.setImagePath(rs.getString("image_path"));
+        return annonce;
+    }
+}
@@ -0,0 +1,218 @@
+package services;
+
+import models.Annonce;
+import utils.Configuration;
+import utils.MyDatabase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publication d'une annonce en étapes, hors du thread JavaFX : validation,
+ * copie de l'image dans le {@link StockageImages}, enregistrement en base,
+ * puis génération des variantes de l'image.
+ *
+ * Le pipeline s'exécute sur le thread appelant (une tâche soumise via
+ * {@link #soumettre}) et s'annule par interruption de ce thread jusqu'à
+ * l'enregistrement : la copie en cours est alors abandonnée. L'appelant
+ * n'interrompt plus la tâche une fois l'étape ENREGISTREMENT annoncée à sa
+ * {@link Progression} (il peut y lever CancellationException pour refuser
+ * de la commencer) : l'écriture en base n'est jamais annulée à mi-chemin.
+ * Une fois l'annonce enregistrée, {@link #publier} rend la main (l'écran
+ * peut être quitté) et les variantes sont générées en arrière-plan.
+ *
+ * Une image stockée n'est jamais supprimée ici, même si la publication
+ * échoue : le même contenu peut déjà servir à une autre annonce.
+ */
+public class PublicationAnnonce {
+
+    public enum Etape {
+        VALIDATION("Vérification"),
+        COPIE_IMAGE("Copie de l'image"),
+        ENREGISTREMENT("Publication");
+
+        private final String libelle;
+
+        Etape(String libelle) {
+            this.libelle = libelle;
+        }
+
+        public String getLibelle() {
+            return libelle;
+        }
+    }
+
+    /**
+     * Avancement du pipeline (avancement de l'étape dans [0, 1]), appelé
+     * depuis le thread de publication.
+     */
+    @FunctionalInterface
+    public interface Progression {
+        void avancer(Etape etape, double avancement);
+    }
+
+    /**
+     * Écriture en base de l'annonce préparée (ajout ou fusion).
+     */
+    @FunctionalInterface
+    private interface Enregistrement {
+        Annonce enregistrer(Annonce annonce) throws SQLException;
+    }
+
+    static final long TAILLE_MAX_IMAGE = 10L * 1024 * 1024;
+    private static final Set<String> EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif");
+
+    private static final AtomicInteger COMPTEUR_THREADS = new AtomicInteger();
+    private static final ExecutorService EXECUTEUR = Executors.newFixedThreadPool(
+            Configuration.getInstance().get(Configuration.EXECUTEUR_PUBLICATION_THREADS), r -> {
+        Thread t = new Thread(r, "publication-" + COMPTEUR_THREADS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AnnonceService annonceService;
+    private final StockageImages stockage;
+
+    public PublicationAnnonce(AnnonceService annonceService) {
+        this(annonceService, StockageImages.getInstance());
+    }
+
+    public PublicationAnnonce(AnnonceService annonceService, StockageImages stockage) {
+        this.annonceService = annonceService;
+        this.stockage = stockage;
+    }
+
+    /**
+     * Exécute une tâche de publication sur l'exécuteur dédié.
+     */
+    public void soumettre(Runnable tache) {
+        EXECUTEUR.execute(tache);
+    }
+
+    /**
+     * Publie une nouvelle annonce.
+     *
+     * @param image  Image choisie par l'utilisateur, ou null
+     * @param forcer Publier même si l'annonce double une annonce existante
+     * @return L'annonce publiée
+     * @throws IllegalArgumentException Annonce ou image invalide
+     * @throws CancellationException    Publication annulée avant l'enregistrement
+     */
+    public Annonce publier(Annonce annonce, Path image, boolean forcer, Progression progression)
+            throws SQLException, IOException {
+        return executer(annonce, image, progression, a -> {
+            annonceService.add(a, forcer);
+            return a;
+        });
+    }
+
+    /**
+     * Met à jour l'annonce existante avec le contenu de la nouvelle (voir
+     * {@link AnnonceService#fusionner}).
+     *
+     * @return L'annonce existante mise à jour, ou null si elle n'existe plus
+     */
+    public Annonce fusionner(int existanteId, Annonce annonce, Path image, Progression progression)
+            throws SQLException, IOException {
+        return executer(annonce, image, progression, a -> annonceService.fusionner(existanteId, a));
+    }
+
+    private Annonce executer(Annonce annonce, Path image, Progression progression, Enregistrement enregistrement)
+            throws SQLException, IOException {
+        progression.avancer(Etape.VALIDATION, 0);
+        valider(annonce, image);
+        verifierAnnulation();
+
+        String imageInitiale = annonce.getImagePath();
+        String cle = null;
+        boolean enregistree = false;
+        try {
+            if (image != null) {
+                progression.avancer(Etape.COPIE_IMAGE, 0);
+                cle = stockage.enregistrer(image, avancement -> {
+                    progression.avancer(Etape.COPIE_IMAGE, avancement);
+                    verifierAnnulation();
+                });
+                annonce.setImagePath(cle);
+            }
+            verifierAnnulation();
+            progression.avancer(Etape.ENREGISTREMENT, 0);
+            Annonce resultat = enregistrement.enregistrer(annonce);
+            progression.avancer(Etape.ENREGISTREMENT, 1);
+            enregistree = resultat != null;
+            if (enregistree && cle != null) {
+                String cleImage = cle;
+                EXECUTEUR.execute(() -> preparerVariantesSansErreur(cleImage));
+            }
+            return resultat;
+        } catch (SQLException e) {
+            // Hors-ligne : l'annonce sera mise en file avec la clé de son image
+            enregistree = MyDatabase.isErreurConnexion(e);
+            throw e;
+        } finally {
+            if (!enregistree) {
+                annonce.setImagePath(imageInitiale);
+            }
+        }
+    }
+
+    // ==================== ÉTAPES ====================
+
+    private static void valider(Annonce annonce, Path image) throws IOException {
+        if (annonce.getTitre() == null || annonce.getTitre().isBlank()) {
+            throw new IllegalArgumentException("Le titre est obligatoire");
+        }
+        if (annonce.getTitre().length() > 255) {
+            throw new IllegalArgumentException("Le titre ne doit pas dépasser 255 caractères");
+        }
+        if (annonce.getType() == null) {
+            throw new IllegalArgumentException("Sélectionnez un type");
+        }
+        if (annonce.getPrix() <= 0) {
+            throw new IllegalArgumentException("Le prix doit être positif");
+        }
+        if (annonce.getLocalisation() == null) {
+            throw new IllegalArgumentException("Sélectionnez une localisation");
+        }
+        if (image == null) {
+            return;
+        }
+        if (!Files.isRegularFile(image) || !Files.isReadable(image)) {
+            throw new IllegalArgumentException("Image introuvable : " + image.getFileName());
+        }
+        if (!EXTENSIONS.contains(extension(image))) {
+            throw new IllegalArgumentException("Format d'image non supporté (PNG, JPG ou GIF)");
+        }
+        if (Files.size(image) > TAILLE_MAX_IMAGE) {
+            throw new IllegalArgumentException("L'image dépasse " + TAILLE_MAX_IMAGE / (1024 * 1024) + " Mo");
+        }
+    }
+
+    private void preparerVariantesSansErreur(String cle) {
+        try {
+            stockage.preparerVariantes(cle);
+        } catch (IOException e) {
+            System.err.println("⚠️ Variantes non générées pour l'image " + cle + " : " + e.getMessage());
+        }
+    }
+
+    private static void verifierAnnulation() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Publication annulée");
+        }
+    }
+
+    private static String extension(Path fichier) {
+        String nom = fichier.getFileName().toString();
+        int point = nom.lastIndexOf('.');
+        return point < 0 ? "" : nom.substring(point + 1).toLowerCase(Locale.ROOT);
+    }
+}
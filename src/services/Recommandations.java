@@ -0,0 +1,715 @@
+package services;
+
+import models.Gouvernorat;
+import models.StatutAnnonce;
+import models.TypeAnnonce;
+import utils.MyDatabase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recommandations "Annonces similaires" et "Les agriculteurs ont aussi
+ * loué", calculées par un traitement périodique et servies depuis la
+ * mémoire.
+ *
+ * Deux signaux :
+ * - co-occurrence : deux annonces réservées par les mêmes clients
+ *   (réservations actives et archivées, annulées exclues), normalisée en
+ *   cosinus ;
+ * - contenu : même type, même gouvernorat, prix proche, mots du titre en
+ *   commun (Jaccard).
+ *
+ * Le calcul ne compare jamais toutes les paires : les candidats d'une
+ * annonce sont ses co-occurrences, les annonces partageant un mot peu
+ * fréquent du titre, et ses voisines de prix dans le même type et
+ * gouvernorat. Il est réparti par plages d'annonces sur un pool fork-join.
+ *
+ * Résultat : au plus {@link #K} voisins par annonce, stockés en deux
+ * tableaux compacts (début par ligne + IDs voisins). Une consultation est
+ * une recherche dans l'index puis une copie de quelques entiers.
+ */
+public class Recommandations {
+
+    /** Voisins conservés par annonce. */
+    static final int K = 10;
+
+    // Au-delà, un client (ex: coopérative) relierait trop de paires sans signal
+    private static final int MAX_ANNONCES_PAR_CLIENT = 200;
+    // Mots trop fréquents ("tracteur"...) : ignorés pour les candidats
+    private static final int MAX_FREQUENCE_MOT = 2000;
+    // Voisines de prix examinées de chaque côté, dans le même type et gouvernorat
+    private static final int VOISINES_PRIX = 2 * K;
+    // Plage d'annonces traitée sans découpage par une tâche fork-join
+    private static final int SEUIL_DECOUPAGE = 2048;
+
+    private static final int NB_TYPES = TypeAnnonce.values().length;
+
+    private static final Set<String> MOTS_VIDES = Set.of(
+            "les", "des", "pour", "avec", "une", "dans", "sur", "par", "tres", "bon", "etat", "vendre", "louer");
+
+    private volatile Modele modele = Modele.VIDE;
+    private ScheduledExecutorService executor;
+    // Calcul anticipé demandé par une consultation (un seul à la fois)
+    private final AtomicBoolean calculDemande = new AtomicBoolean();
+
+    // ==================== CONSULTATION ====================
+
+    /**
+     * @return Les IDs des annonces disponibles les plus proches (contenu et
+     *         co-occurrence), du plus au moins similaire ; vide si l'annonce
+     *         est inconnue du dernier calcul
+     */
+    public int[] getSimilaires(int annonceId) {
+        Modele m = modele;
+        return m.similaires.voisins(m.index.get(annonceId));
+    }
+
+    /**
+     * @return Les IDs des annonces disponibles réservées par les mêmes
+     *         clients, de la plus à la moins fréquente
+     */
+    public int[] getAussiLouees(int annonceId) {
+        Modele m = modele;
+        return m.aussiLouees.voisins(m.index.get(annonceId));
+    }
+
+    /**
+     * @return La date du dernier calcul, ou null s'il n'a pas encore eu lieu
+     */
+    public LocalDateTime getDateCalcul() {
+        return modele.dateCalcul;
+    }
+
+    // ==================== TRAITEMENT PÉRIODIQUE ====================
+
+    /**
+     * Calcule le modèle en arrière-plan toutes les {@code intervalleHeures}
+     * heures. Le premier calcul attend entre {@code delaiMinutes} et deux
+     * fois ce délai : les postes lancés ensemble le matin ne rechargent pas
+     * tous annonces et réservations au même instant. Une consultation
+     * avant ce premier calcul le déclenche ({@link #demanderCalcul}).
+     */
+    public synchronized void demarrer(long intervalleHeures, long delaiMinutes) {
+        if (executor != null && !executor.isShutdown()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recommandations");
+            t.setDaemon(true);
+            return t;
+        });
+        long delai = TimeUnit.MINUTES.toSeconds(delaiMinutes);
+        delai += ThreadLocalRandom.current().nextLong(delai + 1);
+        executor.scheduleWithFixedDelay(this::passe, delai, TimeUnit.HOURS.toSeconds(intervalleHeures),
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Avance le premier calcul quand une consultation arrive avant lui
+     * (sans effet s'il a déjà eu lieu ou est en cours).
+     */
+    public synchronized void demanderCalcul() {
+        if (modele.dateCalcul == null && executor != null && !executor.isShutdown()
+                && calculDemande.compareAndSet(false, true)) {
+            executor.execute(this::passe);
+        }
+    }
+
+    private void passe() {
+        try {
+            recalculer();
+        } catch (Exception e) {
+            // Une exception non capturée annulerait les exécutions suivantes
+            System.err.println("⚠️ Calcul des recommandations échoué : " + e.getMessage());
+            calculDemande.set(false); // Une prochaine consultation pourra réessayer
+        }
+    }
+
+    public synchronized void arreter() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Recharge annonces et réservations depuis la base, recalcule le modèle
+     * et le remplace d'un bloc (les consultations en cours gardent l'ancien).
+     */
+    public void recalculer() throws SQLException {
+        long debut = System.currentTimeMillis();
+        Donnees donnees = new Donnees();
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion()) {
+            chargerAnnonces(c, donnees);
+            chargerReservations(c, donnees);
+        }
+        modele = calculer(donnees, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        System.out.println("✅ Recommandations calculées (" + donnees.n + " annonces, "
+                + donnees.nbClients + " clients) en " + (System.currentTimeMillis() - debut) + " ms");
+    }
+
+    // ==================== CHARGEMENT ====================
+
+    /**
+     * Entrée du calcul : caractéristiques des annonces (par ligne, ordre des
+     * IDs) et annonces réservées par client (lignes, format compact).
+     */
+    static final class Donnees {
+        int n;
+        int[] ids = new int[1024];
+        byte[] types = new byte[1024];
+        byte[] gouvernorats = new byte[1024];
+        double[] prix = new double[1024];
+        boolean[] disponibles = new boolean[1024];
+        int[][] mots = new int[1024][];
+        int nbMots;
+
+        int nbClients;
+        int[] debutClients = {0};
+        int[] annoncesClients = new int[0];
+
+        void ajouterAnnonce(int id, TypeAnnonce type, Gouvernorat gouvernorat, double prixAnnonce,
+                boolean disponible, int[] motsTitre) {
+            if (n == ids.length) {
+                int capacite = n * 2;
+                ids = Arrays.copyOf(ids, capacite);
+                types = Arrays.copyOf(types, capacite);
+                gouvernorats = Arrays.copyOf(gouvernorats, capacite);
+                prix = Arrays.copyOf(prix, capacite);
+                disponibles = Arrays.copyOf(disponibles, capacite);
+                mots = Arrays.copyOf(mots, capacite);
+            }
+            ids[n] = id;
+            types[n] = (byte) type.ordinal();
+            gouvernorats[n] = (byte) gouvernorat.ordinal();
+            prix[n] = prixAnnonce;
+            disponibles[n] = disponible;
+            mots[n] = motsTitre;
+            n++;
+        }
+
+        /**
+         * Copie dont les lignes sont triées par (type, gouvernorat, prix).
+         */
+        Donnees reordonner() {
+            Integer[] ordre = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                ordre[i] = i;
+            }
+            Arrays.parallelSort(ordre, (a, b) -> {
+                int g = Integer.compare(Structures.groupe(this, a), Structures.groupe(this, b));
+                return g != 0 ? g : Double.compare(prix[a], prix[b]);
+            });
+            TypeAnnonce[] typesAnnonce = TypeAnnonce.values();
+            Gouvernorat[] tousGouvernorats = Gouvernorat.values();
+            Donnees copie = new Donnees();
+            int[] nouvelleLigne = new int[n];
+            for (int p = 0; p < n; p++) {
+                int i = ordre[p];
+                nouvelleLigne[i] = p;
+                copie.ajouterAnnonce(ids[i], typesAnnonce[types[i]], tousGouvernorats[gouvernorats[i]],
+                        prix[i], disponibles[i], mots[i]);
+            }
+            copie.nbMots = nbMots;
+            copie.nbClients = nbClients;
+            copie.debutClients = Arrays.copyOf(debutClients, nbClients + 1);
+            copie.annoncesClients = new int[debutClients[nbClients]];
+            for (int k = 0; k < copie.annoncesClients.length; k++) {
+                copie.annoncesClients[k] = nouvelleLigne[annoncesClients[k]];
+            }
+            return copie;
+        }
+
+        /**
+         * @param lignes Lignes (pas IDs) des annonces réservées par un client,
+         *               triées et sans doublon
+         */
+        void ajouterClient(int[] lignes, int nombre) {
+            int fin = debutClients[nbClients];
+            if (nbClients + 2 > debutClients.length) {
+                debutClients = Arrays.copyOf(debutClients, Math.max(16, debutClients.length * 2));
+            }
+            if (fin + nombre > annoncesClients.length) {
+                annoncesClients = Arrays.copyOf(annoncesClients, Math.max(fin + nombre, annoncesClients.length * 2));
+            }
+            System.arraycopy(lignes, 0, annoncesClients, fin, nombre);
+            debutClients[++nbClients] = fin + nombre;
+        }
+    }
+
+    private void chargerAnnonces(Connection c, Donnees d) throws SQLException {
+        Map<String, Integer> dictionnaire = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT id, titre, prix, type, statut, localisation FROM annonce ORDER BY id",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Lecture en flux (MySQL)
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    d.ajouterAnnonce(rs.getInt("id"),
+                            TypeAnnonce.valueOf(rs.getString("type")),
+                            Gouvernorat.depuisLocalisation(rs.getString("localisation")),
+                            rs.getDouble("prix"),
+                            StatutAnnonce.valueOf(rs.getString("statut")) == StatutAnnonce.DISPONIBLE,
+                            mots(rs.getString("titre"), dictionnaire));
+                }
+            }
+        }
+        d.nbMots = dictionnaire.size();
+    }
+
+    private void chargerReservations(Connection c, Donnees d) throws SQLException {
+        CatalogueColonnes.IndexEntier lignes = new CatalogueColonnes.IndexEntier(d.n);
+        for (int i = 0; i < d.n; i++) {
+            lignes.put(d.ids[i], i);
+        }
+        String query = """
+                SELECT client_id, annonce_id FROM reservation WHERE statut <> 'ANNULEE'
+                UNION ALL
+                SELECT client_id, annonce_id FROM reservation_archive WHERE statut <> 'ANNULEE'
+                ORDER BY client_id
+                """;
+        try (PreparedStatement ps = c.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                int clientCourant = -1;
+                int[] tampon = new int[64];
+                int nombre = 0;
+                while (rs.next()) {
+                    int client = rs.getInt(1);
+                    int ligne = lignes.get(rs.getInt(2));
+                    if (client != clientCourant) {
+                        terminerClient(d, tampon, nombre);
+                        clientCourant = client;
+                        nombre = 0;
+                    }
+                    if (ligne < 0) {
+                        continue; // Annonce supprimée depuis
+                    }
+                    if (nombre == tampon.length) {
+                        tampon = Arrays.copyOf(tampon, nombre * 2);
+                    }
+                    tampon[nombre++] = ligne;
+                }
+                terminerClient(d, tampon, nombre);
+            }
+        }
+    }
+
+    private static void terminerClient(Donnees d, int[] lignes, int nombre) {
+        Arrays.sort(lignes, 0, nombre);
+        int distincts = 0;
+        for (int i = 0; i < nombre; i++) {
+            if (distincts == 0 || lignes[distincts - 1] != lignes[i]) {
+                lignes[distincts++] = lignes[i];
+            }
+        }
+        // Un seul article : aucune paire ; trop d'articles : bruit
+        if (distincts >= 2 && distincts <= MAX_ANNONCES_PAR_CLIENT) {
+            d.ajouterClient(lignes, distincts);
+        }
+    }
+
+    /**
+     * Mots significatifs d'un titre (sans accents, 3 lettres au moins), en
+     * numéros du dictionnaire, triés et sans doublon.
+     */
+    static int[] mots(String titre, Map<String, Integer> dictionnaire) {
+        if (titre == null) {
+            return new int[0];
+        }
+        String texte = Normalizer.normalize(titre, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase();
+        List<Integer> numeros = new ArrayList<>();
+        for (String mot : texte.split("[^a-z0-9]+")) {
+            if (mot.length() >= 3 && !MOTS_VIDES.contains(mot)) {
+                numeros.add(dictionnaire.computeIfAbsent(mot, k -> dictionnaire.size()));
+            }
+        }
+        return numeros.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+
+    // ==================== CALCUL ====================
+
+    /**
+     * Calcule le modèle sur un pool fork-join dédié. Les lignes sont d'abord
+     * renumérotées par (type, gouvernorat, prix) : les candidats d'une
+     * annonce (voisines de prix, même type) sont alors proches en mémoire.
+     */
+    static Modele calculer(Donnees donnees, int parallelisme) {
+        Donnees d = donnees.reordonner();
+        Structures s = new Structures(d);
+        int[][] similaires = new int[d.n][];
+        int[][] aussiLouees = new int[d.n][];
+        ForkJoinPool pool = new ForkJoinPool(parallelisme);
+        try {
+            ThreadLocal<Brouillon> brouillons = ThreadLocal.withInitial(() -> new Brouillon(d.n));
+            pool.invoke(new CalculPlage(d, s, brouillons, similaires, aussiLouees, 0, d.n));
+        } finally {
+            pool.shutdown();
+        }
+
+        CatalogueColonnes.IndexEntier index = new CatalogueColonnes.IndexEntier(d.n);
+        for (int i = 0; i < d.n; i++) {
+            index.put(d.ids[i], i);
+        }
+        return new Modele(index, new Voisinage(similaires, d.ids), new Voisinage(aussiLouees, d.ids),
+                LocalDateTime.now());
+    }
+
+    /**
+     * Index construits une fois, partagés en lecture par toutes les tâches.
+     */
+    static final class Structures {
+        // Clients de chaque annonce (transposée de Donnees.annoncesClients)
+        final int[] debutAnnonces;
+        final int[] clientsAnnonces;
+        // Annonces de chaque mot peu fréquent, par type
+        final int[] debutMots;
+        final int[] annoncesMots;
+        // Première ligne de chaque groupe (type, gouvernorat)
+        final int[] debutGroupes;
+        // Caractéristiques de chaque ligne dans un seul long (voir attributs())
+        final long[] attributs;
+
+        Structures(Donnees d) {
+            debutAnnonces = new int[d.n + 1];
+            for (int k = 0; k < d.debutClients[d.nbClients]; k++) {
+                debutAnnonces[d.annoncesClients[k] + 1]++;
+            }
+            for (int i = 0; i < d.n; i++) {
+                debutAnnonces[i + 1] += debutAnnonces[i];
+            }
+            clientsAnnonces = new int[debutAnnonces[d.n]];
+            int[] curseur = Arrays.copyOf(debutAnnonces, d.n);
+            for (int client = 0; client < d.nbClients; client++) {
+                for (int k = d.debutClients[client]; k < d.debutClients[client + 1]; k++) {
+                    clientsAnnonces[curseur[d.annoncesClients[k]]++] = client;
+                }
+            }
+
+            // Listes par (mot, type) : seules les annonces du même type sont parcourues
+            int nbCles = d.nbMots * NB_TYPES;
+            int[] frequences = new int[nbCles];
+            for (int i = 0; i < d.n; i++) {
+                for (int mot : d.mots[i]) {
+                    frequences[cleMot(d, mot, i)]++;
+                }
+            }
+            debutMots = new int[nbCles + 1];
+            for (int cle = 0; cle < nbCles; cle++) {
+                int f = frequences[cle] <= MAX_FREQUENCE_MOT ? frequences[cle] : 0;
+                debutMots[cle + 1] = debutMots[cle] + f;
+            }
+            annoncesMots = new int[debutMots[nbCles]];
+            int[] curseurMots = Arrays.copyOf(debutMots, nbCles);
+            for (int i = 0; i < d.n; i++) {
+                for (int mot : d.mots[i]) {
+                    int cle = cleMot(d, mot, i);
+                    if (frequences[cle] <= MAX_FREQUENCE_MOT) {
+                        annoncesMots[curseurMots[cle]++] = i;
+                    }
+                }
+            }
+
+            // Lignes déjà triées par groupe (Donnees.reordonner)
+            debutGroupes = new int[NB_TYPES * Gouvernorat.values().length + 1];
+            for (int i = 0; i < d.n; i++) {
+                debutGroupes[groupe(d, i) + 1]++;
+            }
+            for (int g = 0; g + 1 < debutGroupes.length; g++) {
+                debutGroupes[g + 1] += debutGroupes[g];
+            }
+
+            attributs = new long[d.n];
+            for (int i = 0; i < d.n; i++) {
+                attributs[i] = attributs((float) d.prix[i], d.types[i], d.gouvernorats[i], d.disponibles[i],
+                        d.mots[i].length, debutAnnonces[i + 1] - debutAnnonces[i]);
+            }
+        }
+
+        /**
+         * Tout ce que le score lit d'un candidat, en une lecture mémoire au
+         * lieu d'une par tableau : prix (32 bits), type (4), gouvernorat (5),
+         * disponible (1), nombre de mots (6, plafonné), nombre de clients
+         * (16, plafonné).
+         */
+        static long attributs(float prix, int type, int gouvernorat, boolean disponible, int nbMots, int degre) {
+            return (Float.floatToRawIntBits(prix) & 0xFFFFFFFFL)
+                    | (long) type << 32
+                    | (long) gouvernorat << 36
+                    | (disponible ? 1L : 0L) << 41
+                    | (long) Math.min(nbMots, 0x3F) << 42
+                    | (long) Math.min(degre, 0xFFFF) << 48;
+        }
+
+        static float prix(long a) {
+            return Float.intBitsToFloat((int) a);
+        }
+
+        static int type(long a) {
+            return (int) (a >>> 32) & 0xF;
+        }
+
+        static int gouvernorat(long a) {
+            return (int) (a >>> 36) & 0x1F;
+        }
+
+        static boolean disponible(long a) {
+            return (a >>> 41 & 1) != 0;
+        }
+
+        static int nbMots(long a) {
+            return (int) (a >>> 42) & 0x3F;
+        }
+
+        static int degre(long a) {
+            return (int) (a >>> 48) & 0xFFFF;
+        }
+
+        static int cleMot(Donnees d, int mot, int i) {
+            return mot * NB_TYPES + d.types[i];
+        }
+
+        static int groupe(Donnees d, int i) {
+            return d.types[i] * Gouvernorat.values().length + d.gouvernorats[i];
+        }
+    }
+
+    /**
+     * Tableaux de travail d'un thread (un par thread du pool, réutilisés
+     * d'une annonce à l'autre) : compteurs indexés par ligne, remis à zéro
+     * uniquement sur les lignes touchées.
+     */
+    private static final class Brouillon {
+        // Par ligne j : [marque, co-occurrences, mots communs], contigus
+        final int[] compteurs;
+        int[] touchees = new int[256];
+        int nbTouchees;
+        int marque;
+
+        Brouillon(int n) {
+            compteurs = new int[3 * n];
+        }
+
+        void toucher(int j) {
+            if (compteurs[3 * j] != marque) {
+                compteurs[3 * j] = marque;
+                compteurs[3 * j + 1] = 0;
+                compteurs[3 * j + 2] = 0;
+                if (nbTouchees == touchees.length) {
+                    touchees = Arrays.copyOf(touchees, nbTouchees * 2);
+                }
+                touchees[nbTouchees++] = j;
+            }
+        }
+
+        int cooccurrences(int j) {
+            return compteurs[3 * j + 1];
+        }
+
+        int motsCommuns(int j) {
+            return compteurs[3 * j + 2];
+        }
+    }
+
+    private static final class CalculPlage extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Donnees d;
+        private final Structures s;
+        private final ThreadLocal<Brouillon> brouillons;
+        private final int[][] similaires;
+        private final int[][] aussiLouees;
+        private final int debut;
+        private final int fin;
+
+        CalculPlage(Donnees d, Structures s, ThreadLocal<Brouillon> brouillons, int[][] similaires,
+                int[][] aussiLouees, int debut, int fin) {
+            this.d = d;
+            this.s = s;
+            this.brouillons = brouillons;
+            this.similaires = similaires;
+            this.aussiLouees = aussiLouees;
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut > SEUIL_DECOUPAGE) {
+                int milieu = (debut + fin) >>> 1;
+                invokeAll(new CalculPlage(d, s, brouillons, similaires, aussiLouees, debut, milieu),
+                        new CalculPlage(d, s, brouillons, similaires, aussiLouees, milieu, fin));
+                return;
+            }
+            Brouillon b = brouillons.get();
+            for (int i = debut; i < fin; i++) {
+                calculerAnnonce(i, b);
+            }
+        }
+
+        private void calculerAnnonce(int i, Brouillon b) {
+            b.marque = i + 1;
+            b.nbTouchees = 0;
+
+            // Co-occurrences : annonces des clients de i
+            for (int k = s.debutAnnonces[i]; k < s.debutAnnonces[i + 1]; k++) {
+                int client = s.clientsAnnonces[k];
+                for (int m = d.debutClients[client]; m < d.debutClients[client + 1]; m++) {
+                    int j = d.annoncesClients[m];
+                    if (j != i) {
+                        b.toucher(j);
+                        b.compteurs[3 * j + 1]++;
+                    }
+                }
+            }
+            // Mots du titre en commun
+            for (int mot : d.mots[i]) {
+                int cle = Structures.cleMot(d, mot, i);
+                for (int k = s.debutMots[cle]; k < s.debutMots[cle + 1]; k++) {
+                    int j = s.annoncesMots[k];
+                    if (j != i) {
+                        b.toucher(j);
+                        b.compteurs[3 * j + 2]++;
+                    }
+                }
+            }
+            // Voisines de prix dans le même type et gouvernorat
+            int groupe = Structures.groupe(d, i);
+            int min = Math.max(s.debutGroupes[groupe], i - VOISINES_PRIX);
+            int max = Math.min(s.debutGroupes[groupe + 1], i + VOISINES_PRIX + 1);
+            for (int j = min; j < max; j++) {
+                if (j != i) {
+                    b.toucher(j);
+                }
+            }
+
+            MeilleursK contenu = new MeilleursK();
+            MeilleursK cooc = new MeilleursK();
+            long ai = s.attributs[i];
+            for (int t = 0; t < b.nbTouchees; t++) {
+                int j = b.touchees[t];
+                long aj = s.attributs[j];
+                if (!Structures.disponible(aj)) {
+                    continue;
+                }
+                double coocNorm = 0;
+                if (b.cooccurrences(j) > 0) {
+                    coocNorm = b.cooccurrences(j)
+                            / Math.sqrt((double) Structures.degre(ai) * Structures.degre(aj));
+                    cooc.proposer(j, coocNorm);
+                }
+                int union = Structures.nbMots(ai) + Structures.nbMots(aj) - b.motsCommuns(j);
+                double jaccard = union <= 0 ? 0 : Math.min(1, (double) b.motsCommuns(j) / union);
+                double score = (Structures.type(aj) == Structures.type(ai) ? 0.35 : 0)
+                        + (Structures.gouvernorat(aj) == Structures.gouvernorat(ai) ? 0.15 : 0)
+                        + 0.2 * prixProche(Structures.prix(ai), Structures.prix(aj))
+                        + 0.3 * jaccard
+                        + 0.3 * coocNorm;
+                contenu.proposer(j, score);
+            }
+            similaires[i] = contenu.lignes();
+            aussiLouees[i] = cooc.lignes();
+        }
+    }
+
+    /**
+     * 1 pour deux prix égaux, 0 au-delà d'un rapport de 4.
+     */
+    static double prixProche(double a, double b) {
+        if (a <= 0 || b <= 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - Math.abs(Math.log(a / b)) / Math.log(4));
+    }
+
+    /**
+     * Les K meilleurs candidats (tri par insertion : K est petit).
+     */
+    private static final class MeilleursK {
+        final int[] lignes = new int[K];
+        final double[] scores = new double[K];
+        int nombre;
+
+        void proposer(int ligne, double score) {
+            if (nombre == K && score <= scores[K - 1]) {
+                return;
+            }
+            int i = nombre < K ? nombre++ : K - 1;
+            while (i > 0 && scores[i - 1] < score) {
+                lignes[i] = lignes[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            lignes[i] = ligne;
+            scores[i] = score;
+        }
+
+        int[] lignes() {
+            return Arrays.copyOf(lignes, nombre);
+        }
+    }
+
+    // ==================== MODÈLE ====================
+
+    /**
+     * Voisins de toutes les annonces, à plat : ceux de la ligne i sont
+     * ids[debut[i] .. debut[i + 1]).
+     */
+    static final class Voisinage {
+        final int[] debut;
+        final int[] ids;
+
+        Voisinage(int[][] lignesVoisines, int[] idsAnnonces) {
+            debut = new int[lignesVoisines.length + 1];
+            for (int i = 0; i < lignesVoisines.length; i++) {
+                debut[i + 1] = debut[i] + lignesVoisines[i].length;
+            }
+            ids = new int[debut[lignesVoisines.length]];
+            for (int i = 0; i < lignesVoisines.length; i++) {
+                for (int k = 0; k < lignesVoisines[i].length; k++) {
+                    ids[debut[i] + k] = idsAnnonces[lignesVoisines[i][k]];
+                }
+            }
+        }
+
+        int[] voisins(int ligne) {
+            return ligne < 0 ? new int[0] : Arrays.copyOfRange(ids, debut[ligne], debut[ligne + 1]);
+        }
+    }
+
+    static final class Modele {
+        static final Modele VIDE = new Modele(new CatalogueColonnes.IndexEntier(0),
+                new Voisinage(new int[0][], new int[0]), new Voisinage(new int[0][], new int[0]), null);
+
+        final CatalogueColonnes.IndexEntier index; // ID annonce -> ligne
+        final Voisinage similaires;
+        final Voisinage aussiLouees;
+        final LocalDateTime dateCalcul;
+
+        Modele(CatalogueColonnes.IndexEntier index, Voisinage similaires, Voisinage aussiLouees,
+                LocalDateTime dateCalcul) {
+            this.index = index;
+            this.similaires = similaires;
+            this.aussiLouees = aussiLouees;
+            this.dateCalcul = dateCalcul;
+        }
+    }
+}
@@ -1,77 +1,162 @@
 package services;
 
+import models.Annonce;
 import models.Reservation;
 import models.Reservation.StatutReservation;
+import models.SuiviAnnonce;
+import models.Suppression;
 import utils.MyDatabase;
+import utils.ReplicasLecture;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Service CRUD pour les Réservations - Architecture P2P.
  */
 public class ReservationService implements IService<Reservation> {
 
-    private Connection connection;
+    // getById regroupés : fenêtre de 2 ms
+    private static final ChargeurLots<Reservation> CHARGEUR = new ChargeurLots<>(
+            ids -> new ReservationService().getByIds(ids), 2_000, AnnonceService.TAILLE_LOT_IN);
+
     private AnnonceService annonceService;
+    private MoteurTarification tarification;
+    private ListeAttenteService listeAttente;
 
     public ReservationService() {
-        this.connection = MyDatabase.getInstance().getConnection();
         this.annonceService = new AnnonceService();
+        this.tarification = new MoteurTarification();
+        this.listeAttente = new ListeAttenteService();
+    }
+
+    /**
+     * Connexion courante, réobtenue à chaque requête (reconnexion automatique).
+     */
+    private Connection connection() throws SQLException {
+        return MyDatabase.getInstance().getConnectionOrThrow();
     }
 
+    /**
+     * Réclame l'annonce (DISPONIBLE -> RESERVE) et insère la réservation dans
+     * une même transaction, sur une connexion du pool transactionnel : un
+     * contendant refusé n'obtient aucune réservation, et une insertion
+     * échouée rend l'annonce.
+     *
+     * @throws AnnonceIndisponibleException si l'annonce n'est plus disponible
+     *                                      (rien n'a été écrit)
+     */
     @Override
     public void add(Reservation reservation) throws SQLException {
+        int annonceId = reservation.getAnnonceId();
+        // Refus immédiat si une autre tentative est déjà partie vers la base
+        AdmissionReservations admission = AdmissionReservations.getInstance();
+        if (!admission.tenter(annonceId)) {
+            throw new AnnonceIndisponibleException(annonceId);
+        }
+
         String query = "INSERT INTO reservation (annonce_id, client_id, date_debut, date_fin, montant_total, statut, commentaire, date_creation) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        boolean reclamee;
+        try (Connection c = MyDatabase.getInstance().emprunterConnexion()) {
+            c.setAutoCommit(false);
+            try {
+                reclamee = annonceService.reclamer(c, annonceId);
+                if (!reclamee) {
+                    c.rollback();
+                } else {
+                    try (PreparedStatement ps = c.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                        ps.setInt(1, annonceId);
+                        ps.setInt(2, reservation.getClientId());
+                        ps.setDate(3, reservation.getDateDebut() != null ? Date.valueOf(reservation.getDateDebut()) : null);
+                        ps.setDate(4, reservation.getDateFin() != null ? Date.valueOf(reservation.getDateFin()) : null);
+                        ps.setBigDecimal(5, montant(reservation));
+                        ps.setString(6, reservation.getStatut().name());
+                        ps.setString(7, reservation.getCommentaire());
+                        ps.setTimestamp(8, Timestamp.valueOf(reservation.getDateCreation()));
+                        ps.executeUpdate();
 
-        try (PreparedStatement ps = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, reservation.getAnnonceId());
-            ps.setInt(2, reservation.getClientId());
-            ps.setDate(3, reservation.getDateDebut() != null ? Date.valueOf(reservation.getDateDebut()) : null);
-            ps.setDate(4, reservation.getDateFin() != null ? Date.valueOf(reservation.getDateFin()) : null);
-            ps.setDouble(5, reservation.getMontantTotal());
-            ps.setString(6, reservation.getStatut().name());
-            ps.setString(7, reservation.getCommentaire());
-            ps.setTimestamp(8, Timestamp.valueOf(reservation.getDateCreation()));
-            ps.executeUpdate();
-
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next())
-                    reservation.setId(rs.getInt(1));
+                        try (ResultSet rs = ps.getGeneratedKeys()) {
+                            if (rs.next())
+                                reservation.setId(rs.getInt(1));
+                        }
+                    }
+                    c.commit();
+                }
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
             }
-            annonceService.reserverAnnonce(reservation.getAnnonceId());
+        } catch (SQLException e) {
+            // Rien n'a été écrit : l'annonce n'est pas prise
+            admission.liberer(annonceId);
+            throw e;
+        }
+
+        // Prise dans les deux cas : par cette tentative ou par une autre
+        admission.marquerIndisponible(annonceId);
+        if (!reclamee) {
+            throw new AnnonceIndisponibleException(annonceId);
         }
+        ReplicasLecture.getInstance().noterEcriture();
+        System.out.println("✅ Annonce réservée (ID: " + annonceId + ", réservation " + reservation.getId() + ")");
+    }
+
+    /**
+     * Crée une réservation dont le montant est calculé par le moteur de
+     * tarification (durée, saisons) plutôt que fourni par l'appelant.
+     *
+     * @throws AnnonceIndisponibleException si l'annonce n'est plus disponible
+     */
+    public Reservation reserver(Annonce annonce, int clientId, LocalDate dateDebut, LocalDate dateFin)
+            throws SQLException {
+        BigDecimal montant = tarification.devis(annonce, dateDebut, dateFin);
+        Reservation reservation = new Reservation(annonce.getId(), clientId, dateDebut, dateFin,
+                montant.doubleValue());
+        add(reservation);
+        return reservation;
     }
 
     @Override
     public void update(Reservation r) throws SQLException {
-        String query = "UPDATE reservation SET date_debut=?, date_fin=?, montant_total=?, statut=?, commentaire=? WHERE id=?";
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        String query = "UPDATE reservation SET date_debut=?, date_fin=?, montant_total=?, statut=?, commentaire=?, version=version+1 WHERE id=? AND version=?";
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
             ps.setDate(1, r.getDateDebut() != null ? Date.valueOf(r.getDateDebut()) : null);
             ps.setDate(2, r.getDateFin() != null ? Date.valueOf(r.getDateFin()) : null);
-            ps.setDouble(3, r.getMontantTotal());
+            ps.setBigDecimal(3, montant(r));
             ps.setString(4, r.getStatut().name());
             ps.setString(5, r.getCommentaire());
             ps.setInt(6, r.getId());
-            ps.executeUpdate();
+            ps.setInt(7, r.getVersion());
+            if (ps.executeUpdate() > 0)
+                r.setVersion(r.getVersion() + 1);
+            else if (getById(r.getId()) != null)
+                throw new ConflitVersionException("Reservation", r.getId(), r.getVersion());
         }
     }
 
     @Override
     public void delete(int id) throws SQLException {
-        Reservation r = getById(id);
-        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM reservation WHERE id=?")) {
-            ps.setInt(1, id);
-            if (ps.executeUpdate() > 0 && r != null)
-                annonceService.libererAnnonce(r.getAnnonceId());
-        }
+        cloturer(id, "DELETE FROM reservation WHERE id=?");
     }
 
     @Override
     public List<Reservation> getAll() throws SQLException {
         List<Reservation> list = new ArrayList<>();
-        try (Statement st = connection.createStatement();
+        try (Statement st = connection().createStatement();
                 ResultSet rs = st.executeQuery("SELECT * FROM reservation ORDER BY date_creation DESC")) {
             while (rs.next())
                 list.add(map(rs));
@@ -81,7 +166,7 @@ public class ReservationService implements IService<Reservation> {
 
     @Override
     public Reservation getById(int id) throws SQLException {
-        try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM reservation WHERE id=?")) {
+        try (PreparedStatement ps = connection().prepareStatement("SELECT * FROM reservation WHERE id=?")) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next())
@@ -91,9 +176,12 @@ public class ReservationService implements IService<Reservation> {
         return null;
     }
 
+    /**
+     * Réservations non archivées d'un client (voir {@link #getHistoriqueClient}).
+     */
     public List<Reservation> getByClient(int clientId) throws SQLException {
         List<Reservation> list = new ArrayList<>();
-        try (PreparedStatement ps = connection
+        try (PreparedStatement ps = connection()
                 .prepareStatement("SELECT * FROM reservation WHERE client_id=? ORDER BY date_creation DESC")) {
             ps.setInt(1, clientId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -106,7 +194,7 @@ public class ReservationService implements IService<Reservation> {
 
     public List<Reservation> getByAnnonce(int annonceId) throws SQLException {
         List<Reservation> list = new ArrayList<>();
-        try (PreparedStatement ps = connection
+        try (PreparedStatement ps = connection()
                 .prepareStatement("SELECT * FROM reservation WHERE annonce_id=? ORDER BY date_creation DESC")) {
             ps.setInt(1, annonceId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -117,30 +205,297 @@ public class ReservationService implements IService<Reservation> {
         return list;
     }
 
-    public void confirmerReservation(int id) throws SQLException {
-        try (PreparedStatement ps = connection
-                .prepareStatement("UPDATE reservation SET statut='CONFIRMEE' WHERE id=? AND statut='EN_ATTENTE'")) {
+    /**
+     * Réservations de plusieurs annonces par requêtes IN (...) groupées,
+     * regroupées par annonce, plus récentes d'abord. Les annonces sans
+     * réservation n'apparaissent pas dans la map.
+     */
+    public Map<Integer, List<Reservation>> getByAnnonces(Collection<Integer> annonceIds) throws SQLException {
+        Map<Integer, List<Reservation>> parAnnonce = new HashMap<>();
+        int[] ids = annonceIds.stream().mapToInt(Integer::intValue).distinct().toArray();
+        lireParLots("SELECT * FROM reservation WHERE annonce_id IN (%s) ORDER BY annonce_id, date_creation DESC",
+                ids, r -> parAnnonce.computeIfAbsent(r.getAnnonceId(), k -> new ArrayList<>()).add(r));
+        return parAnnonce;
+    }
+
+    @Override
+    public Map<Integer, Reservation> getByIds(int[] ids) throws SQLException {
+        Map<Integer, Reservation> reservations = new HashMap<>();
+        lireParLots("SELECT * FROM reservation WHERE id IN (%s)", IntStream.of(ids).distinct().toArray(),
+                r -> reservations.put(r.getId(), r));
+        return reservations;
+    }
+
+    /**
+     * Comme {@link #getById}, mais regroupée avec les lectures concurrentes
+     * en un seul getByIds.
+     */
+    public Reservation getByIdGroupe(int id) throws SQLException {
+        return CHARGEUR.get(id);
+    }
+
+    /**
+     * Annonces des réservations données (ex: historique d'un client), en
+     * une lecture groupée au lieu d'un getById par réservation.
+     */
+    public Map<Integer, Annonce> getAnnonces(List<Reservation> reservations) throws SQLException {
+        return annonceService.getByIds(reservations.stream().mapToInt(Reservation::getAnnonceId).toArray());
+    }
+
+    /**
+     * Exécute la requête (un %s pour la liste IN) par lots de
+     * {@link AnnonceService#TAILLE_LOT_IN} IDs.
+     */
+    private void lireParLots(String requete, int[] ids, Consumer<Reservation> consommateur) throws SQLException {
+        for (int debut = 0; debut < ids.length; debut += AnnonceService.TAILLE_LOT_IN) {
+            int fin = Math.min(debut + AnnonceService.TAILLE_LOT_IN, ids.length);
+            String query = String.format(requete, String.join(", ", Collections.nCopies(fin - debut, "?")));
+            try (PreparedStatement ps = connection().prepareStatement(query)) {
+                for (int i = debut; i < fin; i++)
+                    ps.setInt(i - debut + 1, ids[i]);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        consommateur.accept(map(rs));
+                }
+            }
+        }
+    }
+
+    // ==================== TABLEAU DE BORD PROPRIÉTAIRE ====================
+
+    /**
+     * Page "Mes Annonces" d'un propriétaire : annonces et agrégats en une
+     * requête jointe, puis toutes leurs réservations en une requête IN (...),
+     * soit deux allers-retours quelle que soit la taille de la page (au lieu
+     * d'un getByAnnonce par annonce).
+     */
+    public List<SuiviAnnonce> getMesAnnonces(int proprietaireId, int offset, int limite) throws SQLException {
+        List<SuiviAnnonce> page = annonceService.getSuiviProprietaire(proprietaireId, offset, limite);
+        List<Integer> ids = new ArrayList<>(page.size());
+        for (SuiviAnnonce suivi : page)
+            ids.add(suivi.getAnnonce().getId());
+        Map<Integer, List<Reservation>> reservations = getByAnnonces(ids);
+        for (SuiviAnnonce suivi : page)
+            suivi.setReservations(reservations.getOrDefault(suivi.getAnnonce().getId(), new ArrayList<>()));
+        return page;
+    }
+
+    // ==================== HISTORIQUE (table active + archive) ====================
+
+    private static final String COLONNES = "id, annonce_id, client_id, date_debut, date_fin, montant_total, "
+            + "statut, commentaire, date_creation, date_modification, version";
+
+    /**
+     * Historique complet d'un client : réservations actives et archivées
+     * créées depuis la date donnée. Le filtre sur date_creation limite la
+     * lecture de l'archive aux partitions des années concernées.
+     */
+    public List<Reservation> getHistoriqueClient(int clientId, LocalDate depuis) throws SQLException {
+        return getHistorique("client_id", clientId, depuis);
+    }
+
+    /**
+     * Historique complet d'une annonce (actives et archivées) depuis la date donnée.
+     */
+    public List<Reservation> getHistoriqueAnnonce(int annonceId, LocalDate depuis) throws SQLException {
+        return getHistorique("annonce_id", annonceId, depuis);
+    }
+
+    private List<Reservation> getHistorique(String colonne, int valeur, LocalDate depuis) throws SQLException {
+        List<Reservation> list = new ArrayList<>();
+        String query = "SELECT " + COLONNES + " FROM reservation WHERE " + colonne + "=? AND date_creation >= ?"
+                + " UNION ALL SELECT " + COLONNES + " FROM reservation_archive WHERE " + colonne
+                + "=? AND date_creation >= ?"
+                + " ORDER BY date_creation DESC";
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            Timestamp borne = Timestamp.valueOf(depuis.atStartOfDay());
+            ps.setInt(1, valeur);
+            ps.setTimestamp(2, borne);
+            ps.setInt(3, valeur);
+            ps.setTimestamp(4, borne);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(map(rs));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return false si la réservation n'était plus EN_ATTENTE (transition concurrente)
+     */
+    public boolean confirmerReservation(int id) throws SQLException {
+        try (PreparedStatement ps = connection().prepareStatement(
+                "UPDATE reservation SET statut='CONFIRMEE', version=version+1 WHERE id=? AND statut='EN_ATTENTE'")) {
             ps.setInt(1, id);
-            ps.executeUpdate();
+            return ps.executeUpdate() > 0;
         }
     }
 
     public void annulerReservation(int id) throws SQLException {
-        Reservation r = getById(id);
-        try (PreparedStatement ps = connection.prepareStatement("UPDATE reservation SET statut='ANNULEE' WHERE id=?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        cloturer(id, "UPDATE reservation SET statut='ANNULEE', version=version+1 WHERE id=?");
+    }
+
+    /**
+     * Annule ou supprime une réservation et, si elle tenait l'annonce,
+     * libère celle-ci ou l'attribue au premier de sa liste d'attente, le
+     * tout dans une transaction : l'annonce ne passe jamais DISPONIBLE sous
+     * les yeux d'un tiers quand quelqu'un attend.
+     */
+    private void cloturer(int id, String requete) throws SQLException {
+        Integer annonceId = null;
+        Integer attribuee = null;
+        boolean liberee = false;
+        try (Connection c = MyDatabase.getInstance().emprunterConnexion()) {
+            c.setAutoCommit(false);
+            try {
+                boolean active = false;
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT annonce_id, statut FROM reservation WHERE id=? FOR UPDATE")) {
+                    ps.setInt(1, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            annonceId = rs.getInt("annonce_id");
+                            StatutReservation statut = StatutReservation.valueOf(rs.getString("statut"));
+                            active = statut == StatutReservation.EN_ATTENTE || statut == StatutReservation.CONFIRMEE;
+                        }
+                    }
+                }
+                try (PreparedStatement ps = c.prepareStatement(requete)) {
+                    ps.setInt(1, id);
+                    ps.executeUpdate();
+                }
+                if (active) {
+                    try (PreparedStatement ps = c.prepareStatement("UPDATE annonce SET statut='DISPONIBLE', "
+                            + "date_modification=NOW(3), version=version+1 WHERE id=? AND statut IN ('RESERVE', 'LOUE')")) {
+                        ps.setInt(1, annonceId);
+                        liberee = ps.executeUpdate() > 0;
+                    }
+                    if (liberee) {
+                        attribuee = listeAttente.attribuerAuSuivant(c, annonceId);
+                    }
+                }
+                c.commit();
+                ReplicasLecture.getInstance().noterEcriture();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        }
+        // Réservation déjà close, ou annonce déjà reprise : rien n'a été libéré
+        if (!liberee)
+            return;
+        if (attribuee != null) {
+            listeAttente.invalider(annonceId);
+        } else {
+            AdmissionReservations.getInstance().liberer(annonceId);
+            System.out.println("✅ Annonce libérée (ID: " + annonceId + ")");
+        }
+    }
+
+    // ==================== EXPORT ====================
+
+    /**
+     * Exporte toutes les réservations en flux (CSV ou binaire en colonnes), à
+     * mémoire constante : contrairement à getAll(), aucune liste n'est
+     * construite. L'export est complet : réservations actives puis archivées
+     * (voir {@link ArchivageReservations}), lues en une seule requête, donc
+     * dans un même instantané (une réservation en cours d'archivage n'y
+     * figure ni deux fois ni zéro).
+     *
+     * @param progression Peut être null
+     * @return Le nombre de lignes exportées
+     */
+    public long exporter(Path fichier, ExportStreaming.Format format, ExportStreaming.Progression progression)
+            throws SQLException, IOException {
+        return ExportStreaming.exporter(
+                "SELECT " + COLONNES + " FROM reservation UNION ALL SELECT " + COLONNES + " FROM reservation_archive",
+                "SELECT (SELECT COUNT(*) FROM reservation) + (SELECT COUNT(*) FROM reservation_archive)",
+                fichier, format, progression);
+    }
+
+    // ==================== SYNCHRONISATION INCRÉMENTALE ====================
+
+    /**
+     * Réservations modifiées depuis un watermark (inclus), ordre (date_modification, id).
+     */
+    public List<Reservation> getModifiedSince(Instant watermark, int limit) throws SQLException {
+        List<Reservation> list = new ArrayList<>();
+        try (PreparedStatement ps = connection().prepareStatement(
+                "SELECT * FROM reservation WHERE date_modification >= ? ORDER BY date_modification ASC, id ASC LIMIT ?")) {
+            ps.setTimestamp(1, Timestamp.from(watermark));
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(map(rs));
+            }
         }
-        if (r != null)
-            annonceService.libererAnnonce(r.getAnnonceId());
+        return list;
+    }
+
+    /**
+     * Page suivante strictement après (watermark, dernierId) - pagination par clé.
+     */
+    public List<Reservation> getModifiedSince(Instant watermark, int dernierId, int limit) throws SQLException {
+        List<Reservation> list = new ArrayList<>();
+        String query = """
+                SELECT * FROM reservation
+                WHERE date_modification > ? OR (date_modification = ? AND id > ?)
+                ORDER BY date_modification ASC, id ASC
+                LIMIT ?
+                """;
+        try (PreparedStatement ps = connection().prepareStatement(query)) {
+            Timestamp ts = Timestamp.from(watermark);
+            ps.setTimestamp(1, ts);
+            ps.setTimestamp(2, ts);
+            ps.setInt(3, dernierId);
+            ps.setInt(4, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(map(rs));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Réservations supprimées (tombstones) après un ID de journal donné.
+     * Les suppressions en cascade depuis annonce ne déclenchent pas de trigger :
+     * le réplica retire lui-même les réservations d'une annonce supprimée.
+     */
+    public List<Suppression> getSuppressionsDepuis(long apresLogId, int limit) throws SQLException {
+        List<Suppression> list = new ArrayList<>();
+        try (PreparedStatement ps = connection().prepareStatement(
+                "SELECT * FROM suppression_log WHERE entite='RESERVATION' AND id > ? ORDER BY id ASC LIMIT ?")) {
+            ps.setLong(1, apresLogId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    list.add(new Suppression(rs.getLong("id"), rs.getString("entite"), rs.getInt("entite_id"),
+                            rs.getTimestamp("date_suppression").toLocalDateTime()));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Montant arrondi au centime pour la colonne DECIMAL(10,2) (évite
+     * d'envoyer les artefacts binaires du double).
+     */
+    private static BigDecimal montant(Reservation r) {
+        return BigDecimal.valueOf(r.getMontantTotal()).setScale(2, RoundingMode.HALF_UP);
     }
 
     private Reservation map(ResultSet rs) throws SQLException {
-        return new Reservation(
+        Reservation r = new Reservation(
                 rs.getInt("id"), rs.getInt("annonce_id"), rs.getInt("client_id"),
                 rs.getDate("date_debut") != null ? rs.getDate("date_debut").toLocalDate() : null,
                 rs.getDate("date_fin") != null ? rs.getDate("date_fin").toLocalDate() : null,
                 rs.getDouble("montant_total"), StatutReservation.valueOf(rs.getString("statut")),
                 rs.getString("commentaire"), rs.getTimestamp("date_creation").toLocalDateTime());
+        Timestamp modif = rs.getTimestamp("date_modification");
+        r.setDateModification(modif != null ? modif.toLocalDateTime() : r.getDateCreation());
+        r.setVersion(rs.getInt("version"));
+        return r;
     }
 }
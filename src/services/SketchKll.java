@@ -0,0 +1,136 @@
+package services;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Résumé de quantiles en flux (KLL, Karnin-Lang-Liberty) pour des valeurs
+ * positives : mémoire bornée (quelques centaines de valeurs retenues, quel
+ * que soit le nombre d'observations), ajout en temps constant amorti,
+ * erreur de rang de l'ordre de 1 à 2 % pour k = 200.
+ *
+ * Les valeurs sont rangées en niveaux ; une valeur du niveau h représente
+ * 2^h observations. Quand un niveau est plein, il est trié et une valeur
+ * sur deux (en partant au hasard de la première ou de la seconde) monte au
+ * niveau suivant. Les niveaux bas, plus souvent compactés, ont une
+ * capacité plus faible (facteur 2/3 par niveau).
+ */
+final class SketchKll {
+
+    private static final double FACTEUR = 2.0 / 3.0;
+
+    private final int k;
+    private float[][] niveaux = new float[1][8];
+    private int[] tailles = new int[1];
+    private int nbNiveaux = 1;
+    private int retenues; // Valeurs conservées, tous niveaux confondus
+    private int capaciteTotale;
+    private long observations;
+
+    SketchKll(int k) {
+        this.k = k;
+        capaciteTotale = capacite(0);
+    }
+
+    synchronized void ajouter(float valeur) {
+        ajouterAuNiveau(0, valeur);
+        retenues++;
+        observations++;
+        if (retenues >= capaciteTotale) {
+            compacter();
+        }
+    }
+
+    synchronized long getObservations() {
+        return observations;
+    }
+
+    /**
+     * Quantiles demandés, calculés en une passe sur les valeurs retenues.
+     *
+     * @param rangs Rangs dans [0, 1] (ex: 0.1, 0.5, 0.9)
+     * @return Les valeurs correspondantes, ou null si le résumé est vide
+     */
+    synchronized float[] quantiles(double... rangs) {
+        if (observations == 0) {
+            return null;
+        }
+        // Valeur (positive : ses bits suivent l'ordre des flottants) et niveau dans un long
+        long[] cles = new long[retenues];
+        int n = 0;
+        long poidsTotal = 0;
+        for (int h = 0; h < nbNiveaux; h++) {
+            for (int i = 0; i < tailles[h]; i++) {
+                cles[n++] = (long) Float.floatToIntBits(niveaux[h][i]) << 8 | h;
+            }
+            poidsTotal += (long) tailles[h] << h;
+        }
+        Arrays.sort(cles, 0, n);
+
+        float[] resultats = new float[rangs.length];
+        long cumul = 0;
+        int r = 0;
+        for (int i = 0; i < n && r < rangs.length; i++) {
+            cumul += 1L << (cles[i] & 0xFF);
+            while (r < rangs.length && cumul >= rangs[r] * poidsTotal) {
+                resultats[r++] = Float.intBitsToFloat((int) (cles[i] >>> 8));
+            }
+        }
+        float max = Float.intBitsToFloat((int) (cles[n - 1] >>> 8));
+        while (r < rangs.length) {
+            resultats[r++] = max;
+        }
+        return resultats;
+    }
+
+    private int capacite(int h) {
+        return (int) Math.ceil(k * Math.pow(FACTEUR, nbNiveaux - h - 1)) + 1;
+    }
+
+    private void ajouterAuNiveau(int h, float valeur) {
+        if (tailles[h] == niveaux[h].length) {
+            niveaux[h] = Arrays.copyOf(niveaux[h], niveaux[h].length * 2);
+        }
+        niveaux[h][tailles[h]++] = Math.max(0f, valeur);
+    }
+
+    /**
+     * Compacte le premier niveau plein : une valeur sur deux monte d'un
+     * niveau (poids doublé), l'autre est abandonnée.
+     */
+    private void compacter() {
+        for (int h = 0; h < nbNiveaux; h++) {
+            int taille = tailles[h];
+            if (taille < capacite(h)) {
+                continue;
+            }
+            if (h + 1 == nbNiveaux) {
+                ajouterNiveau();
+            }
+            float[] niveau = niveaux[h];
+            Arrays.sort(niveau, 0, taille);
+            int paires = taille & ~1;
+            for (int i = ThreadLocalRandom.current().nextInt(2); i < paires; i += 2) {
+                ajouterAuNiveau(h + 1, niveau[i]);
+            }
+            // Nombre impair : la plus grande valeur reste à son niveau
+            if (paires < taille) {
+                niveau[0] = niveau[taille - 1];
+            }
+            tailles[h] = taille - paires;
+            retenues -= paires / 2;
+            return;
+        }
+    }
+
+    private void ajouterNiveau() {
+        niveaux = Arrays.copyOf(niveaux, nbNiveaux + 1);
+        tailles = Arrays.copyOf(tailles, nbNiveaux + 1);
+        niveaux[nbNiveaux] = new float[8];
+        nbNiveaux++;
+        capaciteTotale = 0;
+        for (int h = 0; h < nbNiveaux; h++) {
+            capaciteTotale += capacite(h);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package services;
+
+import models.Gouvernorat;
+import models.StatutAnnonce;
+import models.TypeAnnonce;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot binaire du {@link CatalogueColonnes} (colonnes, index id -> ligne
+ * et position de synchronisation) pour un redémarrage à chaud : au
+ * lancement, le fichier est mappé en mémoire (MapMode.PRIVATE, copie à
+ * l'écriture) et ses colonnes sont utilisées telles quelles, sans copie ni
+ * requête ; seul le delta depuis la position du snapshot est ensuite lu
+ * dans la base centrale.
+ *
+ * Chaque sauvegarde écrit une nouvelle génération (catalogue-N.snap) via un
+ * fichier temporaire renommé atomiquement ; les anciennes générations sont
+ * supprimées quand c'est possible (sous Windows, un fichier encore mappé ne
+ * peut pas l'être : il le sera à la sauvegarde suivante).
+ *
+ * Format (en-tête big-endian de 64 octets, colonnes dans l'ordre natif
+ * indiqué par l'en-tête, chaque bloc aligné sur 8 octets) :
+ * <pre>
+ *  0 magic "AGSN"        4 version:int        8 ordre:byte (0 = LE, 1 = BE)
+ *  9 nbTypes:byte       10 nbStatuts:byte    11 nbGouvernorats:byte
+ * 12 taille:int         16 capaciteIndex:int 20 nombreIndex:int
+ * 24 watermark:long (s) 32 watermark:int (ns) 36 dernierId:int
+ * 40 suppressionId:long 48 crc32:long (tout ce qui suit l'en-tête)
+ * 64 colonnes (taille x largeur), puis clés et valeurs de l'index
+ * </pre>
+ */
+public class SnapshotCatalogue {
+
+    private static final int MAGIC = 0x4147534E; // "AGSN"
+    private static final int VERSION = 1;
+    private static final int TAILLE_ENTETE = 64;
+    private static final String PREFIXE = "catalogue-";
+    private static final String EXTENSION = ".snap";
+
+    private final CatalogueColonnes catalogue;
+    private final Path dossier;
+    private ScheduledExecutorService executor;
+
+    public SnapshotCatalogue(CatalogueColonnes catalogue) {
+        this(catalogue, Paths.get(System.getProperty("user.home"), ".agriflow"));
+    }
+
+    public SnapshotCatalogue(CatalogueColonnes catalogue, Path dossier) {
+        this.catalogue = catalogue;
+        this.dossier = dossier;
+    }
+
+    // ==================== RESTAURATION ====================
+
+    /**
+     * Restaure la génération valide la plus récente.
+     *
+     * @return false s'il n'existe aucun snapshot utilisable (le catalogue
+     *         doit alors être chargé depuis la base)
+     */
+    public boolean restaurer() {
+        for (Path fichier : generations()) {
+            try {
+                if (restaurer(fichier)) {
+                    System.out.println("✅ Catalogue restauré depuis " + fichier.getFileName() + " ("
+                            + catalogue.getTaille() + " annonce(s)).");
+                    return true;
+                }
+                System.err.println("⚠️ Snapshot ignoré (incompatible ou corrompu) : " + fichier.getFileName());
+            } catch (IOException e) {
+                System.err.println("⚠️ Lecture du snapshot impossible : " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private boolean restaurer(Path fichier) throws IOException {
+        MappedByteBuffer map;
+        // MapMode.PRIVATE exige un canal en écriture ; le fichier n'est jamais modifié
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tailleFichier = canal.size();
+            if (tailleFichier < TAILLE_ENTETE || tailleFichier > Integer.MAX_VALUE) {
+                return false;
+            }
+            // Le mapping reste valide après la fermeture du canal
+            map = canal.map(FileChannel.MapMode.PRIVATE, 0, tailleFichier);
+        }
+
+        ByteBuffer entete = map.duplicate().order(ByteOrder.BIG_ENDIAN);
+        ByteOrder ordre = entete.get(8) == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        if (entete.getInt(0) != MAGIC || entete.getInt(4) != VERSION
+                || ordre != ByteOrder.nativeOrder()
+                || entete.get(9) != TypeAnnonce.values().length
+                || entete.get(10) != StatutAnnonce.values().length
+                || entete.get(11) != Gouvernorat.values().length) {
+            return false;
+        }
+        int taille = entete.getInt(12);
+        int capaciteIndex = entete.getInt(16);
+        int nombreIndex = entete.getInt(20);
+        if (taille < 0 || Integer.bitCount(capaciteIndex) != 1 || nombreIndex != taille
+                || map.capacity() != TAILLE_ENTETE + tailleDonnees(taille, capaciteIndex)) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(map.slice(TAILLE_ENTETE, map.capacity() - TAILLE_ENTETE));
+        if (crc.getValue() != entete.getLong(48)) {
+            return false;
+        }
+
+        // Colonnes : vues directes sur le fichier mappé
+        int[] largeurs = CatalogueColonnes.LARGEURS;
+        ByteBuffer[] colonnes = new ByteBuffer[largeurs.length];
+        int position = TAILLE_ENTETE;
+        for (int i = 0; i < largeurs.length; i++) {
+            colonnes[i] = map.slice(position, taille * largeurs[i]).order(ordre);
+            position += aligner(taille * largeurs[i]);
+        }
+
+        // Index : copie en bloc dans des tableaux (mis à jour ensuite sur le tas)
+        int[] cles = new int[capaciteIndex];
+        int[] valeurs = new int[capaciteIndex];
+        map.slice(position, capaciteIndex * Integer.BYTES).order(ordre).asIntBuffer().get(cles);
+        position += capaciteIndex * Integer.BYTES;
+        map.slice(position, capaciteIndex * Integer.BYTES).order(ordre).asIntBuffer().get(valeurs);
+
+        catalogue.installer(colonnes, taille, new CatalogueColonnes.IndexEntier(cles, valeurs, nombreIndex),
+                Instant.ofEpochSecond(entete.getLong(24), entete.getInt(32)), entete.getInt(36),
+                entete.getLong(40));
+        return true;
+    }
+
+    // ==================== SAUVEGARDE ====================
+
+    /**
+     * Écrit une nouvelle génération du snapshot, sous le verrou de lecture
+     * du catalogue (les requêtes continuent pendant l'écriture).
+     */
+    public synchronized void sauvegarder() throws IOException {
+        Files.createDirectories(dossier);
+        List<Path> anciennes = generations();
+        long generation = anciennes.isEmpty() ? 1 : numero(anciennes.get(0)) + 1;
+        Path cible = dossier.resolve(PREFIXE + generation + EXTENSION);
+        Path temporaire = dossier.resolve(PREFIXE + generation + EXTENSION + ".tmp");
+
+        catalogue.verrou().readLock().lock();
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int taille = catalogue.taille();
+            CatalogueColonnes.IndexEntier index = catalogue.index();
+            CRC32 crc = new CRC32();
+
+            // Données d'abord, l'en-tête (avec le CRC) en dernier
+            canal.position(TAILLE_ENTETE);
+            ByteBuffer[] colonnes = catalogue.colonnes();
+            int[] largeurs = CatalogueColonnes.LARGEURS;
+            for (int i = 0; i < colonnes.length; i++) {
+                int octets = taille * largeurs[i];
+                ecrire(canal, crc, colonnes[i].slice(0, octets));
+                ecrire(canal, crc, ByteBuffer.allocate(aligner(octets) - octets));
+            }
+            ecrire(canal, crc, versOctets(index.cles()));
+            ecrire(canal, crc, versOctets(index.valeurs()));
+
+            Instant watermark = catalogue.watermark();
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE).order(ByteOrder.BIG_ENDIAN);
+            entete.putInt(0, MAGIC)
+                    .putInt(4, VERSION)
+                    .put(8, (byte) (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1))
+                    .put(9, (byte) TypeAnnonce.values().length)
+                    .put(10, (byte) StatutAnnonce.values().length)
+                    .put(11, (byte) Gouvernorat.values().length)
+                    .putInt(12, taille)
+                    .putInt(16, index.cles().length)
+                    .putInt(20, index.nombre())
+                    .putLong(24, watermark.getEpochSecond())
+                    .putInt(32, watermark.getNano())
+                    .putInt(36, catalogue.dernierId())
+                    .putLong(40, catalogue.suppressionId())
+                    .putLong(48, crc.getValue());
+            canal.position(0);
+            ecrire(canal, null, entete);
+            canal.force(true);
+        } finally {
+            catalogue.verrou().readLock().unlock();
+        }
+
+        Files.move(temporaire, cible, StandardCopyOption.ATOMIC_MOVE);
+        for (Path ancienne : anciennes) {
+            try {
+                Files.deleteIfExists(ancienne);
+            } catch (IOException e) {
+                // Encore mappée (Windows) : supprimée à la prochaine sauvegarde
+            }
+        }
+    }
+
+    /**
+     * Sauvegarde périodique (thread démon) et à la fermeture de l'application.
+     */
+    public synchronized void demarrer(long intervalleMinutes) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "snapshot-catalogue");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::sauvegarderSansErreur, intervalleMinutes, intervalleMinutes,
+                TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::sauvegarderSansErreur, "snapshot-catalogue-arret"));
+    }
+
+    private void sauvegarderSansErreur() {
+        try {
+            sauvegarder();
+        } catch (IOException e) {
+            System.err.println("⚠️ Sauvegarde du snapshot du catalogue échouée : " + e.getMessage());
+        }
+    }
+
+    // ==================== OUTILS ====================
+
+    /**
+     * Générations présentes, de la plus récente à la plus ancienne.
+     */
+    private List<Path> generations() {
+        List<Path> fichiers = new ArrayList<>();
+        if (!Files.isDirectory(dossier)) {
+            return fichiers;
+        }
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(dossier, PREFIXE + "*" + EXTENSION)) {
+            for (Path fichier : flux) {
+                if (numero(fichier) > 0) {
+                    fichiers.add(fichier);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Lecture du dossier des snapshots impossible : " + e.getMessage());
+        }
+        fichiers.sort(Comparator.comparingLong(SnapshotCatalogue::numero).reversed());
+        return fichiers;
+    }
+
+    private static long numero(Path fichier) {
+        String nom = fichier.getFileName().toString();
+        try {
+            return Long.parseLong(nom.substring(PREFIXE.length(), nom.length() - EXTENSION.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static long tailleDonnees(int taille, int capaciteIndex) {
+        long octets = 0;
+        for (int largeur : CatalogueColonnes.LARGEURS) {
+            octets += aligner(taille * largeur);
+        }
+        return octets + 2L * capaciteIndex * Integer.BYTES;
+    }
+
+    private static int aligner(int octets) {
+        return (octets + 7) & ~7;
+    }
+
+    private static ByteBuffer versOctets(int[] valeurs) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(valeurs.length * Integer.BYTES).order(ByteOrder.nativeOrder());
+        buffer.asIntBuffer().put(valeurs);
+        return buffer;
+    }
+
+    private static void ecrire(FileChannel canal, CRC32 crc, ByteBuffer buffer) throws IOException {
+        if (crc != null) {
+            crc.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+}
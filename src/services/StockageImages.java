@@ -0,0 +1,96 @@
+package services;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage des images d'annonces, adressé par contenu : une image est
+ * identifiée par l'empreinte SHA-256 de ses octets (la clé rangée dans
+ * Annonce.imagePath), si bien que la même photo publiée deux fois n'est
+ * stockée qu'une fois.
+ *
+ * Chaque image se lit en variantes de taille normalisée (JPEG), générées
+ * à la demande. Les lectures passent par des canaux ou des buffers, sans
+ * copie intégrale dans le tas : une implémentation par stockage objet
+ * (S3...) peut remplacer {@link StockageImagesLocal} sans toucher aux
+ * appelants.
+ */
+public interface StockageImages {
+
+    /**
+     * Variantes servies, bornées en largeur et en hauteur.
+     */
+    enum Variante {
+        MINIATURE(320),
+        MOYENNE(1024),
+        COMPLETE(2048);
+
+        private final int tailleMax;
+
+        Variante(int tailleMax) {
+            this.tailleMax = tailleMax;
+        }
+
+        public int getTailleMax() {
+            return tailleMax;
+        }
+    }
+
+    Pattern FORMAT_CLE = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * Stocke une image (sans effet si le même contenu est déjà stocké).
+     *
+     * @param avancement Fraction copiée dans [0, 1], ou null
+     * @return La clé de l'image
+     */
+    String enregistrer(Path source, DoubleConsumer avancement) throws IOException;
+
+    boolean existe(String cle) throws IOException;
+
+    /**
+     * Lecture en flux d'une variante (générée si besoin).
+     */
+    ReadableByteChannel ouvrir(String cle, Variante variante) throws IOException;
+
+    /**
+     * Contenu d'une variante (générée si besoin), en lecture seule.
+     */
+    ByteBuffer lire(String cle, Variante variante) throws IOException;
+
+    /**
+     * Adresse d'une variante (générée si besoin), chargeable directement
+     * par une Image JavaFX.
+     */
+    URI uri(String cle, Variante variante) throws IOException;
+
+    /**
+     * Génère d'avance toutes les variantes d'une image.
+     */
+    void preparerVariantes(String cle) throws IOException;
+
+    /**
+     * Indique si une valeur d'Annonce.imagePath est une clé du stockage
+     * (et non un ancien chemin absolu du poste de l'utilisateur).
+     */
+    static boolean estCle(String imagePath) {
+        return imagePath != null && FORMAT_CLE.matcher(imagePath).matches();
+    }
+
+    /**
+     * Stockage de l'application : disque local, sous ~/.agriflow/images.
+     */
+    static StockageImages getInstance() {
+        return StockageImagesLocal.PAR_DEFAUT;
+    }
+
+    static Path dossierParDefaut() {
+        return Paths.get(System.getProperty("user.home"), ".agriflow", "images");
+    }
+}
@@ -0,0 +1,247 @@
+package services;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.DoubleConsumer;
+
+/**
+ * {@link StockageImages} sur disque local. Une image de clé "abcd..." est
+ * rangée sous ab/cd/abcd... (deux niveaux de sous-dossiers : aucun dossier
+ * ne dépasse quelques milliers de fichiers), ses variantes à côté
+ * (abcd..._miniature.jpg...).
+ *
+ * Toute écriture passe par un fichier temporaire renommé une fois complet :
+ * un lecteur ne voit jamais un fichier partiel, et deux écritures
+ * concurrentes du même contenu produisent le même fichier.
+ */
+public class StockageImagesLocal implements StockageImages {
+
+    static final StockageImagesLocal PAR_DEFAUT = new StockageImagesLocal(StockageImages.dossierParDefaut());
+
+    private static final int TAILLE_BLOC = 1024 * 1024;
+
+    private final Path racine;
+
+    public StockageImagesLocal(Path racine) {
+        this.racine = racine;
+    }
+
+    // ==================== ÉCRITURE ====================
+
+    /**
+     * Copie par canal (blocs de 1 Mo, empreinte calculée au passage) vers
+     * un fichier temporaire, puis déplacement à sa place définitive s'il
+     * n'y est pas déjà.
+     */
+    @Override
+    public String enregistrer(Path source, DoubleConsumer avancement) throws IOException {
+        Path temporaire = fichierTemporaire();
+        String cle;
+        try {
+            MessageDigest sha256 = sha256();
+            try (FileChannel entree = FileChannel.open(source, StandardOpenOption.READ);
+                    FileChannel sortie = FileChannel.open(temporaire, StandardOpenOption.CREATE_NEW,
+                            StandardOpenOption.WRITE)) {
+                long taille = entree.size();
+                long copies = 0;
+                ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_BLOC);
+                if (avancement != null) {
+                    avancement.accept(0);
+                }
+                while (entree.read(tampon) >= 0) {
+                    tampon.flip();
+                    sha256.update(tampon.duplicate());
+                    while (tampon.hasRemaining()) {
+                        copies += sortie.write(tampon);
+                    }
+                    tampon.clear();
+                    if (avancement != null && taille > 0) {
+                        avancement.accept(Math.min(1.0, (double) copies / taille));
+                    }
+                }
+                sortie.force(false);
+            }
+            cle = HexFormat.of().formatHex(sha256.digest());
+            Path cible = original(cle);
+            if (Files.exists(cible)) {
+                return cle; // Contenu déjà stocké
+            }
+            Files.createDirectories(cible.getParent());
+            deplacer(temporaire, cible);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+        return cle;
+    }
+
+    @Override
+    public void preparerVariantes(String cle) throws IOException {
+        BufferedImage image = null;
+        for (Variante variante : Variante.values()) {
+            if (Files.exists(variante(cle, variante))) {
+                continue;
+            }
+            if (image == null) {
+                image = lireOriginale(cle);
+            }
+            ecrireVariante(cle, variante, image);
+        }
+    }
+
+    // ==================== LECTURE ====================
+
+    @Override
+    public boolean existe(String cle) {
+        return StockageImages.estCle(cle) && Files.exists(original(cle));
+    }
+
+    @Override
+    public ReadableByteChannel ouvrir(String cle, Variante variante) throws IOException {
+        return FileChannel.open(fichierVariante(cle, variante), StandardOpenOption.READ);
+    }
+
+    /**
+     * Fichier projeté en mémoire : le contenu est lu par le système à la
+     * demande, hors du tas.
+     */
+    @Override
+    public ByteBuffer lire(String cle, Variante variante) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichierVariante(cle, variante), StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    @Override
+    public URI uri(String cle, Variante variante) throws IOException {
+        return fichierVariante(cle, variante).toUri();
+    }
+
+    // ==================== VARIANTES ====================
+
+    private Path fichierVariante(String cle, Variante variante) throws IOException {
+        Path fichier = variante(cle, variante);
+        if (!Files.exists(fichier)) {
+            ecrireVariante(cle, variante, lireOriginale(cle));
+        }
+        return fichier;
+    }
+
+    private BufferedImage lireOriginale(String cle) throws IOException {
+        if (!existe(cle)) {
+            throw new NoSuchFileException("Image inconnue : " + cle);
+        }
+        BufferedImage image = ImageIO.read(original(cle).toFile());
+        if (image == null) {
+            throw new IOException("Format d'image illisible : " + cle);
+        }
+        return image;
+    }
+
+    private void ecrireVariante(String cle, Variante variante, BufferedImage image) throws IOException {
+        Path temporaire = fichierTemporaire();
+        try {
+            if (!ImageIO.write(redimensionner(image, variante.getTailleMax()), "jpg", temporaire.toFile())) {
+                throw new IOException("Encodeur JPEG indisponible");
+            }
+            deplacer(temporaire, variante(cle, variante));
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    /**
+     * Réduit l'image pour tenir dans tailleMax x tailleMax (jamais agrandie),
+     * par divisions successives par deux pour limiter le crénelage, sur fond
+     * blanc (JPEG sans transparence).
+     */
+    static BufferedImage redimensionner(BufferedImage image, int tailleMax) {
+        double echelle = Math.min(1.0, (double) tailleMax / Math.max(image.getWidth(), image.getHeight()));
+        int largeurCible = Math.max(1, (int) Math.round(image.getWidth() * echelle));
+        int hauteurCible = Math.max(1, (int) Math.round(image.getHeight() * echelle));
+
+        BufferedImage courante = image;
+        int largeur = image.getWidth();
+        int hauteur = image.getHeight();
+        do {
+            largeur = Math.max(largeurCible, largeur / 2);
+            hauteur = Math.max(hauteurCible, hauteur / 2);
+            courante = dessiner(courante, largeur, hauteur);
+        } while (largeur > largeurCible || hauteur > hauteurCible);
+        return courante;
+    }
+
+    private static BufferedImage dessiner(BufferedImage image, int largeur, int hauteur) {
+        BufferedImage resultat = new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resultat.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, largeur, hauteur);
+            g.drawImage(image, 0, 0, largeur, hauteur, null);
+        } finally {
+            g.dispose();
+        }
+        return resultat;
+    }
+
+    // ==================== CHEMINS ====================
+
+    private Path original(String cle) {
+        return dossier(cle).resolve(cle);
+    }
+
+    private Path variante(String cle, Variante variante) {
+        return dossier(cle).resolve(cle + "_" + variante.name().toLowerCase(Locale.ROOT) + ".jpg");
+    }
+
+    private Path dossier(String cle) {
+        if (!StockageImages.estCle(cle)) {
+            throw new IllegalArgumentException("Clé d'image invalide : " + cle);
+        }
+        return racine.resolve(cle.substring(0, 2)).resolve(cle.substring(2, 4));
+    }
+
+    private Path fichierTemporaire() throws IOException {
+        Path dossier = racine.resolve("tmp");
+        Files.createDirectories(dossier);
+        return dossier.resolve(UUID.randomUUID() + ".part");
+    }
+
+    private static void deplacer(Path source, Path cible) throws IOException {
+        try {
+            Files.move(source, cible, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Écrit entre-temps par une autre publication : même contenu
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, cible, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
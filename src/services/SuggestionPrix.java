@@ -0,0 +1,196 @@
+package services;
+
+import models.Annonce;
+import models.Gouvernorat;
+import models.TypeAnnonce;
+import utils.Configuration;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Prix conseillé à la publication d'une annonce : médiane et fourchette
+ * p10 - p90 des prix déjà pratiqués pour le même type dans le même
+ * gouvernorat (ou dans toute la Tunisie quand le gouvernorat a trop peu
+ * d'annonces).
+ *
+ * Un résumé de quantiles ({@link SketchKll}) par type x gouvernorat et un
+ * par type, en mémoire, alimentés une fois depuis le
+ * {@link CatalogueColonnes} déjà chargé puis à chaque add/update et par la
+ * synchronisation (annonces des autres utilisateurs). Une suggestion se
+ * lit en quelques microsecondes, sans requête.
+ *
+ * Le résumé ne sait pas retirer une valeur : un prix modifié ajoute une
+ * observation (il reflète les prix pratiqués dans le temps). Le dernier
+ * prix enregistré par annonce évite de compter deux fois le même (add
+ * local puis retour par la synchronisation).
+ */
+public class SuggestionPrix implements MarketplaceSync.Listener {
+
+    private static final int K = 200;
+
+    private static final int NB_GOUVERNORATS = Gouvernorat.values().length;
+
+    // ==================== SINGLETON ====================
+    private static final SuggestionPrix INSTANCE = new SuggestionPrix();
+
+    public static SuggestionPrix getInstance() {
+        return INSTANCE;
+    }
+
+    private final SketchKll[] parTypeEtGouvernorat = new SketchKll[TypeAnnonce.values().length * NB_GOUVERNORATS];
+    private final SketchKll[] parType = new SketchKll[TypeAnnonce.values().length];
+
+    // id annonce -> dernier prix enregistré (centimes), protégé par this
+    private final CatalogueColonnes.IndexEntier derniersPrix = new CatalogueColonnes.IndexEntier(1_024);
+    private boolean initialise;
+
+    private SuggestionPrix() {
+        for (int i = 0; i < parTypeEtGouvernorat.length; i++) {
+            parTypeEtGouvernorat[i] = new SketchKll(K);
+        }
+        for (int i = 0; i < parType.length; i++) {
+            parType[i] = new SketchKll(K);
+        }
+    }
+
+    /**
+     * Fourchette de prix conseillée.
+     */
+    public static final class Suggestion {
+        private final double p10;
+        private final double mediane;
+        private final double p90;
+        private final long observations;
+        private final boolean nationale; // Repli sur toute la Tunisie
+
+        Suggestion(float[] quantiles, long observations, boolean nationale) {
+            this.p10 = quantiles[0];
+            this.mediane = quantiles[1];
+            this.p90 = quantiles[2];
+            this.observations = observations;
+            this.nationale = nationale;
+        }
+
+        public double getP10() {
+            return p10;
+        }
+
+        public double getMediane() {
+            return mediane;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+
+        public boolean isNationale() {
+            return nationale;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Suggestion{mediane=%.2f, p10=%.2f, p90=%.2f, observations=%d, nationale=%b}",
+                    mediane, p10, p90, observations, nationale);
+        }
+    }
+
+    // ==================== CONSULTATION ====================
+
+    /**
+     * @param localisation Localisation libre (ramenée à un gouvernorat)
+     * @return La fourchette conseillée, ou null sans données pour ce type
+     */
+    public Suggestion suggerer(TypeAnnonce type, String localisation) {
+        if (type == null) {
+            return null;
+        }
+        if (localisation != null) {
+            SketchKll local = parTypeEtGouvernorat[cellule(type, Gouvernorat.depuisLocalisation(localisation))];
+            long n = local.getObservations();
+            // En dessous, la suggestion du gouvernorat n'est pas représentative
+            if (n >= Configuration.getInstance().get(Configuration.RECHERCHE_PRIX_MIN_OBSERVATIONS)) {
+                return new Suggestion(local.quantiles(0.1, 0.5, 0.9), n, false);
+            }
+        }
+        SketchKll national = parType[type.ordinal()];
+        long n = national.getObservations();
+        return n == 0 ? null : new Suggestion(national.quantiles(0.1, 0.5, 0.9), n, true);
+    }
+
+    // ==================== ALIMENTATION ====================
+
+    /**
+     * Première alimentation depuis les colonnes du catalogue (aucune
+     * requête). Sans effet si déjà faite.
+     */
+    public void initialiser(CatalogueColonnes catalogue) {
+        catalogue.verrou().readLock().lock();
+        try {
+            synchronized (this) {
+                if (initialise) {
+                    return;
+                }
+                ByteBuffer[] colonnes = catalogue.colonnes();
+                ByteBuffer ids = colonnes[0];
+                ByteBuffer prix = colonnes[2];
+                ByteBuffer types = colonnes[3];
+                ByteBuffer gouvernorats = colonnes[5];
+                for (int ligne = 0; ligne < catalogue.taille(); ligne++) {
+                    enregistrer(ids.getInt(ligne * Integer.BYTES), types.get(ligne), gouvernorats.get(ligne),
+                            prix.getLong(ligne * Long.BYTES));
+                }
+                initialise = true;
+            }
+        } finally {
+            catalogue.verrou().readLock().unlock();
+        }
+        System.out.println("✅ Suggestions de prix initialisées (" + catalogue.getTaille() + " annonces)");
+    }
+
+    /**
+     * Prend en compte le prix d'une annonce ajoutée ou modifiée.
+     */
+    public synchronized void enregistrer(Annonce annonce) {
+        enregistrer(annonce.getId(), annonce.getType().ordinal(),
+                Gouvernorat.depuisLocalisation(annonce.getLocalisation()).ordinal(),
+                Math.round(annonce.getPrix() * 100));
+    }
+
+    @Override
+    public void annoncesModifiees(List<Annonce> annonces) {
+        for (Annonce a : annonces) {
+            enregistrer(a);
+        }
+    }
+
+    /**
+     * Les prix observés restent dans les résumés (historique) ; seul le
+     * suivi par annonce est oublié.
+     */
+    @Override
+    public synchronized void annoncesSupprimees(List<Integer> ids) {
+        ids.forEach(derniersPrix::remove);
+    }
+
+    private void enregistrer(int id, int type, int gouvernorat, long prixCentimes) {
+        int centimes = (int) Math.min(prixCentimes, Integer.MAX_VALUE);
+        if (id > 0) {
+            if (derniersPrix.get(id) == centimes) {
+                return;
+            }
+            derniersPrix.put(id, centimes);
+        }
+        float prix = centimes / 100f;
+        parTypeEtGouvernorat[type * NB_GOUVERNORATS + gouvernorat].ajouter(prix);
+        parType[type].ajouter(prix);
+    }
+
+    private static int cellule(TypeAnnonce type, Gouvernorat gouvernorat) {
+        return type.ordinal() * NB_GOUVERNORATS + gouvernorat.ordinal();
+    }
+}
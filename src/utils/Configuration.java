@@ -0,0 +1,340 @@
+package utils;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Configuration de l'application (base de données, caches, exécuteurs,
+ * recherche), typée et externalisée. Chaque paramètre prend, par ordre de
+ * priorité croissante :
+ * - sa valeur par défaut ;
+ * - le fichier ~/.agriflow/agriflow.properties (ou -Dagriflow.config=...) ;
+ * - la variable d'environnement AGRIFLOW_... (ex: db.url -> AGRIFLOW_DB_URL) ;
+ * - la propriété système -Dagriflow.... (ex: -Dagriflow.db.url=...).
+ *
+ * Le fichier est surveillé : les paramètres rechargeables (seuils, durées
+ * de cache, borne de retard des réplicas) s'appliquent dès qu'il change, et
+ * peuvent aussi être lus et modifiés à chaud par JMX (jconsole, MBean
+ * agriflow:type=Configuration). Les autres (connexion, tailles des
+ * exécuteurs, intervalles des tâches planifiées) sont lus au démarrage.
+ *
+ * Les services lisent les paramètres rechargeables à chaque usage
+ * ({@link #get}, une lecture de table) plutôt que de les recopier.
+ */
+public class Configuration implements ConfigurationMBean {
+
+    /**
+     * Paramètre typé : nom, valeur par défaut, conversion depuis le texte.
+     */
+    public static final class Parametre<T> {
+        private final String nom;
+        private final T defaut;
+        private final Function<String, T> conversion;
+        private final boolean rechargeable;
+        private final boolean secret;
+
+        private Parametre(String nom, T defaut, Function<String, T> conversion, boolean rechargeable,
+                boolean secret) {
+            this.nom = nom;
+            this.defaut = defaut;
+            this.conversion = conversion;
+            this.rechargeable = rechargeable;
+            this.secret = secret;
+            PARAMETRES.put(nom, this);
+        }
+
+        public String getNom() {
+            return nom;
+        }
+
+        public boolean isRechargeable() {
+            return rechargeable;
+        }
+    }
+
+    private static final Map<String, Parametre<?>> PARAMETRES = new LinkedHashMap<>();
+
+    // ==================== BASE DE DONNÉES (au démarrage) ====================
+    public static final Parametre<String> DB_URL = texte("db.url", "jdbc:mysql://localhost:3306/agriflow");
+    public static final Parametre<String> DB_UTILISATEUR = texte("db.utilisateur", "root");
+    public static final Parametre<String> DB_MOT_DE_PASSE = new Parametre<>("db.motDePasse", "",
+            Function.identity(), false, true);
+    // En zone rurale sans réseau, échouer vite plutôt que bloquer l'UI
+    public static final Parametre<Integer> DB_CONNECT_TIMEOUT_MS = entier("db.connectTimeoutMs", 3_000, false);
+    public static final Parametre<Integer> DB_SOCKET_TIMEOUT_MS = entier("db.socketTimeoutMs", 0, false);
+    // Lignes lues par aller-retour (0 : tout le résultat d'un coup, comportement par défaut du driver)
+    public static final Parametre<Integer> DB_FETCH_SIZE = entier("db.fetchSize", 0, false);
+    // INSERT/UPDATE en lot réécrits en une requête multi-lignes
+    public static final Parametre<Boolean> DB_REWRITE_BATCHED = booleen("db.rewriteBatchedStatements", true, false);
+    public static final Parametre<Boolean> DB_SERVER_PREP_STMTS = booleen("db.useServerPrepStmts", false, false);
+    public static final Parametre<Boolean> DB_CACHE_PREP_STMTS = booleen("db.cachePrepStmts", true, false);
+    public static final Parametre<Integer> DB_CACHE_PREP_STMTS_TAILLE = entier("db.prepStmtCacheSize", 250, false);
+    public static final Parametre<Integer> DB_CACHE_PREP_STMTS_SQL_MAX = entier("db.prepStmtCacheSqlLimit", 2_048,
+            false);
+    // Connexions transactionnelles gardées ouvertes entre deux réservations / annulations
+    public static final Parametre<Integer> DB_POOL_TAILLE = entier("db.pool.taille", 4, false);
+    // URLs JDBC des réplicas en lecture, séparées par des virgules (vide : aucun)
+    public static final Parametre<String> DB_REPLICAS = texte("db.replicas", "");
+
+    // ==================== RÉGLAGES À CHAUD ====================
+    public static final Parametre<Long> REPLICAS_RETARD_MAX_MS = entierLong("db.replicas.retardMaxMs", 5_000, true);
+    public static final Parametre<Long> CACHE_LISTE_ATTENTE_MS = entierLong("cache.listeAttente.dureeMs", 30_000,
+            true);
+    public static final Parametre<Long> CACHE_ADMISSION_MS = entierLong("cache.admission.dureeVieMs", 30_000, true);
+    public static final Parametre<Double> RECHERCHE_SEUIL_DOUBLONS = reel("recherche.doublons.seuil", 0.8, true);
+    public static final Parametre<Integer> RECHERCHE_PRIX_MIN_OBSERVATIONS = entier(
+            "recherche.suggestionPrix.minObservations", 20, true);
+    // Fenêtre relue derrière le watermark de synchronisation (transactions validées en retard)
+    public static final Parametre<Long> SYNC_RECOUVREMENT_MS = entierLong("sync.recouvrementMs", 120_000, true);
+
+    // ==================== EXÉCUTEURS ET TÂCHES (au démarrage) ====================
+    public static final Parametre<Integer> EXECUTEUR_PUBLICATION_THREADS = entier("executeur.publication.threads", 2,
+            false);
+    public static final Parametre<Integer> SYNC_INTERVALLE_S = entier("sync.intervalleSecondes", 5, false);
+    public static final Parametre<Long> SNAPSHOT_INTERVALLE_MIN = entierLong("snapshot.intervalleMinutes", 10, false);
+    public static final Parametre<Long> RECOMMANDATIONS_INTERVALLE_H = entierLong("recommandations.intervalleHeures",
+            6, false);
+    // Premier calcul entre ce délai et son double après le lancement (étalé entre les postes)
+    public static final Parametre<Long> RECOMMANDATIONS_DELAI_MIN = entierLong("recommandations.delaiInitialMinutes",
+            30, false);
+    // Cycle de vie des réservations : passe périodique, expiration des demandes sans réponse
+    public static final Parametre<Long> CYCLE_INTERVALLE_S = entierLong("cycle.intervalleSecondes", 300, false);
+    public static final Parametre<Long> CYCLE_EXPIRATION_EN_ATTENTE_H = entierLong(
+            "cycle.expirationEnAttenteHeures", 48, false);
+    public static final Parametre<Integer> CYCLE_TAILLE_LOT = entier("cycle.tailleLot", 200, false);
+    // Réservations closes archivées après ce délai
+    public static final Parametre<Long> ARCHIVAGE_RETENTION_JOURS = entierLong("archivage.retentionJours", 90, false);
+    public static final Parametre<Integer> ARCHIVAGE_TAILLE_LOT = entier("archivage.tailleLot", 500, false);
+
+    // ==================== SINGLETON ====================
+    private static Configuration instance;
+
+    private final Path fichier;
+    private volatile Map<String, Object> valeurs = Collections.emptyMap();
+    // Valeurs posées par JMX, prioritaires jusqu'au redémarrage
+    private final Map<String, Object> surcharges = new HashMap<>();
+
+    private Configuration(Path fichier) {
+        this.fichier = fichier;
+    }
+
+    public static synchronized Configuration getInstance() {
+        if (instance == null) {
+            String chemin = System.getProperty("agriflow.config");
+            instance = new Configuration(chemin != null ? Paths.get(chemin)
+                    : Paths.get(System.getProperty("user.home"), ".agriflow", "agriflow.properties"));
+            instance.charger(true);
+            instance.surveiller();
+            instance.enregistrerMBean();
+        }
+        return instance;
+    }
+
+    /**
+     * Valeur courante d'un paramètre.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Parametre<T> parametre) {
+        return (T) valeurs.get(parametre.nom);
+    }
+
+    // ==================== CHARGEMENT ====================
+
+    /**
+     * (Re)lit toutes les sources. Au rechargement, seuls les paramètres
+     * rechargeables changent ; les autres sont signalés.
+     */
+    private synchronized void charger(boolean demarrage) {
+        Properties proprietes = new Properties();
+        if (Files.isRegularFile(fichier)) {
+            try (InputStream in = Files.newInputStream(fichier)) {
+                proprietes.load(in);
+            } catch (IOException e) {
+                System.err.println("⚠️ Configuration " + fichier + " illisible : " + e.getMessage());
+                if (!demarrage) {
+                    return; // Fichier en cours d'écriture : on garde les valeurs actuelles
+                }
+            }
+        }
+
+        Map<String, Object> nouvelles = new HashMap<>();
+        for (Parametre<?> p : PARAMETRES.values()) {
+            Object valeur = p.defaut;
+            String texte = System.getProperty("agriflow." + p.nom);
+            if (texte == null) {
+                texte = System.getenv("AGRIFLOW_" + p.nom.replace('.', '_').toUpperCase(Locale.ROOT));
+            }
+            if (texte == null) {
+                texte = proprietes.getProperty(p.nom);
+            }
+            if (texte != null) {
+                try {
+                    valeur = p.conversion.apply(texte.trim());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("⚠️ Valeur invalide pour " + p.nom + " (" + texte + "), défaut conservé");
+                }
+            }
+            Object actuelle = valeurs.get(p.nom);
+            if (!demarrage && !p.rechargeable) {
+                if (!valeur.equals(actuelle)) {
+                    System.out.println("⚠️ " + p.nom + " modifié : pris en compte au prochain démarrage");
+                }
+                valeur = actuelle;
+            } else if (surcharges.containsKey(p.nom)) {
+                valeur = surcharges.get(p.nom);
+            } else if (!demarrage && !valeur.equals(actuelle)) {
+                System.out.println("🔄 " + p.nom + " = " + afficher(p, valeur));
+            }
+            nouvelles.put(p.nom, valeur);
+        }
+        valeurs = Collections.unmodifiableMap(nouvelles);
+    }
+
+    /**
+     * Recharge le fichier à chaque modification (thread démon). Le dossier
+     * est créé s'il manque (premier lancement) : un fichier ajouté en cours
+     * de session est alors pris en compte.
+     */
+    private void surveiller() {
+        Path dossier = fichier.toAbsolutePath().getParent();
+        if (dossier == null) {
+            return;
+        }
+        WatchService surveillance;
+        try {
+            Files.createDirectories(dossier);
+            surveillance = dossier.getFileSystem().newWatchService();
+            dossier.register(surveillance, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("⚠️ Rechargement à chaud de la configuration indisponible : " + e.getMessage());
+            return;
+        }
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey cle = surveillance.take();
+                    boolean concerne = false;
+                    for (WatchEvent<?> evenement : cle.pollEvents()) {
+                        concerne |= fichier.getFileName().equals(evenement.context());
+                    }
+                    cle.reset();
+                    if (concerne) {
+                        charger(false);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Arrêt de l'application
+            }
+        }, "configuration-surveillance");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void enregistrerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("agriflow:type=Configuration"));
+        } catch (InstanceAlreadyExistsException e) {
+            // Déjà exposée (rechargement de classe en développement)
+        } catch (JMException e) {
+            System.err.println("⚠️ Configuration non exposée par JMX : " + e.getMessage());
+        }
+    }
+
+    // ==================== GESTION (JMX) ====================
+
+    @Override
+    public String[] getValeurs() {
+        List<String> lignes = new ArrayList<>();
+        for (Parametre<?> p : PARAMETRES.values()) {
+            lignes.add(p.nom + " = " + afficher(p, valeurs.get(p.nom)) + (p.rechargeable ? "" : " (au démarrage)"));
+        }
+        return lignes.toArray(new String[0]);
+    }
+
+    @Override
+    public String lire(String nom) {
+        Parametre<?> p = parametre(nom);
+        return afficher(p, valeurs.get(p.nom));
+    }
+
+    @Override
+    public synchronized void modifier(String nom, String valeur) {
+        Parametre<?> p = parametre(nom);
+        if (!p.rechargeable) {
+            throw new IllegalArgumentException(nom + " n'est pris en compte qu'au démarrage");
+        }
+        Object converti = p.conversion.apply(valeur.trim());
+        surcharges.put(nom, converti);
+        Map<String, Object> nouvelles = new HashMap<>(valeurs);
+        nouvelles.put(nom, converti);
+        valeurs = Collections.unmodifiableMap(nouvelles);
+        System.out.println("🔄 " + nom + " = " + afficher(p, converti) + " (JMX)");
+    }
+
+    @Override
+    public synchronized void recharger() {
+        surcharges.clear();
+        charger(false);
+    }
+
+    private static Parametre<?> parametre(String nom) {
+        Parametre<?> p = PARAMETRES.get(nom);
+        if (p == null) {
+            throw new IllegalArgumentException("Paramètre inconnu : " + nom);
+        }
+        return p;
+    }
+
+    private static String afficher(Parametre<?> p, Object valeur) {
+        return p.secret ? "****" : String.valueOf(valeur);
+    }
+
+    // ==================== FABRIQUES ====================
+
+    private static Parametre<String> texte(String nom, String defaut) {
+        return new Parametre<>(nom, defaut, Function.identity(), false, false);
+    }
+
+    private static Parametre<Integer> entier(String nom, int defaut, boolean rechargeable) {
+        return new Parametre<>(nom, defaut, Integer::valueOf, rechargeable, false);
+    }
+
+    private static Parametre<Long> entierLong(String nom, long defaut, boolean rechargeable) {
+        return new Parametre<>(nom, defaut, Long::valueOf, rechargeable, false);
+    }
+
+    private static Parametre<Double> reel(String nom, double defaut, boolean rechargeable) {
+        return new Parametre<>(nom, defaut, Double::valueOf, rechargeable, false);
+    }
+
+    private static Parametre<Boolean> booleen(String nom, boolean defaut, boolean rechargeable) {
+        return new Parametre<>(nom, defaut, texte -> {
+            if (!texte.equalsIgnoreCase("true") && !texte.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException(texte);
+            }
+            return Boolean.valueOf(texte);
+        }, rechargeable, false);
+    }
+}
@@ -0,0 +1,26 @@
+package utils;
+
+/**
+ * Interface de gestion JMX de la {@link Configuration} (MBean
+ * agriflow:type=Configuration, visible dans jconsole).
+ */
+public interface ConfigurationMBean {
+
+    /**
+     * Tous les paramètres avec leur valeur courante (mots de passe masqués).
+     */
+    String[] getValeurs();
+
+    String lire(String nom);
+
+    /**
+     * Modifie à chaud un paramètre rechargeable, jusqu'au prochain
+     * rechargement ou redémarrage.
+     */
+    void modifier(String nom, String valeur);
+
+    /**
+     * Relit le fichier et l'environnement (annule les modifications JMX).
+     */
+    void recharger();
+}
@@ -0,0 +1,156 @@
+package utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Singleton pour la base locale embarquée (H2, fichier sur le poste).
+ * Miroir des tables annonce / reservation de la base centrale : sert les
+ * lectures hors-ligne et stocke les opérations en attente de réplication.
+ */
+public class LocalDatabase {
+
+    // ==================== CONFIGURATION ====================
+    // Fichier dans le dossier de l'utilisateur : ~/.agriflow/agriflow-local.mv.db
+    private static final Path DOSSIER = Paths.get(System.getProperty("user.home"), ".agriflow");
+    private static final String URL = "jdbc:h2:file:" + DOSSIER.resolve("agriflow-local").toAbsolutePath()
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    private static final String USER = "sa";
+    private static final String PASSWORD = "";
+
+    // ==================== SINGLETON ====================
+    private static LocalDatabase instance;
+    private Connection connection;
+
+    /**
+     * Constructeur privé - Pattern Singleton.
+     */
+    private LocalDatabase() {
+        try {
+            Class.forName("org.h2.Driver");
+            this.connection = DriverManager.getConnection(URL, USER, PASSWORD);
+            creerSchema();
+            System.out.println("✅ Base locale AGRIFLOW prête (mode hors-ligne disponible).");
+        } catch (ClassNotFoundException e) {
+            System.err.println("❌ Driver H2 non trouvé. Ajoutez h2.jar au classpath pour le mode hors-ligne.");
+        } catch (SQLException e) {
+            System.err.println("❌ Erreur d'ouverture de la base locale.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Retourne l'instance unique de LocalDatabase.
+     */
+    public static synchronized LocalDatabase getInstance() {
+        if (instance == null) {
+            instance = new LocalDatabase();
+        }
+        return instance;
+    }
+
+    /**
+     * Retourne la connexion locale (null si H2 n'est pas disponible).
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Indique si le stockage local est utilisable.
+     */
+    public boolean isDisponible() {
+        return connection != null;
+    }
+
+    /**
+     * Crée les tables miroir et la file des opérations en attente.
+     */
+    private void creerSchema() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS annonce (
+                        id INT PRIMARY KEY,
+                        titre VARCHAR(255) NOT NULL,
+                        description CLOB,
+                        prix DECIMAL(10, 2) NOT NULL,
+                        type VARCHAR(30) NOT NULL,
+                        statut VARCHAR(30) NOT NULL,
+                        image_path VARCHAR(500),
+                        localisation VARCHAR(100),
+                        date_disponibilite DATE,
+                        date_fin_disponibilite DATE,
+                        date_creation TIMESTAMP,
+                        date_modification TIMESTAMP,
+                        proprietaire_id INT NOT NULL
+                    )
+                    """);
+            st.execute("CREATE INDEX IF NOT EXISTS idx_statut_creation ON annonce (statut, date_creation)");
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS reservation (
+                        id INT PRIMARY KEY,
+                        annonce_id INT NOT NULL,
+                        client_id INT NOT NULL,
+                        date_debut DATE,
+                        date_fin DATE,
+                        montant_total DECIMAL(10, 2) NOT NULL,
+                        statut VARCHAR(30) NOT NULL,
+                        commentaire CLOB,
+                        date_creation TIMESTAMP,
+                        date_modification TIMESTAMP
+                    )
+                    """);
+            st.execute("CREATE INDEX IF NOT EXISTS idx_annonce ON reservation (annonce_id)");
+            // Opérations faites hors-ligne, rejouées dans l'ordre sur la base centrale
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS operation_en_attente (
+                        id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        operation VARCHAR(30) NOT NULL,
+                        annonce_id INT,
+                        titre VARCHAR(255),
+                        description CLOB,
+                        prix DECIMAL(10, 2),
+                        type VARCHAR(30),
+                        image_path VARCHAR(500),
+                        localisation VARCHAR(100),
+                        date_disponibilite DATE,
+                        proprietaire_id INT,
+                        client_id INT,
+                        date_debut DATE,
+                        date_fin DATE,
+                        statut VARCHAR(20) NOT NULL DEFAULT 'EN_ATTENTE',
+                        erreur VARCHAR(500),
+                        date_creation TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """);
+            // Fichiers créés avant que les réservations hors-ligne portent le client et la période
+            st.execute("ALTER TABLE operation_en_attente ADD COLUMN IF NOT EXISTS client_id INT");
+            st.execute("ALTER TABLE operation_en_attente ADD COLUMN IF NOT EXISTS date_debut DATE");
+            st.execute("ALTER TABLE operation_en_attente ADD COLUMN IF NOT EXISTS date_fin DATE");
+            // Watermarks de synchronisation (reprise après redémarrage)
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS sync_etat (
+                        cle VARCHAR(50) PRIMARY KEY,
+                        valeur VARCHAR(100) NOT NULL
+                    )
+                    """);
+        }
+    }
+
+    /**
+     * Ferme proprement la base locale.
+     */
+    public void closeConnection() {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,25 +1,44 @@
 package utils;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
 
 /**
  * Singleton pour la connexion à la base de données MySQL.
  * Base de données AGRIFLOW partagée avec toute l'équipe TeamSpark.
+ * URL, identifiants et options du driver : voir {@link Configuration}.
  */
 public class MyDatabase {
 
-    // ==================== CONFIGURATION ====================
-    // À adapter selon votre configuration locale
-    private static final String URL = "jdbc:mysql://localhost:3306/agriflow";
-    private static final String USER = "root";
-    private static final String PASSWORD = ""; // Mot de passe MySQL (vide par défaut sur XAMPP)
-
     // ==================== SINGLETON ====================
     private static MyDatabase instance;
     private Connection connection;
 
+    // Enveloppe appliquée à chaque connexion ouverte (null : aucune)
+    private static volatile UnaryOperator<Connection> enveloppe;
+
+    // Au-delà de cette inactivité, une connexion du pool est revalidée avant d'être prêtée
+    private static final long INACTIVITE_VALIDATION_MS = 30_000;
+
+    /**
+     * Connexion libre du pool transactionnel.
+     */
+    private record Libre(Connection connexion, long rendueA) {
+    }
+
+    private final Deque<Libre> libres = new ArrayDeque<>(); // Protégé par lui-même
+
     /**
      * Constructeur privé - Pattern Singleton.
      */
@@ -29,7 +48,7 @@ public class MyDatabase {
             Class.forName("com.mysql.cj.jdbc.Driver");
 
             // Établissement de la connexion
-            this.connection = DriverManager.getConnection(URL, USER, PASSWORD);
+            this.connection = connecter(Configuration.getInstance().get(Configuration.DB_URL));
             System.out.println("✅ Connexion à la base de données AGRIFLOW réussie !");
 
         } catch (ClassNotFoundException e) {
@@ -45,7 +64,7 @@ public class MyDatabase {
     /**
      * Retourne l'instance unique de MyDatabase.
      */
-    public static MyDatabase getInstance() {
+    public static synchronized MyDatabase getInstance() {
         if (instance == null) {
             instance = new MyDatabase();
         }
@@ -60,7 +79,7 @@ public class MyDatabase {
             // Vérifie si la connexion est toujours valide
             if (connection == null || connection.isClosed()) {
                 // Reconnexion automatique
-                this.connection = DriverManager.getConnection(URL, USER, PASSWORD);
+                this.connection = connecter(Configuration.getInstance().get(Configuration.DB_URL));
                 System.out.println("🔄 Reconnexion à la base de données effectuée.");
             }
         } catch (SQLException e) {
@@ -70,10 +89,184 @@ public class MyDatabase {
         return connection;
     }
 
+    /**
+     * Retourne la connexion active, ou lève une exception de connexion si la
+     * base est injoignable (au lieu de renvoyer null).
+     */
+    public Connection getConnectionOrThrow() throws SQLException {
+        Connection c = getConnection();
+        if (c == null) {
+            throw new SQLTransientConnectionException("Base de données AGRIFLOW injoignable", "08001");
+        }
+        return c;
+    }
+
+    /**
+     * Ouvre une connexion dédiée, hors singleton (à fermer par l'appelant).
+     * Pour les traitements de fond qui ont besoin de leur propre session :
+     * transactions longues, verrous consultatifs GET_LOCK.
+     */
+    public Connection ouvrirConnexion() throws SQLException {
+        return connecter(Configuration.getInstance().get(Configuration.DB_URL));
+    }
+
+    /**
+     * Prête une connexion du pool transactionnel, ouverte au besoin. Pour
+     * les transactions courtes des actions utilisateur (réservation,
+     * annulation, libération) : la connexion TCP et l'authentification ne
+     * sont pas refaites à chaque clic. Sa fermeture la rend au pool (une
+     * transaction restée ouverte est annulée, l'autocommit rétabli) ; au-delà
+     * de db.pool.taille connexions libres, elle est vraiment fermée.
+     */
+    public Connection emprunterConnexion() throws SQLException {
+        while (true) {
+            Libre libre;
+            synchronized (libres) {
+                libre = libres.pollFirst(); // La plus récemment rendue
+            }
+            if (libre == null) {
+                return rendable(ouvrirConnexion());
+            }
+            Connection c = libre.connexion();
+            if (System.currentTimeMillis() - libre.rendueA() < INACTIVITE_VALIDATION_MS || c.isValid(2)) {
+                return rendable(c);
+            }
+            fermer(c); // Coupée pendant l'inactivité : la suivante, ou une neuve
+        }
+    }
+
+    /**
+     * Enveloppe dont close() rend la connexion au pool (une seule fois).
+     */
+    private Connection rendable(Connection c) {
+        AtomicBoolean rendue = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, methode, args) -> {
+                    switch (methode.getName()) {
+                        case "close":
+                            if (rendue.compareAndSet(false, true)) {
+                                rendre(c);
+                            }
+                            return null;
+                        case "isClosed":
+                            return rendue.get() || c.isClosed();
+                        default:
+                            if (rendue.get()) {
+                                throw new SQLException("Connexion déjà rendue au pool");
+                            }
+                            try {
+                                return methode.invoke(c, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    private void rendre(Connection c) {
+        try {
+            if (!c.isClosed()) {
+                if (!c.getAutoCommit()) {
+                    c.rollback(); // Sans effet après un commit
+                    c.setAutoCommit(true);
+                }
+                synchronized (libres) {
+                    if (libres.size() < Configuration.getInstance().get(Configuration.DB_POOL_TAILLE)) {
+                        libres.addFirst(new Libre(c, System.currentTimeMillis()));
+                        return;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            // Connexion inutilisable : fermée ci-dessous
+        }
+        fermer(c);
+    }
+
+    private static void fermer(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            // Déjà fermée ou injoignable : rien à libérer
+        }
+    }
+
+    /**
+     * Ouvre une connexion dédiée vers une autre instance de la base (réplica
+     * en lecture), avec les mêmes identifiants.
+     */
+    Connection ouvrirConnexion(String url) throws SQLException {
+        return connecter(url);
+    }
+
+    /**
+     * Enveloppe désormais chaque connexion ouverte (singleton et connexions
+     * dédiées), ex : {@link VerificationPlans} qui intercepte les requêtes
+     * des services. À poser avant le premier getInstance().
+     */
+    static void envelopper(UnaryOperator<Connection> e) {
+        enveloppe = e;
+    }
+
+    /**
+     * Identifiants et options du driver issus de la {@link Configuration}.
+     */
+    private static Connection connecter(String url) throws SQLException {
+        Configuration config = Configuration.getInstance();
+        Properties proprietes = new Properties();
+        proprietes.setProperty("user", config.get(Configuration.DB_UTILISATEUR));
+        proprietes.setProperty("password", config.get(Configuration.DB_MOT_DE_PASSE));
+        proprietes.setProperty("connectTimeout", String.valueOf(config.get(Configuration.DB_CONNECT_TIMEOUT_MS)));
+        proprietes.setProperty("socketTimeout", String.valueOf(config.get(Configuration.DB_SOCKET_TIMEOUT_MS)));
+        if (config.get(Configuration.DB_FETCH_SIZE) > 0) {
+            // Lecture par curseur serveur, par paquets de defaultFetchSize lignes
+            proprietes.setProperty("useCursorFetch", "true");
+            proprietes.setProperty("defaultFetchSize", String.valueOf(config.get(Configuration.DB_FETCH_SIZE)));
+        }
+        proprietes.setProperty("rewriteBatchedStatements",
+                String.valueOf(config.get(Configuration.DB_REWRITE_BATCHED)));
+        proprietes.setProperty("useServerPrepStmts", String.valueOf(config.get(Configuration.DB_SERVER_PREP_STMTS)));
+        proprietes.setProperty("cachePrepStmts", String.valueOf(config.get(Configuration.DB_CACHE_PREP_STMTS)));
+        proprietes.setProperty("prepStmtCacheSize",
+                String.valueOf(config.get(Configuration.DB_CACHE_PREP_STMTS_TAILLE)));
+        proprietes.setProperty("prepStmtCacheSqlLimit",
+                String.valueOf(config.get(Configuration.DB_CACHE_PREP_STMTS_SQL_MAX)));
+        Connection c = DriverManager.getConnection(url, proprietes);
+        UnaryOperator<Connection> e = enveloppe;
+        return e != null ? e.apply(c) : c;
+    }
+
+    /**
+     * Vérifie que la base centrale est joignable (mode hors-ligne sinon).
+     */
+    public boolean isDisponible() {
+        try {
+            Connection c = getConnection();
+            return c != null && c.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indique si l'erreur vient d'une perte de connexion (SQLState classe 08)
+     * plutôt que d'une erreur SQL : l'opération peut alors être rejouée.
+     */
+    public static boolean isErreurConnexion(SQLException e) {
+        return e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"));
+    }
+
     /**
      * Ferme proprement la connexion (à appeler à la fermeture de l'application).
      */
     public void closeConnection() {
+        synchronized (libres) {
+            libres.forEach(l -> fermer(l.connexion()));
+            libres.clear();
+        }
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
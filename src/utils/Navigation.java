@@ -0,0 +1,124 @@
+package utils;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Gestionnaire de navigation entre les écrans de l'application.
+ * Chaque vue FXML est chargée une seule fois (scene graph + contrôleur),
+ * puis réutilisée : changer d'écran remplace simplement la racine de la
+ * scène, sans re-parser le FXML ni recréer les services. La vue quittée
+ * garde son état (défilement, résultats affichés).
+ */
+public final class Navigation {
+
+    /**
+     * Implémenté par les contrôleurs qui doivent réagir à l'affichage ou au
+     * masquage de leur vue (vue réutilisée, pas recréée).
+     */
+    public interface Navigable {
+        default void onAffichage() {
+        }
+
+        default void onMasquage() {
+        }
+    }
+
+    /**
+     * Vue chargée : racine du scene graph et son contrôleur.
+     */
+    private static final class Vue {
+        final Parent root;
+        final Object controller;
+
+        Vue(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+    }
+
+    private static final Map<String, Future<Vue>> vues = new ConcurrentHashMap<>();
+    private static Vue courante;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "fxml-preload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Navigation() {
+    }
+
+    /**
+     * Charge en arrière-plan une vue susceptible d'être affichée ensuite.
+     * Les nœuds créés hors du thread JavaFX ne sont attachés à aucune scène :
+     * c'est autorisé par JavaFX.
+     */
+    public static void precharger(String fxml) {
+        vues.computeIfAbsent(fxml, f -> executor.submit(() -> charger(f)));
+    }
+
+    /**
+     * Retourne la racine de la vue de démarrage (chargée et mise en cache).
+     * Appelé depuis le thread JavaFX.
+     */
+    public static Parent demarrer(String fxml) throws IOException {
+        courante = obtenir(fxml);
+        return courante.root;
+    }
+
+    /**
+     * Affiche une vue dans la scène du nœud source, en réutilisant la vue
+     * mise en cache si elle existe. Appelé depuis le thread JavaFX.
+     */
+    public static void naviguer(Node source, String fxml) throws IOException {
+        Vue cible = obtenir(fxml);
+        if (cible == courante) {
+            return;
+        }
+        if (courante != null && courante.controller instanceof Navigable) {
+            ((Navigable) courante.controller).onMasquage();
+        }
+
+        Scene scene = source.getScene();
+        scene.setRoot(cible.root);
+        courante = cible;
+
+        if (cible.controller instanceof Navigable) {
+            ((Navigable) cible.controller).onAffichage();
+        }
+    }
+
+    private static Vue obtenir(String fxml) throws IOException {
+        Future<Vue> future = vues.get(fxml);
+        if (future != null) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("⚠️ Préchargement de " + fxml + " échoué : " + e.getCause());
+            }
+        }
+        Vue vue = charger(fxml);
+        vues.put(fxml, CompletableFuture.completedFuture(vue));
+        return vue;
+    }
+
+    private static Vue charger(String fxml) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Navigation.class.getResource(fxml));
+        Parent root = loader.load();
+        return new Vue(root, loader.getController());
+    }
+}
@@ -0,0 +1,241 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routage des lectures de navigation (liste, recherche, filtres) vers des
+ * réplicas MySQL en lecture seule, pour décharger la base primaire.
+ *
+ * Un réplica n'est choisi que s'il est sain et assez frais :
+ * - son retard, mesuré chaque seconde par un battement (table
+ *   battement_replication, mise à jour sur le primaire par un évènement
+ *   MySQL et lue sur le réplica), augmenté du temps écoulé depuis la
+ *   mesure, reste sous le retard maximal configuré ;
+ * - il a déjà reçu la dernière écriture faite depuis cette application
+ *   (lecture de ses propres écritures : une annonce qu'on vient de publier
+ *   ou de réserver est lue sur le primaire tant qu'aucun réplica ne l'a).
+ * Sinon, ou si aucun réplica n'est configuré, la lecture va au primaire.
+ *
+ * Seules des horloges de serveurs sont comparées : l'écriture est datée par
+ * NOW(3) du primaire (lu au contrôle suivant, lectures sur le primaire
+ * d'ici là) et comparée au battement répliqué, lui aussi daté par le
+ * primaire. L'horloge du poste ne sert qu'à mesurer des durées.
+ *
+ * Réplicas et retard maximal : db.replicas et db.replicas.retardMaxMs
+ * (voir {@link Configuration} ; plusieurs instances MySQL locales suffisent
+ * pour tester), ex :
+ * db.replicas=jdbc:mysql://localhost:3307/agriflow,jdbc:mysql://localhost:3308/agriflow
+ */
+public class ReplicasLecture {
+
+    private static final long INTERVALLE_SANTE_MS = 1_000;
+    private static final int DELAI_VALIDATION_S = 2;
+
+    /**
+     * État d'un réplica, mis à jour par le contrôle de santé.
+     */
+    private static final class Replica {
+        final String url;
+        volatile Connection connection;
+        volatile boolean sain;
+        volatile long retardMs;
+        volatile long etatDu; // Battement lu : horloge du primaire (ms), état reflété par le réplica
+        volatile long mesureNanos; // System.nanoTime() de la dernière mesure
+
+        Replica(String url) {
+            this.url = url;
+        }
+    }
+
+    // ==================== SINGLETON ====================
+    private static ReplicasLecture instance;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger tourniquet = new AtomicInteger();
+    private final AtomicLong ecritures = new AtomicLong(); // Écritures notées depuis le lancement
+    private volatile long ecrituresDatees; // Valeur de ecritures à la dernière datation
+    private volatile long derniereEcriture; // Horloge du primaire (ms), 0 : aucune
+    private ScheduledExecutorService executor;
+    private Connection primaire; // Connexion dédiée à la datation des écritures
+
+    private ReplicasLecture(String urls) {
+        if (urls != null) {
+            Arrays.stream(urls.split(","))
+                    .map(String::trim)
+                    .filter(u -> !u.isEmpty())
+                    .forEach(u -> replicas.add(new Replica(u)));
+        }
+    }
+
+    public static synchronized ReplicasLecture getInstance() {
+        if (instance == null) {
+            instance = new ReplicasLecture(Configuration.getInstance().get(Configuration.DB_REPLICAS));
+            instance.demarrer();
+        }
+        return instance;
+    }
+
+    // ==================== ROUTAGE ====================
+
+    /**
+     * Connexion d'un réplica éligible (à tour de rôle), ou null pour lire
+     * sur le primaire. La connexion est partagée : ne pas la fermer.
+     */
+    public Connection connexionLecture() {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        long maintenant = System.nanoTime();
+        long retardMaxMs = Configuration.getInstance().get(Configuration.REPLICAS_RETARD_MAX_MS);
+        int depart = Math.floorMod(tourniquet.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica r = replicas.get((depart + i) % replicas.size());
+            Connection c = r.connection;
+            if (c != null && r.sain && estEligible(r, maintenant, retardMaxMs)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * À appeler après chaque écriture faite depuis cette application : les
+     * lectures suivantes évitent les réplicas qui ne l'ont pas encore reçue.
+     * Sans requête : l'écriture est datée au prochain contrôle de santé.
+     */
+    public void noterEcriture() {
+        ecritures.incrementAndGet();
+    }
+
+    /**
+     * Une lecture a échoué sur cette connexion : le réplica est écarté
+     * jusqu'au prochain contrôle de santé réussi.
+     */
+    public void signalerPanne(Connection connection) {
+        for (Replica r : replicas) {
+            if (r.connection == connection) {
+                r.sain = false;
+                System.err.println("⚠️ Réplica " + r.url + " en panne, lectures basculées sur le primaire");
+            }
+        }
+    }
+
+    private boolean estEligible(Replica r, long maintenant, long retardMaxMs) {
+        if (ecritures.get() != ecrituresDatees) {
+            return false; // Écriture pas encore datée par le primaire
+        }
+        long retard = r.retardMs + TimeUnit.NANOSECONDS.toMillis(maintenant - r.mesureNanos);
+        return retard <= retardMaxMs && r.etatDu >= derniereEcriture;
+    }
+
+    // ==================== CONTRÔLE DE SANTÉ ====================
+
+    private synchronized void demarrer() {
+        if (replicas.isEmpty() || executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replicas-sante");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::controler, 0, INTERVALLE_SANTE_MS, TimeUnit.MILLISECONDS);
+        System.out.println("✅ Lectures de navigation routées vers " + replicas.size() + " réplica(s)");
+    }
+
+    public synchronized void arreter() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        for (Replica r : replicas) {
+            r.sain = false;
+            fermer(r.connection);
+            r.connection = null;
+        }
+        fermer(primaire);
+        primaire = null;
+    }
+
+    /**
+     * Date les écritures notées depuis le dernier contrôle (NOW(3) du
+     * primaire, postérieur à chacune d'elles), puis mesure l'âge du
+     * battement lu sur chaque réplica. Un réplica injoignable, ou sur
+     * lequel le battement est illisible, est écarté.
+     */
+    private void controler() {
+        long notees = ecritures.get();
+        if (notees != ecrituresDatees) {
+            try {
+                if (primaire == null || !primaire.isValid(DELAI_VALIDATION_S)) {
+                    fermer(primaire);
+                    primaire = MyDatabase.getInstance().ouvrirConnexion();
+                }
+                try (Statement st = primaire.createStatement();
+                        ResultSet rs = st.executeQuery("SELECT NOW(3)")) {
+                    rs.next();
+                    derniereEcriture = rs.getTimestamp(1).getTime();
+                    ecrituresDatees = notees; // Publié après derniereEcriture
+                }
+            } catch (SQLException e) {
+                // Primaire injoignable : les lectures restent sur le primaire, datation au prochain contrôle
+                fermer(primaire);
+                primaire = null;
+            }
+        }
+
+        for (Replica r : replicas) {
+            try {
+                if (r.connection == null || !r.connection.isValid(DELAI_VALIDATION_S)) {
+                    fermer(r.connection);
+                    r.connection = null;
+                    Connection c = MyDatabase.getInstance().ouvrirConnexion(r.url);
+                    c.setReadOnly(true);
+                    r.connection = c;
+                }
+                try (PreparedStatement ps = r.connection.prepareStatement("SELECT instant, "
+                        + "TIMESTAMPDIFF(MICROSECOND, instant, NOW(3)) FROM battement_replication WHERE id = 1");
+                        ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Aucun battement sur le réplica");
+                    }
+                    r.etatDu = rs.getTimestamp(1).getTime();
+                    r.retardMs = Math.max(0, rs.getLong(2) / 1_000);
+                    r.mesureNanos = System.nanoTime();
+                }
+                if (!r.sain) {
+                    System.out.println("✅ Réplica " + r.url + " disponible (retard " + r.retardMs + " ms)");
+                }
+                r.sain = true;
+            } catch (SQLException e) {
+                if (r.sain) {
+                    System.err.println("⚠️ Réplica " + r.url + " écarté : " + e.getMessage());
+                }
+                r.sain = false;
+            }
+        }
+    }
+
+    private static void fermer(Connection c) {
+        if (c == null) {
+            return;
+        }
+        try {
+            c.close();
+        } catch (SQLException e) {
+            // Déjà fermée ou injoignable : rien à libérer
+        }
+    }
+}
@@ -0,0 +1,569 @@
+package utils;
+
+import models.Annonce;
+import models.Gouvernorat;
+import models.Reservation;
+import models.StatutAnnonce;
+import models.TypeAnnonce;
+import services.AnnonceService;
+import services.ExportStreaming;
+import services.ReservationService;
+import services.StockageImages;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Vérification des plans d'exécution des requêtes d'AnnonceService et de
+ * ReservationService. Chaque méthode des services est appelée sur une base
+ * de vérification peuplée. Toute requête qu'elle émet est interceptée au
+ * niveau JDBC (voir {@link MyDatabase#envelopper}) et passée à EXPLAIN
+ * avec les mêmes paramètres. Une requête échoue si elle fait un parcours
+ * complet (type ALL ou index) ou un tri filesort sur plus de --seuil lignes
+ * estimées. Seules les lectures intégrales assumées (getAll, export) sont
+ * exemptées.
+ *
+ * À relancer après chaque changement de requête ou d'index, sur une base
+ * jetable (jamais la base partagée de l'équipe) :
+ * mysql -e "CREATE DATABASE agriflow_plans"
+ * mysql agriflow_plans < sql/marketplace_schema.sql   (table user comprise)
+ * java -Dagriflow.db.url=jdbc:mysql://localhost:3306/agriflow_plans \
+ *      -cp out:lib/* utils.VerificationPlans --peupler [--seuil=1000]
+ * Code de sortie 1 si un plan est refusé ou si un scénario échoue.
+ */
+public class VerificationPlans {
+
+    private static final int SEUIL_PAR_DEFAUT = 1_000;
+
+    // Volumes du jeu de données : assez pour que l'optimiseur préfère les index
+    private static final int NB_UTILISATEURS = 200;
+    private static final int NB_ANNONCES = 20_000;
+    private static final int NB_RESERVATIONS = 60_000;
+    private static final int NB_SUPPRESSIONS = 5_000;
+    private static final int TAILLE_LOT = 1_000;
+
+    private static final Pattern EXPLICABLE = Pattern.compile("(?i)\\s*(SELECT|UPDATE|DELETE|INSERT|REPLACE|WITH)\\b");
+
+    @FunctionalInterface
+    private interface Action {
+        void executer() throws Exception;
+    }
+
+    /**
+     * Appel d'une méthode de service. Les requêtes d'un scénario intégral
+     * lisent toute la table par construction : leur plan n'est pas refusé.
+     */
+    private static final class Scenario {
+        final String nom;
+        final boolean integral;
+        final Action action;
+
+        Scenario(String nom, boolean integral, Action action) {
+            this.nom = nom;
+            this.integral = integral;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Plan d'une requête (une ligne par table) et ses défauts.
+     */
+    private static final class Verdict {
+        final String scenario;
+        final String requete;
+        final List<String> plan = new ArrayList<>();
+        final List<String> defauts = new ArrayList<>();
+
+        Verdict(String scenario, String requete) {
+            this.scenario = scenario;
+            this.requete = requete;
+        }
+    }
+
+    private final int seuil;
+    private final Map<String, Verdict> verdicts = new LinkedHashMap<>(); // Par texte de requête
+    private final List<String> echecs = new ArrayList<>();
+    private volatile Scenario courant; // null : requêtes non vérifiées (préparation, peuplement)
+
+    VerificationPlans(int seuil) {
+        this.seuil = seuil;
+    }
+
+    public static void main(String[] args) {
+        boolean peupler = false;
+        int seuil = SEUIL_PAR_DEFAUT;
+        for (String arg : args) {
+            if (arg.equals("--peupler")) {
+                peupler = true;
+            } else if (arg.startsWith("--seuil=")) {
+                seuil = Integer.parseInt(arg.substring("--seuil=".length()));
+            } else {
+                System.err.println("Usage : VerificationPlans [--peupler] [--seuil=lignes]");
+                System.exit(2);
+            }
+        }
+
+        VerificationPlans verification = new VerificationPlans(seuil);
+        MyDatabase.envelopper(verification::intercepter);
+        int code;
+        try {
+            if (peupler) {
+                verification.peupler();
+            }
+            code = verification.verifier() ? 0 : 1;
+        } catch (SQLException | IOException e) {
+            System.err.println("❌ Vérification des plans impossible : " + e.getMessage());
+            code = 2;
+        } finally {
+            ReplicasLecture.getInstance().arreter();
+            MyDatabase.getInstance().closeConnection();
+        }
+        System.exit(code);
+    }
+
+    // ==================== SCÉNARIOS ====================
+
+    /**
+     * Appelle chaque méthode des services puis affiche le rapport.
+     *
+     * @return true si toutes les requêtes ont un plan acceptable
+     */
+    boolean verifier() throws SQLException, IOException {
+        AnnonceService annonces = new AnnonceService();
+        ReservationService reservations = new ReservationService();
+
+        // Échantillon pris dans les données : propriétaire, client, annonce et réservation existants
+        int proprietaireId = echantillon("SELECT proprietaire_id FROM annonce GROUP BY proprietaire_id "
+                + "ORDER BY COUNT(*) DESC LIMIT 1");
+        int clientId = echantillon("SELECT client_id FROM reservation GROUP BY client_id "
+                + "ORDER BY COUNT(*) DESC LIMIT 1");
+        int annonceId = echantillon("SELECT annonce_id FROM reservation GROUP BY annonce_id "
+                + "ORDER BY COUNT(*) DESC LIMIT 1");
+        int disponibleId = echantillon("SELECT MIN(id) FROM annonce WHERE statut = 'DISPONIBLE'");
+        int reservationId = echantillon("SELECT MAX(id) FROM reservation");
+        int[] annonceIds = new int[50];
+        int[] reservationIds = new int[50];
+        for (int i = 0; i < annonceIds.length; i++) {
+            annonceIds[i] = disponibleId + i * 7;
+            reservationIds[i] = reservationId - i * 7;
+        }
+        Instant depuis = Instant.now().minusSeconds(30L * 24 * 3600);
+        LocalDate unAn = LocalDate.now().minusYears(1);
+        Path export = Files.createTempFile("verification-plans", ".csv").toAbsolutePath();
+
+        List<Scenario> scenarios = List.of(
+                // ---------- AnnonceService : lectures ----------
+                new Scenario("Annonce.getAll", true, annonces::getAll),
+                new Scenario("Annonce.getById", false, () -> annonces.getById(annonceId)),
+                new Scenario("Annonce.getByIds", false, () -> annonces.getByIds(annonceIds)),
+                new Scenario("Annonce.getByIdGroupe", false, () -> annonces.getByIdGroupe(annonceId)),
+                new Scenario("Annonce.getAnnoncesDisponibles", false, annonces::getAnnoncesDisponibles),
+                new Scenario("Annonce.getByType", false, () -> annonces.getByType(TypeAnnonce.TRACTEUR)),
+                new Scenario("Annonce.getByLocalisation", false, () -> annonces.getByLocalisation("Nabeul")),
+                new Scenario("Annonce.getByPrixRange", false, () -> annonces.getByPrixRange(100, 300)),
+                new Scenario("Annonce.getByProprietaire", false, () -> annonces.getByProprietaire(proprietaireId)),
+                new Scenario("Annonce.getSuiviProprietaire", false,
+                        () -> annonces.getSuiviProprietaire(proprietaireId, 0, 20)),
+                new Scenario("Annonce.migrerImagesLocales", false,
+                        () -> annonces.migrerImagesLocales(proprietaireId, StockageImages.getInstance())),
+                new Scenario("Annonce.search", false, () -> annonces.search("tracteur")),
+                new Scenario("Annonce.searchAdvanced (type)", false,
+                        () -> annonces.searchAdvanced("tracteur", TypeAnnonce.TRACTEUR, "Nabeul", 500.0)),
+                new Scenario("Annonce.searchAdvanced (prix)", false,
+                        () -> annonces.searchAdvanced(null, null, null, 500.0)),
+                new Scenario("Annonce.getModifiedSince", false, () -> annonces.getModifiedSince(depuis, 500)),
+                new Scenario("Annonce.getModifiedSince (curseur)", false,
+                        () -> annonces.getModifiedSince(depuis, annonceId, 500)),
+                new Scenario("Annonce.getSuppressionsDepuis", false, () -> annonces.getSuppressionsDepuis(0, 500)),
+                new Scenario("Annonce.getDernierIdSuppression", false, annonces::getDernierIdSuppression),
+                new Scenario("Annonce.exporter", true,
+                        () -> annonces.exporter(export, ExportStreaming.Format.CSV, null)),
+
+                // ---------- ReservationService : lectures ----------
+                new Scenario("Reservation.getAll", true, reservations::getAll),
+                new Scenario("Reservation.getById", false, () -> reservations.getById(reservationId)),
+                new Scenario("Reservation.getByIds", false, () -> reservations.getByIds(reservationIds)),
+                new Scenario("Reservation.getByIdGroupe", false, () -> reservations.getByIdGroupe(reservationId)),
+                new Scenario("Reservation.getByClient", false, () -> reservations.getByClient(clientId)),
+                new Scenario("Reservation.getByAnnonce", false, () -> reservations.getByAnnonce(annonceId)),
+                new Scenario("Reservation.getMesAnnonces", false,
+                        () -> reservations.getMesAnnonces(proprietaireId, 0, 20)),
+                new Scenario("Reservation.getHistoriqueClient", false,
+                        () -> reservations.getHistoriqueClient(clientId, unAn)),
+                new Scenario("Reservation.getAnnonces (historique client)", false,
+                        () -> reservations.getAnnonces(reservations.getHistoriqueClient(clientId, unAn))),
+                new Scenario("Reservation.getHistoriqueAnnonce", false,
+                        () -> reservations.getHistoriqueAnnonce(annonceId, unAn)),
+                new Scenario("Reservation.getModifiedSince", false,
+                        () -> reservations.getModifiedSince(depuis, 500)),
+                new Scenario("Reservation.getModifiedSince (curseur)", false,
+                        () -> reservations.getModifiedSince(depuis, reservationId, 500)),
+                new Scenario("Reservation.getSuppressionsDepuis", false,
+                        () -> reservations.getSuppressionsDepuis(0, 500)),
+                new Scenario("Reservation.exporter", true,
+                        () -> reservations.exporter(export, ExportStreaming.Format.CSV, null)),
+
+                // ---------- Écritures (sur les données de vérification) ----------
+                new Scenario("Annonce.update", false, () -> {
+                    Annonce a = annonces.getById(annonceId);
+                    a.setPrix(a.getPrix() + 1);
+                    annonces.update(a);
+                }),
+                new Scenario("Annonce.reserverAnnonce", false, () -> annonces.reserverAnnonce(disponibleId)),
+                new Scenario("Annonce.libererAnnonce", false, () -> annonces.libererAnnonce(disponibleId)),
+                new Scenario("Annonce.add / delete", false, () -> {
+                    Annonce a = new Annonce("Tracteur de vérification", "Annonce temporaire", 120,
+                            TypeAnnonce.TRACTEUR, "Nabeul", LocalDate.now(), proprietaireId);
+                    annonces.add(a, true);
+                    annonces.delete(a.getId());
+                }),
+                new Scenario("Reservation.reserver / update / confirmer / annuler / delete", false, () -> {
+                    Reservation r = reservations.reserver(annonces.getById(disponibleId), clientId,
+                            LocalDate.now().plusDays(1), LocalDate.now().plusDays(3));
+                    r = reservations.getById(r.getId());
+                    r.setCommentaire("Vérification des plans");
+                    reservations.update(r);
+                    reservations.confirmerReservation(r.getId());
+                    reservations.annulerReservation(r.getId());
+                    reservations.delete(r.getId());
+                }));
+
+        try {
+            for (Scenario s : scenarios) {
+                courant = s;
+                try {
+                    s.action.executer();
+                } catch (Exception e) {
+                    echecs.add(s.nom + " : " + e);
+                } finally {
+                    courant = null;
+                }
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(export);
+            } catch (IOException e) {
+                // Fichier temporaire : sans conséquence
+            }
+        }
+        return rapporter();
+    }
+
+    private boolean rapporter() {
+        int refusees = 0;
+        System.out.println();
+        for (Verdict v : verdicts.values()) {
+            if (v.defauts.isEmpty()) {
+                System.out.println("✅ " + v.scenario + " : " + abreger(v.requete));
+                continue;
+            }
+            refusees++;
+            System.out.println("❌ " + v.scenario + " : " + abreger(v.requete));
+            v.defauts.forEach(d -> System.out.println("     " + d));
+            v.plan.forEach(ligne -> System.out.println("       " + ligne));
+        }
+        echecs.forEach(e -> System.out.println("❌ Scénario en échec : " + e));
+        System.out.println();
+        System.out.println((refusees == 0 && echecs.isEmpty() ? "✅ " : "❌ ") + verdicts.size()
+                + " requête(s) vérifiée(s), " + refusees + " plan(s) refusé(s), " + echecs.size()
+                + " scénario(s) en échec (seuil : " + seuil + " lignes)");
+        return refusees == 0 && echecs.isEmpty();
+    }
+
+    private static String abreger(String requete) {
+        return requete.length() <= 140 ? requete : requete.substring(0, 137) + "...";
+    }
+
+    private static int echantillon(String requete) throws SQLException {
+        try (Statement st = MyDatabase.getInstance().getConnectionOrThrow().createStatement();
+                ResultSet rs = st.executeQuery(requete)) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                throw new SQLException("Base de vérification vide (lancer avec --peupler) : " + requete);
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    // ==================== INTERCEPTION JDBC ====================
+
+    /**
+     * Enveloppe une connexion : les requêtes qu'on y exécute pendant un
+     * scénario sont d'abord expliquées.
+     */
+    Connection intercepter(Connection reelle) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, m, args) -> {
+                    Object resultat = invoquer(reelle, m, args);
+                    if (m.getName().equals("prepareStatement")) {
+                        return intercepter(reelle, (PreparedStatement) resultat, (String) args[0]);
+                    }
+                    if (m.getName().equals("createStatement")) {
+                        return intercepter(reelle, (Statement) resultat);
+                    }
+                    return resultat;
+                });
+    }
+
+    /**
+     * Requête préparée : les appels setXxx(index, valeur) sont mémorisés
+     * pour être rejoués sur l'EXPLAIN.
+     */
+    private PreparedStatement intercepter(Connection reelle, PreparedStatement ps, String sql) {
+        List<Object[]> parametres = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, m, args) -> {
+                    String nom = m.getName();
+                    if (nom.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        parametres.add(new Object[] { m, args });
+                    } else if (nom.equals("clearParameters")) {
+                        parametres.clear();
+                    } else if ((nom.startsWith("execute") || nom.equals("addBatch")) && args == null) {
+                        expliquer(reelle, sql, parametres);
+                    }
+                    return invoquer(ps, m, args);
+                });
+    }
+
+    private Statement intercepter(Connection reelle, Statement st) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] { Statement.class }, (proxy, m, args) -> {
+                    String nom = m.getName();
+                    if ((nom.startsWith("execute") || nom.equals("addBatch"))
+                            && args != null && args[0] instanceof String sql) {
+                        expliquer(reelle, sql, List.of());
+                    }
+                    return invoquer(st, m, args);
+                });
+    }
+
+    private static Object invoquer(Object cible, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * EXPLAIN de la requête (une seule fois par texte de requête), sur la
+     * connexion réelle et avec les paramètres de l'appel.
+     */
+    private synchronized void expliquer(Connection reelle, String sql, List<Object[]> parametres) {
+        Scenario s = courant;
+        String requete = sql.strip().replaceAll("\\s+", " ");
+        if (s == null || !EXPLICABLE.matcher(requete).lookingAt() || verdicts.containsKey(requete)) {
+            return;
+        }
+        Verdict v = new Verdict(s.nom, requete);
+        verdicts.put(requete, v);
+        try (PreparedStatement ps = reelle.prepareStatement("EXPLAIN " + sql)) {
+            for (Object[] p : parametres) {
+                ((Method) p[0]).invoke(ps, (Object[]) p[1]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    analyser(s, v, rs.getString("table"), rs.getString("type"), rs.getString("key"),
+                            rs.getLong("rows"), rs.getString("Extra"));
+                }
+            }
+        } catch (SQLException | ReflectiveOperationException e) {
+            v.defauts.add("EXPLAIN impossible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Juge une ligne du plan : parcours complet ou filesort au-delà du
+     * seuil, sauf pour un scénario intégral.
+     */
+    private void analyser(Scenario s, Verdict v, String table, String type, String cle, long lignes, String extra) {
+        v.plan.add(table + " | type=" + type + " | key=" + cle + " | rows=" + lignes
+                + (extra != null ? " | " + extra : ""));
+        if (s.integral || lignes <= seuil) {
+            return;
+        }
+        if ("ALL".equals(type) || "index".equals(type)) {
+            v.defauts.add(table + " : parcours complet (" + type + ") sur ~" + lignes + " lignes");
+        }
+        if (extra != null && extra.contains("Using filesort")) {
+            v.defauts.add(table + " : tri filesort sur ~" + lignes + " lignes");
+        }
+    }
+
+    // ==================== JEU DE DONNÉES ====================
+
+    /**
+     * Peuple une base de vérification vide (reproductible : graine fixe),
+     * puis met à jour les statistiques de l'optimiseur. Refuse une base
+     * qui contient déjà des annonces.
+     */
+    void peupler() throws SQLException {
+        try (Connection c = MyDatabase.getInstance().ouvrirConnexion()) {
+            try (Statement st = c.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM annonce")) {
+                rs.next();
+                if (rs.getLong(1) > 0) {
+                    throw new SQLException("La base contient déjà des annonces : --peupler ne s'applique "
+                            + "qu'à une base de vérification vide");
+                }
+            }
+            System.out.println("🔄 Peuplement de la base de vérification...");
+            Random aleatoire = new Random(42);
+            c.setAutoCommit(false);
+            int[] utilisateurs = utilisateurs(c);
+            LocalDateTime maintenant = LocalDateTime.now();
+            TypeAnnonce[] types = TypeAnnonce.values();
+            Gouvernorat[] gouvernorats = Gouvernorat.values();
+
+            try (PreparedStatement ps = c.prepareStatement("""
+                    INSERT INTO annonce (titre, description, prix, type, statut, localisation,
+                                         date_disponibilite, date_creation, date_modification, proprietaire_id)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    """)) {
+                for (int i = 1; i <= NB_ANNONCES; i++) {
+                    TypeAnnonce type = types[aleatoire.nextInt(types.length)];
+                    LocalDateTime creation = maintenant.minusMinutes(aleatoire.nextInt(2 * 365 * 24 * 60));
+                    ps.setString(1, type.getLibelle() + " n°" + i);
+                    ps.setString(2, "Annonce de vérification n°" + i);
+                    ps.setDouble(3, 10 + aleatoire.nextInt(2_000));
+                    ps.setString(4, type.name());
+                    ps.setString(5, statutAnnonce(aleatoire).name());
+                    ps.setString(6, gouvernorats[aleatoire.nextInt(gouvernorats.length)].getLibelle());
+                    ps.setObject(7, creation.toLocalDate().plusDays(aleatoire.nextInt(30)));
+                    ps.setTimestamp(8, Timestamp.valueOf(creation));
+                    ps.setTimestamp(9, Timestamp.valueOf(creation.plusMinutes(aleatoire.nextInt(60 * 24 * 60))));
+                    ps.setInt(10, utilisateurs[aleatoire.nextInt(utilisateurs.length)]);
+                    ajouterAuLot(c, ps, i);
+                }
+            }
+
+            int premiereAnnonce = lireEntier(c, "SELECT MIN(id) FROM annonce");
+            try (PreparedStatement ps = c.prepareStatement("""
+                    INSERT INTO reservation (annonce_id, client_id, date_debut, date_fin, montant_total,
+                                             statut, date_creation, date_modification)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                    """)) {
+                for (int i = 1; i <= NB_RESERVATIONS; i++) {
+                    LocalDateTime creation = maintenant.minusMinutes(aleatoire.nextInt(2 * 365 * 24 * 60));
+                    LocalDate debut = creation.toLocalDate().plusDays(aleatoire.nextInt(30));
+                    ps.setInt(1, premiereAnnonce + aleatoire.nextInt(NB_ANNONCES));
+                    ps.setInt(2, utilisateurs[aleatoire.nextInt(utilisateurs.length)]);
+                    ps.setObject(3, debut);
+                    ps.setObject(4, debut.plusDays(1 + aleatoire.nextInt(14)));
+                    ps.setDouble(5, 50 + aleatoire.nextInt(5_000));
+                    ps.setString(6, statutReservation(aleatoire).name());
+                    ps.setTimestamp(7, Timestamp.valueOf(creation));
+                    ps.setTimestamp(8, Timestamp.valueOf(creation.plusMinutes(aleatoire.nextInt(60 * 24 * 60))));
+                    ajouterAuLot(c, ps, i);
+                }
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO suppression_log (entite, entite_id) VALUES (?, ?)")) {
+                for (int i = 1; i <= NB_SUPPRESSIONS; i++) {
+                    ps.setString(1, aleatoire.nextBoolean() ? "ANNONCE" : "RESERVATION");
+                    ps.setInt(2, 1_000_000 + i);
+                    ajouterAuLot(c, ps, i);
+                }
+            }
+            c.setAutoCommit(true);
+
+            try (Statement st = c.createStatement()) {
+                st.execute("ANALYZE TABLE annonce, reservation, reservation_archive, liste_attente, suppression_log");
+            }
+            System.out.println("✅ Base de vérification peuplée : " + NB_ANNONCES + " annonces, "
+                    + NB_RESERVATIONS + " réservations, " + NB_SUPPRESSIONS + " suppressions");
+        }
+    }
+
+    /**
+     * Utilisateurs existants (table user du module authentification), créés
+     * au besoin avec les colonnes minimales nom, prenom, email.
+     */
+    private int[] utilisateurs(Connection c) throws SQLException {
+        if (lireEntier(c, "SELECT COUNT(*) FROM user") == 0) {
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO user (nom, prenom, email) VALUES (?, ?, ?)")) {
+                for (int i = 1; i <= NB_UTILISATEURS; i++) {
+                    ps.setString(1, "Verification");
+                    ps.setString(2, "Agriculteur " + i);
+                    ps.setString(3, "verification" + i + "@agriflow.tn");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            }
+        }
+        List<Integer> ids = new ArrayList<>();
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT id FROM user ORDER BY id LIMIT " + NB_UTILISATEURS)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void ajouterAuLot(Connection c, PreparedStatement ps, int numero) throws SQLException {
+        ps.addBatch();
+        if (numero % TAILLE_LOT == 0) {
+            ps.executeBatch();
+            c.commit();
+        }
+    }
+
+    private static int lireEntier(Connection c, String requete) throws SQLException {
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery(requete)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Répartition proche de la production : une minorité d'annonces
+     * DISPONIBLE, le reste réservé, loué, vendu ou retiré.
+     */
+    private static StatutAnnonce statutAnnonce(Random aleatoire) {
+        int tirage = aleatoire.nextInt(100);
+        if (tirage < 30) {
+            return StatutAnnonce.DISPONIBLE;
+        } else if (tirage < 40) {
+            return StatutAnnonce.RESERVE;
+        } else if (tirage < 50) {
+            return StatutAnnonce.LOUE;
+        } else if (tirage < 70) {
+            return StatutAnnonce.VENDU;
+        }
+        return StatutAnnonce.INDISPONIBLE;
+    }
+
+    private static Reservation.StatutReservation statutReservation(Random aleatoire) {
+        int tirage = aleatoire.nextInt(100);
+        if (tirage < 10) {
+            return Reservation.StatutReservation.EN_ATTENTE;
+        } else if (tirage < 30) {
+            return Reservation.StatutReservation.CONFIRMEE;
+        } else if (tirage < 80) {
+            return Reservation.StatutReservation.TERMINEE;
+        }
+        return Reservation.StatutReservation.ANNULEE;
+    }
+}